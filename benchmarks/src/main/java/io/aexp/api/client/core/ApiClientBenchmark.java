@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.aexp.api.client.core.configuration.ConfigurationKeys;
+import io.aexp.api.client.core.configuration.PropertiesConfigurationProvider;
+import io.aexp.api.client.core.enums.EndPoint;
+import io.aexp.api.client.core.enums.NotificationType;
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.models.ApiClientResponse;
+import io.aexp.api.client.core.security.authentication.AuthProvider;
+import io.aexp.api.client.core.security.authentication.HmacAuthBuilder;
+import io.aexp.api.client.core.tokenization.NotificationsRequest;
+import io.aexp.api.client.core.tokenization.StatusRequest;
+import io.aexp.api.client.core.transport.HttpTransport;
+import io.aexp.api.client.core.transport.HttpTransportProvider;
+import org.apache.http.HttpHost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end ApiClient.execute, including HMAC authentication, against an HTTP server on the loopback interface.
+ * The server answers immediately, so the numbers are dominated by the client side of the pipeline.  The transport
+ * parameter compares the built in Apache HttpClient path with the transports of HttpTransportProvider, jdk needs
+ * Java 11 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+//Without TCP_NODELAY on the server side, Nagle and delayed ACKs add ~40ms to every exchange
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class ApiClientBenchmark {
+
+    private static final byte[] RESPONSE = ("{\"token_ref_id\":\"DNITHE000000000000000001\",\"token_status\":" +
+            "\"ACTIVE\",\"token_requester_id\":\"12345678901\"}").getBytes();
+
+    @Param({"default", "apache", "okhttp", "jdk"})
+    public String transport;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private HttpHost httpHost;
+    private HttpTransport httpTransport;
+    private ApiClient client;
+    private AuthProvider authProvider;
+    private ApiClientRequest statusRequest;
+    private ApiClientRequest notificationsRequest;
+
+    @Setup
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream body = exchange.getRequestBody();
+                byte[] buffer = new byte[4096];
+                while (body.read(buffer) != -1) {
+                    //drain the request body so the connection can be reused
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, RESPONSE.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(RESPONSE);
+                out.close();
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.start();
+        httpHost = new HttpHost("127.0.0.1", server.getAddress().getPort(), "http");
+
+        Properties properties = new Properties();
+        properties.put(ConfigurationKeys.CLIENT_KEY, "UNIT-TEST-KEY-4388-87b9-85cf463231d7");
+        properties.put(ConfigurationKeys.CLIENT_SECRET, "UNIT-TEST-SECRET-4388-87b9-85cf463231d7");
+        PropertiesConfigurationProvider configurationProvider = new PropertiesConfigurationProvider();
+        configurationProvider.setProperties(properties);
+        authProvider = HmacAuthBuilder.getBuilder().setConfiguration(configurationProvider).build();
+
+        httpTransport = "default".equals(transport) ? null : HttpTransportProvider.create(transport);
+        client = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.SANDBOX)
+                .setTokenRequesterId("12345678901")
+                .setTransport(httpTransport)
+                .createDevPortalExecutor();
+
+        statusRequest = new StatusRequest.StatusRequestBuilder()
+                .setTokenReferenceId("DNITHE000000000000000001")
+                .createStatusRequest();
+        notificationsRequest = new NotificationsRequest.NotificationsRequestBuilder()
+                .setTokenReferenceId("DNITHE000000000000000001")
+                .setNotificationType(NotificationType.SUSPEND)
+                .createNotificationsRequest();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (httpTransport != null) {
+            httpTransport.close();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public ApiClientResponse executeGet() {
+        return client.execute(httpHost, statusRequest, authProvider);
+    }
+
+    @Benchmark
+    public ApiClientResponse executePost() {
+        return client.execute(httpHost, notificationsRequest, authProvider);
+    }
+}
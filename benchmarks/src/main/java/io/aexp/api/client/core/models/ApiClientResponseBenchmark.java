@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.models;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response construction followed by a single field lookup, for a status sized body and for a reconciliation
+ * listing with the given number of records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiClientResponseBenchmark {
+
+    @Param({"1", "1000"})
+    public int records;
+
+    private Header[] headers;
+    private String body;
+
+    @Setup
+    public void setup() {
+        headers = new Header[]{new BasicHeader("Content-Type", "application/json"),
+                new BasicHeader("x-amex-request-id", "f00870f3-5862-45f1-9bd1-ba94c71d2661")};
+
+        StringBuilder builder = new StringBuilder("{\"status\":\"ACTIVE\",\"records\":[");
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"payment_id\":\"PAY").append(i)
+                    .append("\",\"amount\":").append(i * 3 + 0.5)
+                    .append(",\"currency\":\"USD\",\"status\":\"SETTLED\",\"supplier\":{\"name\":\"Supplier ")
+                    .append(i).append("\",\"country\":\"US\"}}");
+        }
+        body = builder.append("]}").toString();
+    }
+
+    @Benchmark
+    public Object constructAndGetField() {
+        return new ApiClientResponse(headers, body).getField("status");
+    }
+}
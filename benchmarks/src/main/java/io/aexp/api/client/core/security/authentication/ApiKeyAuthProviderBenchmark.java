@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.security.authentication;
+
+import io.aexp.api.client.core.configuration.ConfigurationKeys;
+import io.aexp.api.client.core.configuration.PropertiesConfigurationProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header generation for the API key only authentication schema.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiKeyAuthProviderBenchmark {
+
+    private AuthProvider provider;
+
+    @Setup
+    public void setup() {
+        Properties properties = new Properties();
+        properties.put(ConfigurationKeys.CLIENT_KEY, "UNIT-TEST-KEY-4388-87b9-85cf463231d7");
+        PropertiesConfigurationProvider configurationProvider = new PropertiesConfigurationProvider();
+        configurationProvider.setProperties(properties);
+
+        provider = ApiKeyAuthBuilder.getBuilder().setConfiguration(configurationProvider).build();
+    }
+
+    @Benchmark
+    public Map<String, String> generateAuthHeaders() {
+        return provider.generateAuthHeaders(null, "https://api.americanexpress.com/servicing/v1/member/atm", "GET");
+    }
+}
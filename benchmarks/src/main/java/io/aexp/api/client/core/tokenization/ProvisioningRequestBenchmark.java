@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.tokenization;
+
+import io.aexp.api.client.core.enums.AccountInputMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialisation of a provisioning request body, with and without encryption of the account data.  The toJsonBytes
+ * variants produce the UTF-8 body ApiClient signs and sends, without the intermediate String.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProvisioningRequestBenchmark {
+
+    private static final String AES_KEY = "LvXdoSVmSc0VxTRd13DfNYS7qKEVdsHURcBI/FSnv2w=";
+
+    private ProvisioningRequest request;
+
+    @Setup
+    public void setup() {
+        request = new ProvisioningRequest.ProvisioningRequestBuilder()
+                .setAccountNumber("371111111111111")
+                .setExpiryMonth(12)
+                .setExpiryYear(2030)
+                .setUserEmailId("emailId")
+                .setUserName("first|middle|last")
+                .setUserPhoneNumber("+0011112224444")
+                .setPostalCode("11111")
+                .setAddressLine1("200 Vesey Street")
+                .setCity("New York")
+                .setState("NY")
+                .setCountry("US")
+                .setIpAddress("127.0.0.1")
+                .setAccountInputMethod(AccountInputMethod.ON_FILE)
+                .createProvisioningRequest();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return request.toJson();
+    }
+
+    @Benchmark
+    public String toJsonEncrypted() {
+        return request.toJson("kid", AES_KEY);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() {
+        return request.toJsonBytes();
+    }
+
+    @Benchmark
+    public byte[] toJsonBytesEncrypted() {
+        return request.toJsonBytes("kid", AES_KEY);
+    }
+}
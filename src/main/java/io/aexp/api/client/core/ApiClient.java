@@ -14,40 +14,77 @@
 
 package io.aexp.api.client.core;
 
+import io.aexp.api.client.core.cache.CachedResponse;
+import io.aexp.api.client.core.cache.ResponseCache;
+import io.aexp.api.client.core.concurrent.VirtualThreads;
+import io.aexp.api.client.core.configuration.ConfigurationKeys;
 import io.aexp.api.client.core.enums.EndPoint;
+import io.aexp.api.client.core.exceptions.BulkheadFullException;
+import io.aexp.api.client.core.exceptions.CircuitBreakerOpenException;
+import io.aexp.api.client.core.exceptions.ConcurrencyLimitExceededException;
+import io.aexp.api.client.core.exceptions.DeadlineExceededException;
 import io.aexp.api.client.core.exceptions.ExecutorException;
+import io.aexp.api.client.core.exceptions.HttpStatusException;
+import io.aexp.api.client.core.metrics.ApiClientMetrics;
+import io.aexp.api.client.core.metrics.NoopApiClientMetrics;
+import io.aexp.api.client.core.metrics.RequestPhase;
 import io.aexp.api.client.core.models.ApiClientRequest;
 import io.aexp.api.client.core.models.ApiClientResponse;
+import io.aexp.api.client.core.models.ResponseBodyHandler;
+import io.aexp.api.client.core.resilience.AdaptiveLimiter;
+import io.aexp.api.client.core.resilience.AdaptiveLimiterPolicy;
+import io.aexp.api.client.core.resilience.Bulkhead;
+import io.aexp.api.client.core.resilience.BulkheadPolicy;
+import io.aexp.api.client.core.resilience.CircuitBreaker;
+import io.aexp.api.client.core.resilience.CircuitBreakerPolicy;
+import io.aexp.api.client.core.resilience.Deadline;
+import io.aexp.api.client.core.resilience.HedgingPolicy;
+import io.aexp.api.client.core.resilience.RateLimiter;
+import io.aexp.api.client.core.resilience.RateLimiterPolicy;
+import io.aexp.api.client.core.resilience.RetryPolicy;
 import io.aexp.api.client.core.security.authentication.AuthHeaderNames;
 import io.aexp.api.client.core.security.authentication.AuthProvider;
+import io.aexp.api.client.core.security.authentication.BaseAuthProvider;
+import io.aexp.api.client.core.transport.ApacheHttpTransport;
+import io.aexp.api.client.core.transport.ConnectionPool;
+import io.aexp.api.client.core.transport.HttpTransport;
+import io.aexp.api.client.core.transport.TransportRequest;
+import io.aexp.api.client.core.transport.TransportResponse;
+import io.aexp.api.client.core.utils.BoundedInputStream;
 import io.aexp.api.client.core.utils.EncryptionUtility;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.apache.http.protocol.HttpContext;
-import org.apache.http.ssl.SSLContexts;
-import org.apache.http.util.EntityUtils;
-
-import javax.net.ssl.SSLContext;
+import org.apache.http.message.BasicHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.Socket;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public class ApiClient {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     private final EndPoint endpoint;
     private final String tokenRequesterId;
     private final String encryptionKeyId;
@@ -56,23 +93,98 @@ public class ApiClient {
     private final String signingKeyId;
     private final String signingKeyStr;
     private final Integer timeout;
+    private final int connectTimeout;
+    private final int connectionRequestTimeout;
+    private final int socketTimeout;
+    private final Long totalTimeout;
+    private final ConnectionPool connectionPool;
+    //Apache HttpClient on the connection pool unless the builder was given a transport
+    private final HttpTransport transport;
+    private final boolean pooledTransport;
+    private final Long maxResponseBodySize;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreakerPolicy circuitBreakerPolicy;
+    private final BulkheadPolicy bulkheadPolicy;
+    private final AdaptiveLimiterPolicy adaptiveLimiterPolicy;
+    private final RateLimiterPolicy rateLimiterPolicy;
+    private final HedgingPolicy hedgingPolicy;
+    private final ResponseCache responseCache;
+    private final long responseCacheTimeToLive;
+    //Calls in progress by cache key when identical requests are coalesced, otherwise null
+    private final ConcurrentMap<String, CompletableFuture<ApiClientResponse>> inFlightRequests;
+    private final ApiClientMetrics metrics;
+    private final String endpointName;
+    private final Executor executor;
+    private final Semaphore concurrencyLimit;
 
     private boolean testOverride;
 
-    private static CloseableHttpClient httpClient;
     private final Integer DEFAULT_TIMEOUT = 15000;
 
     public ApiClient(EndPoint endpoint, String signingAlgorithm, String tokenRequesterId,
                      String encryptionKeyId, String encryptionKeyStr, String signingKeyId, String signingKeyStr,
                      Integer timeout) {
-        this.endpoint = endpoint;
-        this.signingAlgorithm = signingAlgorithm;
-        this.tokenRequesterId = tokenRequesterId;
-        this.encryptionKeyId = encryptionKeyId;
-        this.encryptionKeyStr = encryptionKeyStr;
-        this.signingKeyId = signingKeyId;
-        this.signingKeyStr = signingKeyStr;
-        this.timeout = timeout;
+        this(endpoint, signingAlgorithm, tokenRequesterId, encryptionKeyId, encryptionKeyStr, signingKeyId,
+                signingKeyStr, timeout, null);
+    }
+
+    public ApiClient(EndPoint endpoint, String signingAlgorithm, String tokenRequesterId,
+                     String encryptionKeyId, String encryptionKeyStr, String signingKeyId, String signingKeyStr,
+                     Integer timeout, ConnectionPool connectionPool) {
+        this(new DevPortalExecutorBuilder()
+                .setEndpoint(endpoint)
+                .setSigningInformation(signingAlgorithm, signingKeyId, signingKeyStr)
+                .setTokenRequesterId(tokenRequesterId)
+                .setEncryptionInformation(encryptionKeyId, encryptionKeyStr)
+                .setTimeout(timeout)
+                .setConnectionPool(connectionPool));
+    }
+
+    private ApiClient(DevPortalExecutorBuilder builder) {
+        this.endpoint = builder.endpoint;
+        this.signingAlgorithm = builder.signingAlgorithm;
+        this.tokenRequesterId = builder.tokenRequesterId;
+        this.encryptionKeyId = builder.encryptionKeyId;
+        this.encryptionKeyStr = builder.encryptionKeyStr;
+        this.signingKeyId = builder.signingKeyId;
+        this.signingKeyStr = builder.signingKeyStr;
+        this.timeout = builder.timeout;
+        int defaultTimeout = (timeout != null) ? timeout : DEFAULT_TIMEOUT;
+        this.connectTimeout = (builder.connectTimeout != null) ? builder.connectTimeout : defaultTimeout;
+        this.connectionRequestTimeout = (builder.connectionRequestTimeout != null) ?
+                builder.connectionRequestTimeout : defaultTimeout;
+        this.socketTimeout = (builder.socketTimeout != null) ? builder.socketTimeout : defaultTimeout;
+        this.totalTimeout = builder.totalTimeout;
+        this.connectionPool = (builder.connectionPool != null) ? builder.connectionPool : ConnectionPool.getDefault();
+        this.pooledTransport = (builder.transport == null);
+        this.transport = pooledTransport ? new ApacheHttpTransport(connectionPool) : builder.transport;
+        this.maxResponseBodySize = builder.maxResponseBodySize;
+        this.retryPolicy = builder.retryPolicy;
+        this.circuitBreakerPolicy = builder.circuitBreakerPolicy;
+        this.bulkheadPolicy = builder.bulkheadPolicy;
+        this.adaptiveLimiterPolicy = builder.adaptiveLimiterPolicy;
+        this.rateLimiterPolicy = builder.rateLimiterPolicy;
+        this.hedgingPolicy = builder.hedgingPolicy;
+        this.responseCache = builder.responseCache;
+        this.responseCacheTimeToLive = builder.responseCacheTimeToLive;
+        this.inFlightRequests = builder.coalesceRequests ?
+                new ConcurrentHashMap<String, CompletableFuture<ApiClientResponse>>() : null;
+        this.metrics = (builder.metrics != null) ? builder.metrics : NoopApiClientMetrics.INSTANCE;
+        this.endpointName = (endpoint != null) ? endpoint.name() : "NONE";
+        this.metrics.bindConnectionPool(this.connectionPool);
+        if (adaptiveLimiterPolicy != null) {
+            this.metrics.bindAdaptiveLimiter(adaptiveLimiterPolicy.getLimiter(endpointName));
+        }
+        if (builder.virtualThreads) {
+            if (!VirtualThreads.isSupported()) {
+                throw new ExecutorException("Virtual threads require Java 21 or later");
+            }
+            this.executor = VirtualThreads.newThreadPerTaskExecutor("amex-api-client-");
+        } else {
+            this.executor = builder.executor;
+        }
+        this.concurrencyLimit = (builder.maxConcurrentRequests != null) ?
+                new Semaphore(builder.maxConcurrentRequests, true) : null;
         setTestOverride(false);
     }
 
@@ -85,6 +197,26 @@ public class ApiClient {
         private String signingKeyId;
         private String signingKeyStr;
         private Integer timeout;
+        private Integer connectTimeout;
+        private Integer connectionRequestTimeout;
+        private Integer socketTimeout;
+        private Long totalTimeout;
+        private ConnectionPool connectionPool;
+        private HttpTransport transport;
+        private Long maxResponseBodySize;
+        private RetryPolicy retryPolicy;
+        private CircuitBreakerPolicy circuitBreakerPolicy;
+        private BulkheadPolicy bulkheadPolicy;
+        private AdaptiveLimiterPolicy adaptiveLimiterPolicy;
+        private RateLimiterPolicy rateLimiterPolicy;
+        private HedgingPolicy hedgingPolicy;
+        private ResponseCache responseCache;
+        private long responseCacheTimeToLive;
+        private boolean coalesceRequests;
+        private ApiClientMetrics metrics;
+        private boolean virtualThreads;
+        private Executor executor;
+        private Integer maxConcurrentRequests;
 
         public DevPortalExecutorBuilder setEndpoint(EndPoint endpoint) {
             this.endpoint = endpoint;
@@ -109,14 +241,143 @@ public class ApiClient {
             return this;
         }
 
+        //Milliseconds used for the connect, connection request and socket timeouts that are not set separately
         public DevPortalExecutorBuilder setTimeout(Integer timeout) {
             this.timeout = timeout;
             return this;
         }
 
+        //Milliseconds to wait for a connection to the server to be established
+        public DevPortalExecutorBuilder setConnectTimeout(Integer connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        //Milliseconds to wait for a connection from the pool
+        public DevPortalExecutorBuilder setConnectionRequestTimeout(Integer connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+            return this;
+        }
+
+        //Milliseconds to wait for data from the server on an established connection
+        public DevPortalExecutorBuilder setSocketTimeout(Integer socketTimeout) {
+            this.socketTimeout = socketTimeout;
+            return this;
+        }
+
+        //Milliseconds a call may take as a whole, including signing, encryption, waiting for a connection and
+        //retries.  Unlimited when not set, a Deadline passed to a call applies when it expires first
+        public DevPortalExecutorBuilder setTotalTimeout(Long totalTimeout) {
+            this.totalTimeout = totalTimeout;
+            return this;
+        }
+
+        //Pool to send requests through, it may be shared with other clients.  Defaults to ConnectionPool.getDefault()
+        public DevPortalExecutorBuilder setConnectionPool(ConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+            return this;
+        }
+
+        //Sends requests through this transport instead of the Apache HttpClient of the connection pool, for example
+        //a JdkHttpTransport multiplexing them over HTTP/2.  The transport can be shared by several clients
+        public DevPortalExecutorBuilder setTransport(HttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        //Largest response body in bytes the client accepts, larger responses fail with an ExecutorException.
+        //Unlimited when not set
+        public DevPortalExecutorBuilder setMaxResponseBodySize(Long maxResponseBodySize) {
+            this.maxResponseBodySize = maxResponseBodySize;
+            return this;
+        }
+
+        //Policy for retrying failed requests, requests are not retried when it is not set
+        public DevPortalExecutorBuilder setRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        //Fails requests fast while their EndPoint and request type keep failing or responding slowly
+        public DevPortalExecutorBuilder setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+            this.circuitBreakerPolicy = circuitBreakerPolicy;
+            return this;
+        }
+
+        //Limits the concurrent requests per EndPoint and request type, requests beyond the limit fail fast
+        public DevPortalExecutorBuilder setBulkheadPolicy(BulkheadPolicy bulkheadPolicy) {
+            this.bulkheadPolicy = bulkheadPolicy;
+            return this;
+        }
+
+        //Limits the requests in progress to the EndPoint to what its round trip times show it can take, further
+        //requests fail with a ConcurrencyLimitExceededException.  Applies to every attempt and hedge
+        public DevPortalExecutorBuilder setAdaptiveLimiterPolicy(AdaptiveLimiterPolicy adaptiveLimiterPolicy) {
+            this.adaptiveLimiterPolicy = adaptiveLimiterPolicy;
+            return this;
+        }
+
+        //Spreads requests out to stay within the quotas of the client key per API, requests that cannot get a
+        //permit in time fail with a RateLimitExceededException.  Applies to every attempt and hedge
+        public DevPortalExecutorBuilder setRateLimiterPolicy(RateLimiterPolicy rateLimiterPolicy) {
+            this.rateLimiterPolicy = rateLimiterPolicy;
+            return this;
+        }
+
+        //Sends a second copy of GET requests that are slower than usual and uses the first response.  Applies to
+        //executeAsync, and to execute and submit unless the response is streamed to a ResponseBodyHandler
+        public DevPortalExecutorBuilder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        //Caches the responses of GET requests such as StatusRequest and MetaDataRequest for timeToLive milliseconds,
+        //or less when Cache-Control says so, and revalidates them by ETag.  Streamed responses are not cached.
+        //Entries about a token are dropped when a request changing it, such as a NotificationsRequest, succeeds
+        public DevPortalExecutorBuilder setResponseCache(ResponseCache responseCache, long timeToLive) {
+            this.responseCache = responseCache;
+            this.responseCacheTimeToLive = timeToLive;
+            return this;
+        }
+
+        //Lets concurrent identical GET requests share one call to the server and its response instead of each
+        //sending their own.  Streamed responses are not shared, and cancelling one of the callers does not abort
+        //the shared call
+        public DevPortalExecutorBuilder setCoalesceRequests(boolean coalesceRequests) {
+            this.coalesceRequests = coalesceRequests;
+            return this;
+        }
+
+        //Receives latency and connection pool metrics, for example a MicrometerApiClientMetrics
+        public DevPortalExecutorBuilder setMetrics(ApiClientMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        //Runs the requests passed to submit on a new virtual thread each.  Requires Java 21 or later, check
+        //VirtualThreads.isSupported() before enabling it
+        public DevPortalExecutorBuilder setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        //Executor the requests passed to submit block on when virtual threads are not used, also prepares the
+        //asynchronous attempts a timer starts, such as retries, hedges and attempts that waited for a permit.
+        //Defaults to a shared pool of daemon threads for submit and the common fork-join pool for those attempts
+        public DevPortalExecutorBuilder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        //Maximum number of blocking requests in progress at the same time, further callers wait for a permit.
+        //Unlimited when not set, beyond the size of the connection pool
+        public DevPortalExecutorBuilder setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
         public ApiClient createDevPortalExecutor() {
-            return new ApiClient(endpoint, signingAlgorithm, tokenRequesterId, encryptionKeyId,
-                    encryptionKeyStr, signingKeyId, signingKeyStr, timeout);
+            return new ApiClient(this);
         }
     }
 
@@ -125,129 +386,1075 @@ public class ApiClient {
         testOverride = override;
     }
 
-    //Returns the proper http request based on the dev portal request
-    private HttpRequestBase getHttpRequest(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider)
-            throws UnsupportedEncodingException {
+    //Returns the proper transport request based on the dev portal request.  The timeouts of the client are shortened
+    //to the time left before the deadline, and the entity tag of a cached response is sent so the server can answer
+    //304 when it has not changed
+    private TransportRequest getTransportRequest(HttpHost httpHost, ApiClientRequest request,
+                                                 AuthProvider authProvider, Deadline deadline, String etag) {
         String httpAction = request.getHttpAction();
-        String payload = null;
         String targetUrl = httpHost.toURI().toString() + request.getUri().toString();
+        TransportRequest.TransportRequestBuilder builder = new TransportRequest.TransportRequestBuilder()
+                .setUri(URI.create(targetUrl));
+        Map<String, String> headers;
         if (httpAction.equals("POST")) {
 
-            HttpPost httpPost = new HttpPost(request.getUri());
+            //The body is serialised, signed, hashed and sent as one array of UTF-8 bytes, never as a String
+            byte[] body;
             if (signingAlgorithm != null && signingKeyId != null && signingKeyStr != null && encryptionKeyId != null &&
                     encryptionKeyStr != null) {
-                payload = EncryptionUtility.getInstance().sign(signingAlgorithm, signingKeyId, signingKeyStr,
-                        request.toJson(encryptionKeyId, encryptionKeyStr));
+                long start = System.nanoTime();
+                byte[] encrypted = request.toJsonBytes(encryptionKeyId, encryptionKeyStr);
+                long signStart = System.nanoTime();
+                body = EncryptionUtility.getInstance().sign(signingAlgorithm, signingKeyId, signingKeyStr,
+                        encrypted);
+                recordPhase(request, RequestPhase.ENCRYPT, signStart - start);
+                recordPhase(request, RequestPhase.SIGN, System.nanoTime() - signStart);
+            } else {
+                body = request.toJsonBytes();
+            }
+
+            builder.setMethod("POST");
+            if (body != null) {
+                builder.setBody(body, "application/json");
+            }
+
+            long authStart = System.nanoTime();
+            headers = authProvider.generateAuthHeadersForBody(body, targetUrl, request.getHttpAction());
+            recordPhase(request, RequestPhase.AUTHENTICATE, System.nanoTime() - authStart);
+
+        } else {
+            builder.setMethod("GET");
+            long authStart = System.nanoTime();
+            headers = authProvider.generateAuthHeaders(null, targetUrl, request.getHttpAction());
+            recordPhase(request, RequestPhase.AUTHENTICATE, System.nanoTime() - authStart);
+        }
+
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.addHeader(header.getKey(), header.getValue());
+        }
+        if (tokenRequesterId != null && !"".equalsIgnoreCase(tokenRequesterId)) {
+            builder.addHeader(AuthHeaderNames.X_AMEX_TOKENREQUESTER_ID, tokenRequesterId);
+        }
+        if (etag != null) {
+            builder.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (maxResponseBodySize != null) {
+            builder.setMaxResponseBodySize(maxResponseBodySize);
+        }
+        setTimeouts(builder, deadline);
+        return builder.createTransportRequest();
+    }
+
+    /**
+     * Opens connections to the endpoint ahead of the first requests, so they do not pay for the TCP and TLS
+     * handshakes.  See {@link ConnectionPool#warmUp}.
+     *
+     * @return the number of connections that were opened
+     * @throws ExecutorException when the client sends through an HttpTransport, which does not use the pool
+     */
+    public int warmUp(int connections) {
+        if (!pooledTransport) {
+            throw new ExecutorException("Only the connection pool can be warmed up, this client uses a transport");
+        }
+        return connectionPool.warmUp(getHttpHost(), connections, connectTimeout);
+    }
+
+    HttpHost getHttpHost() {
+        if (testOverride) {  //To make unit tests fail correctly during testing.  Otherwise they hang trying to connect.
+            return new HttpHost("localhost", 55555, "http");
+        }
+        return new HttpHost(endpoint.getHostname(), endpoint.getPort(), endpoint.getScheme());
+    }
+
+    public ApiClientResponse execute(ApiClientRequest request, AuthProvider authProvider) {
+        return execute(getHttpHost(), request, authProvider);
+    }
+
+    /**
+     * Sends the request and passes the body of the response to the handler while it is read from the connection,
+     * so the body is never held in memory as a whole unless the handler does so.  The configured maximum response
+     * body size is enforced on the stream.  Errors, including those thrown by the handler, are reported as an
+     * ExecutorException.
+     */
+    public <T> T execute(ApiClientRequest request, AuthProvider authProvider, ResponseBodyHandler<T> handler) {
+        return execute(getHttpHost(), request, authProvider, handler);
+    }
+
+    /**
+     * Sends the request like {@link #execute(ApiClientRequest, AuthProvider)}, failing with a
+     * DeadlineExceededException when the response has not been received before the deadline.
+     */
+    public ApiClientResponse execute(ApiClientRequest request, AuthProvider authProvider, Deadline deadline) {
+        return execute(getHttpHost(), request, authProvider, BUFFERING_HANDLER, deadline);
+    }
+
+    /**
+     * Streams the response like {@link #execute(ApiClientRequest, AuthProvider, ResponseBodyHandler)}, failing with
+     * a DeadlineExceededException when the body has not been handled before the deadline.
+     */
+    public <T> T execute(ApiClientRequest request, AuthProvider authProvider, ResponseBodyHandler<T> handler,
+                         Deadline deadline) {
+        return execute(getHttpHost(), request, authProvider, handler, deadline);
+    }
+
+    /**
+     * Runs {@link #execute(ApiClientRequest, AuthProvider)} on the executor of the client, a new virtual thread per
+     * request when virtual threads are enabled.  Unlike {@link #executeAsync(ApiClientRequest, AuthProvider)} the
+     * request blocks a thread, which with virtual threads is cheap enough for tens of thousands of concurrent
+     * requests.  The returned future completes exceptionally with an ExecutorException when the request fails.
+     */
+    public CompletableFuture<ApiClientResponse> submit(ApiClientRequest request, AuthProvider authProvider) {
+        return submit(request, authProvider, BUFFERING_HANDLER);
+    }
+
+    /**
+     * Runs {@link #execute(ApiClientRequest, AuthProvider, ResponseBodyHandler)} on the executor of the client,
+     * see {@link #submit(ApiClientRequest, AuthProvider)}.
+     */
+    public <T> CompletableFuture<T> submit(final ApiClientRequest request, final AuthProvider authProvider,
+                                           final ResponseBodyHandler<T> handler) {
+        final HttpHost httpHost = getHttpHost();
+        return CompletableFuture.supplyAsync(() -> execute(httpHost, request, authProvider, handler),
+                (executor != null) ? executor : DefaultExecutorHolder.EXECUTOR);
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.  The request is signed, encrypted and authenticated
+     * exactly as in {@link #execute(ApiClientRequest, AuthProvider)}, then handed to the non-blocking HTTP client
+     * of the connection pool, whose I/O threads are shared by every ApiClient using that pool.  The returned
+     * future completes with the response, or exceptionally with an ExecutorException.  Cancelling the future aborts
+     * the underlying HTTP exchange and any further retries.
+     */
+    public CompletableFuture<ApiClientResponse> executeAsync(ApiClientRequest request, AuthProvider authProvider) {
+        return executeAsync(getHttpHost(), request, authProvider, null, null);
+    }
+
+    /**
+     * Sends the request like {@link #executeAsync(ApiClientRequest, AuthProvider)}.  The returned future completes
+     * exceptionally with a DeadlineExceededException once the deadline passes, aborting the exchange in progress.
+     */
+    public CompletableFuture<ApiClientResponse> executeAsync(ApiClientRequest request, AuthProvider authProvider,
+                                                             Deadline deadline) {
+        return executeAsync(getHttpHost(), request, authProvider, deadline, null);
+    }
+
+    //Sends the request like executeAsync, encrypting and signing every attempt on the given executor rather than
+    //the calling thread.  BatchExecutor sends through here, so batches get the same caching and policies
+    CompletableFuture<ApiClientResponse> executeAsync(ApiClientRequest request, AuthProvider authProvider,
+                                                      Executor prepareExecutor) {
+        return executeAsync(getHttpHost(), request, authProvider, null, prepareExecutor);
+    }
+
+    private CompletableFuture<ApiClientResponse> executeAsync(final HttpHost httpHost,
+                                                              final ApiClientRequest request,
+                                                              final AuthProvider authProvider,
+                                                              Deadline requested, Executor prepareExecutor) {
+        final long start = System.nanoTime();
+        final Deadline deadline = getDeadline(requested);
+        if ((responseCache != null || inFlightRequests != null) && isCacheable(request)) {
+            return sendCachedAsync(httpHost, request, authProvider, deadline, prepareExecutor, start);
+        }
+
+        final CompletableFuture<ApiClientResponse> result = sendAsync(httpHost, request, authProvider, deadline,
+                null, prepareExecutor);
+        result.whenComplete((response, throwable) -> recordRequest(request, start, throwable));
+        if (responseCache == null || request.getTokenReferenceId() == null) {
+            return result;
+        }
+
+        //Invalidate before the caller sees the outcome, so a lookup made right after it does not read a stale entry
+        final CompletableFuture<ApiClientResponse> invalidated = new CompletableFuture<ApiClientResponse>();
+        result.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                invalidateCache(request);
+                invalidated.complete(response);
             } else {
-                payload = request.toJson();
+                invalidated.completeExceptionally(unwrap(throwable));
             }
+        });
+        return cancelling(invalidated, result);
+    }
 
-            if (payload != null) {
-                StringEntity sentity = new StringEntity(payload);
+    private CompletableFuture<ApiClientResponse> sendCachedAsync(HttpHost httpHost, final ApiClientRequest request,
+                                                                 AuthProvider authProvider, Deadline deadline,
+                                                                 Executor prepareExecutor, final long start) {
+        final String key = getCacheKey(request);
+        final CachedResponse cached = (responseCache != null) ? responseCache.get(key) : null;
+        if (cached != null && cached.isFresh()) {
+            return CompletableFuture.completedFuture(cached.toApiClientResponse());
+        }
+        if (inFlightRequests == null) {
+            return fetchAsync(key, cached, httpHost, request, authProvider, deadline, prepareExecutor, start);
+        }
 
-                sentity.setContentType("application/json");
+        final CompletableFuture<ApiClientResponse> shared = new CompletableFuture<ApiClientResponse>();
+        CompletableFuture<ApiClientResponse> inFlight = inFlightRequests.putIfAbsent(key, shared);
+        if (inFlight != null) {
+            return withDeadline(share(inFlight), deadline);
+        }
+        fetchAsync(key, cached, httpHost, request, authProvider, deadline, prepareExecutor, start).whenComplete(
+                (response, throwable) -> {
+                    //Removed first so callers arriving after the outcome send a request of their own
+                    inFlightRequests.remove(key, shared);
+                    if (throwable == null) {
+                        shared.complete(response);
+                    } else {
+                        shared.completeExceptionally(unwrap(throwable));
+                    }
+                });
+        return share(shared);
+    }
 
-                httpPost.setEntity(sentity);
+    private CompletableFuture<ApiClientResponse> fetchAsync(final String key, final CachedResponse cached,
+                                                            HttpHost httpHost, final ApiClientRequest request,
+                                                            AuthProvider authProvider, Deadline deadline,
+                                                            Executor prepareExecutor, final long start) {
+        final CompletableFuture<ApiClientResponse> result = sendAsync(httpHost, request, authProvider, deadline,
+                (cached != null) ? cached.getEtag() : null, prepareExecutor);
+        result.whenComplete((response, throwable) -> recordRequest(request, start, throwable));
+        final CompletableFuture<ApiClientResponse> cachedResult = new CompletableFuture<ApiClientResponse>();
+        result.whenComplete((response, throwable) -> {
+            try {
+                if (throwable == null) {
+                    if (responseCache != null) {
+                        cacheResponse(key, request, response);
+                    }
+                    cachedResult.complete(response);
+                    return;
+                }
+                ApiClientResponse revalidated = revalidate(key, cached, unwrap(throwable));
+                if (revalidated != null) {
+                    cachedResult.complete(revalidated);
+                } else {
+                    cachedResult.completeExceptionally(unwrap(throwable));
+                }
+            } catch (RuntimeException e) {
+                cachedResult.completeExceptionally(e);
             }
+        });
+        return cancelling(cachedResult, result);
+    }
 
-            Map<String, String> headers = authProvider.generateAuthHeaders(payload, targetUrl, request.getHttpAction());
-            for (Map.Entry<String, String> header : headers.entrySet()) {
-                httpPost.addHeader(header.getKey(), header.getValue());
+    //Cancels the source when the future derived from it is cancelled
+    private static <T> CompletableFuture<T> cancelling(final CompletableFuture<T> derived,
+                                                       final CompletableFuture<?> source) {
+        derived.whenComplete((value, throwable) -> {
+            if (derived.isCancelled()) {
+                source.cancel(true);
             }
-            return httpPost;
+        });
+        return derived;
+    }
 
-        } else {
-            HttpGet httpGet = new HttpGet(request.getUri());
-            Map<String, String> headers = authProvider.generateAuthHeaders(payload, targetUrl, request.getHttpAction());
-            for (Map.Entry<String, String> header : headers.entrySet()) {
-                httpGet.addHeader(header.getKey(), header.getValue());
+    //A future completing with the shared one, cancelling it leaves the shared call and its other callers alone
+    private static <T> CompletableFuture<T> share(CompletableFuture<T> shared) {
+        final CompletableFuture<T> copy = new CompletableFuture<T>();
+        shared.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                copy.complete(value);
+            } else {
+                copy.completeExceptionally(unwrap(throwable));
             }
-            return httpGet;
+        });
+        return copy;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return (throwable instanceof CompletionException && throwable.getCause() != null) ?
+                throwable.getCause() : throwable;
+    }
+
+    //Sends the request through the non-blocking client applying the retry, hedging, rate limiter, circuit breaker
+    //and bulkhead policies and the deadline.  Attempts are prepared on the calling thread unless an executor is
+    //given for them
+    private CompletableFuture<ApiClientResponse> sendAsync(final HttpHost httpHost, final ApiClientRequest request,
+                                                           final AuthProvider authProvider, final Deadline deadline,
+                                                           final String etag, final Executor prepareExecutor) {
+        Supplier<CompletableFuture<ApiClientResponse>> send = (prepareExecutor == null) ?
+                () -> sendAsync(request, prepareRequest(httpHost, request, authProvider, deadline, etag)) :
+                () -> CompletableFuture
+                        .supplyAsync(() -> prepareRequest(httpHost, request, authProvider, deadline, etag),
+                                prepareExecutor)
+                        .thenCompose(transportRequest -> sendAsync(request, transportRequest));
+        Supplier<CompletableFuture<ApiClientResponse>> attempt = () -> rateLimitedAsync(request, authProvider,
+                deadline, () -> guardAsync(request, send));
+        Executor executor = (prepareExecutor != null) ? prepareExecutor : getAsyncExecutor();
+        if (hedgingPolicy != null) {
+            final Supplier<CompletableFuture<ApiClientResponse>> unhedged = attempt;
+            attempt = () -> hedgingPolicy.executeAsync(endpointName, request, unhedged,
+                    hedgeWon -> metrics.recordHedge(endpointName, getRequestType(request), hedgeWon), executor);
         }
+
+        CompletableFuture<ApiClientResponse> result = (retryPolicy != null) ?
+                retryPolicy.executeAsync(request, deadline, attempt, executor) : attempt.get();
+        return withDeadline(result, deadline);
     }
 
-    public ApiClientResponse execute(ApiClientRequest request, AuthProvider authProvider) {
+    //Waits for a request sent through the non-blocking client, used to hedge blocking calls and to join a call
+    //another caller is making
+    private ApiClientResponse await(CompletableFuture<ApiClientResponse> response) {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExecutorException) {
+                throw (ExecutorException) cause;
+            }
+            throw new ExecutorException("Exception sending request to server: " + cause.getMessage(),
+                    (cause instanceof Exception) ? (Exception) cause : e);
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ExecutorException("Interrupted waiting for response from server", e);
+        }
+    }
 
-        HttpHost httpHost = new HttpHost(endpoint.getHostname(), endpoint.getPort(), endpoint.getScheme());
+    //Signs, encrypts and authenticates the request, this is the CPU bound part of sending a request
+    private TransportRequest prepareRequest(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider,
+                                            Deadline deadline, String etag) {
+        checkDeadline(deadline);
+        try {
+            return getTransportRequest(httpHost, request, authProvider, deadline, etag);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ExecutorException("Exception sending request to server: " + e.getMessage(), e);
+        }
+    }
 
-        if (testOverride) {  //To make unit tests fail correctly during testing.  Otherwise they hang trying to connect.
-            httpHost = new HttpHost("localhost", 55555, "http");
+    //Returns the earlier of the deadline of the call and the total timeout of the client
+    private Deadline getDeadline(Deadline requested) {
+        if (totalTimeout == null) {
+            return requested;
         }
-        return execute(httpHost, request, authProvider);
+        return Deadline.after(totalTimeout, TimeUnit.MILLISECONDS).min(requested);
+    }
 
+    //Completes the returned future with a DeadlineExceededException and cancels the result once the deadline passes
+    private CompletableFuture<ApiClientResponse> withDeadline(final CompletableFuture<ApiClientResponse> result,
+                                                              Deadline deadline) {
+        if (deadline == null) {
+            return result;
+        }
+        final CompletableFuture<ApiClientResponse> bounded = new CompletableFuture<ApiClientResponse>();
+        final ScheduledFuture<?> timer = deadline.whenExpired(() -> {
+            if (bounded.completeExceptionally(
+                    new DeadlineExceededException("Deadline exceeded sending request to server"))) {
+                result.cancel(true);
+            }
+        });
+        result.whenComplete((response, throwable) -> {
+            timer.cancel(false);
+            if (throwable == null) {
+                bounded.complete(response);
+            } else {
+                bounded.completeExceptionally((throwable instanceof CompletionException &&
+                        throwable.getCause() != null) ? throwable.getCause() : throwable);
+            }
+        });
+        bounded.whenComplete((response, throwable) -> {
+            if (bounded.isCancelled()) {
+                result.cancel(true);
+            }
+        });
+        return bounded;
     }
 
-    private ApiClientResponse execute(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider) {
+    private static void checkDeadline(Deadline deadline) {
+        if (deadline != null && deadline.isExpired()) {
+            throw new DeadlineExceededException("Deadline exceeded before sending request to server");
+        }
+    }
+
+    //Sends a prepared request through the transport without blocking
+    private CompletableFuture<ApiClientResponse> sendAsync(final ApiClientRequest request,
+                                                           TransportRequest transportRequest) {
+        final CompletableFuture<ApiClientResponse> result = new CompletableFuture<ApiClientResponse>();
+        final long start = System.nanoTime();
+        final CompletableFuture<TransportResponse> exchange;
         try {
+            exchange = transport.executeAsync(transportRequest);
+        } catch (Exception e) {
+            result.completeExceptionally(
+                    new ExecutorException("Exception sending request to server: " + e.getMessage(), e));
+            return result;
+        }
 
-            if (httpClient == null) {
-                httpClient = createClient();
+        exchange.whenComplete((response, throwable) -> {
+            if (exchange.isCancelled()) {
+                result.cancel(false);
+                return;
             }
-            HttpRequestBase httpRequest = getHttpRequest(httpHost, request, authProvider);
-
-            if (tokenRequesterId != null && !"".equalsIgnoreCase(tokenRequesterId)) {
-                httpRequest.addHeader(AuthHeaderNames.X_AMEX_TOKENREQUESTER_ID, tokenRequesterId);
+            if (throwable != null) {
+                result.completeExceptionally(toExecutorException(unwrap(throwable)));
+                return;
+            }
+            try {
+                //The non-blocking exchange does not report the lease separately
+                long received = System.nanoTime();
+                recordPhase(request, RequestPhase.NETWORK, received - start);
+                ApiClientResponse apiClientResponse = getApiClientResponse(response);
+                recordPhase(request, RequestPhase.PARSE, System.nanoTime() - received);
+                result.complete(apiClientResponse);
+            } catch (Exception e) {
+                result.completeExceptionally(toExecutorException(e));
+            } finally {
+                close(response);
             }
+        });
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
 
-            HttpResponse response = httpClient.execute(httpHost, httpRequest);
+    private static ExecutorException toExecutorException(Throwable throwable) {
+        if (throwable instanceof ExecutorException) {
+            return (ExecutorException) throwable;
+        }
+        return new ExecutorException("Exception sending request to server: " + throwable.getMessage(),
+                (throwable instanceof Exception) ? (Exception) throwable : new ExecutionException(throwable));
+    }
 
-            if (response != null && response.getStatusLine().getStatusCode() != 200) {
-                throw new ExecutorException("Received http status from server: " +
-                        response.getStatusLine().getStatusCode());
-            }
+    //Package private so tests and benchmarks can target a local server
+    ApiClientResponse execute(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider) {
+        return execute(httpHost, request, authProvider, BUFFERING_HANDLER);
+    }
+
+    <T> T execute(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider,
+                  ResponseBodyHandler<T> handler) {
+        return execute(httpHost, request, authProvider, handler, null);
+    }
+
+    private <T> T execute(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider,
+                          ResponseBodyHandler<T> handler, Deadline requested) {
+        if (handler == BUFFERING_HANDLER && (responseCache != null || inFlightRequests != null) &&
+                isCacheable(request)) {
+            @SuppressWarnings("unchecked")
+            T response = (T) executeCached(httpHost, request, authProvider, requested);
+            return response;
+        }
+        if (responseCache == null) {
+            return execute(httpHost, request, authProvider, handler, requested, null);
+        }
+        T result = execute(httpHost, request, authProvider, handler, requested, null);
+        invalidateCache(request);
+        return result;
+    }
 
-            if (response == null) {
-                return new ApiClientResponse(null, null);
+    private ApiClientResponse executeCached(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider,
+                                            Deadline requested) {
+        String key = getCacheKey(request);
+        CachedResponse cached = (responseCache != null) ? responseCache.get(key) : null;
+        if (cached != null && cached.isFresh()) {
+            return cached.toApiClientResponse();
+        }
+        if (inFlightRequests == null) {
+            return fetch(key, cached, httpHost, request, authProvider, requested);
+        }
 
+        CompletableFuture<ApiClientResponse> shared = new CompletableFuture<ApiClientResponse>();
+        CompletableFuture<ApiClientResponse> inFlight = inFlightRequests.putIfAbsent(key, shared);
+        if (inFlight != null) {
+            return await(withDeadline(share(inFlight), getDeadline(requested)));
+        }
+        try {
+            ApiClientResponse response = fetch(key, cached, httpHost, request, authProvider, requested);
+            inFlightRequests.remove(key, shared);
+            shared.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            inFlightRequests.remove(key, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private ApiClientResponse fetch(String key, CachedResponse cached, HttpHost httpHost, ApiClientRequest request,
+                                    AuthProvider authProvider, Deadline requested) {
+        try {
+            ApiClientResponse response = execute(httpHost, request, authProvider, BUFFERING_HANDLER, requested,
+                    (cached != null) ? cached.getEtag() : null);
+            if (responseCache != null) {
+                cacheResponse(key, request, response);
+            }
+            return response;
+        } catch (ExecutorException e) {
+            ApiClientResponse revalidated = revalidate(key, cached, e);
+            if (revalidated == null) {
+                throw e;
+            }
+            return revalidated;
+        }
+    }
+
+    private <T> T execute(final HttpHost httpHost, final ApiClientRequest request, final AuthProvider authProvider,
+                          final ResponseBodyHandler<T> handler, Deadline requested, final String etag) {
+        final Deadline deadline = getDeadline(requested);
+        if (concurrencyLimit != null) {
+            try {
+                if (deadline == null) {
+                    concurrencyLimit.acquire();
+                } else if (!concurrencyLimit.tryAcquire(deadline.remaining(TimeUnit.NANOSECONDS),
+                        TimeUnit.NANOSECONDS)) {
+                    throw new DeadlineExceededException("Deadline exceeded waiting to send request to server");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExecutorException("Interrupted waiting to send request to server", e);
+            }
+        }
+        long start = System.nanoTime();
+        Supplier<T> attempt = () -> rateLimited(request, authProvider, deadline,
+                () -> guard(request, deadline,
+                        () -> executeOnce(httpHost, request, authProvider, handler, deadline, etag)));
+        try {
+            T result;
+            if (handler == BUFFERING_HANDLER && hedgingPolicy != null && hedgingPolicy.isHedgeable(request)) {
+                @SuppressWarnings("unchecked")
+                T response = (T) await(sendAsync(httpHost, request, authProvider, deadline, etag, null));
+                result = response;
+            } else if (retryPolicy == null) {
+                result = attempt.get();
             } else {
-                return new ApiClientResponse(response.getAllHeaders(), EntityUtils.toString(response.getEntity()));
+                result = retryPolicy.execute(request, deadline, attempt::get);
+            }
+            recordRequest(request, start, null);
+            return result;
+        } catch (HandlerFailure e) {
+            recordRequest(request, start, e.failure);
+            throw e.failure;
+        } catch (RuntimeException e) {
+            recordRequest(request, start, e);
+            throw e;
+        } finally {
+            if (concurrencyLimit != null) {
+                concurrencyLimit.release();
+            }
+        }
+    }
 
+    private <T> T executeOnce(HttpHost httpHost, ApiClientRequest request, AuthProvider authProvider,
+                              ResponseBodyHandler<T> handler, Deadline deadline, String etag) {
+        TransportResponse response = null;
+        ScheduledFuture<?> abort = null;
+        try {
+
+            checkDeadline(deadline);
+            TransportRequest transportRequest = getTransportRequest(httpHost, request, authProvider, deadline, etag);
+            if (deadline != null) {
+                //The socket timeout applies per read, a server trickling the response would outlast the deadline
+                abort = deadline.whenExpired(transportRequest::abort);
+            }
+
+            long start = System.nanoTime();
+            response = transport.execute(transportRequest);
+            long received = System.nanoTime();
+            long lease = (response != null) ? response.getConnectionLeaseNanos() : -1;
+            if (lease >= 0) {
+                recordPhase(request, RequestPhase.CONNECTION_LEASE, lease);
+                start += lease;
             }
+            recordPhase(request, RequestPhase.NETWORK, received - start);
+            T result = handleResponse(response, handler);
+            recordPhase(request, RequestPhase.PARSE, System.nanoTime() - received);
+            return result;
 
+        } catch (HandlerFailure | DeadlineExceededException | HttpStatusException e) {
+            throw e;
         } catch (Exception e) {
+            if (deadline != null && deadline.isExpired()) {
+                throw new DeadlineExceededException("Deadline exceeded sending request to server", e);
+            }
             throw new ExecutorException("Exception sending request to server: " + e.getMessage(), e);
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+            //A body read to the end has already released its connection, otherwise the connection is dropped
+            close(response);
+        }
+    }
+
+    private static void close(TransportResponse response) {
+        if (response != null) {
+            try {
+                response.close();
+            } catch (IOException e) {
+                //nothing more to release
+            }
+        }
+    }
+
+    private static boolean isCacheable(ApiClientRequest request) {
+        return "GET".equals(request.getHttpAction());
+    }
+
+    //Responses depend on the environment and the token requester as well as the resource
+    private String getCacheKey(ApiClientRequest request) {
+        return endpointName + '|' + ((tokenRequesterId != null) ? tokenRequesterId : "") + '|' + request.getUri();
+    }
+
+    private void cacheResponse(String key, ApiClientRequest request, ApiClientResponse response) {
+        Header[] headers = response.getHeaders();
+        long expiresAt = CachedResponse.getExpiresAt(headers, responseCacheTimeToLive, System.currentTimeMillis());
+        if (expiresAt >= 0) {
+            String body = response.getBody();
+            responseCache.put(key, new CachedResponse(headers, (body != null) ? body.getBytes(UTF8) : null,
+                    CachedResponse.getEtag(headers), request.getTokenReferenceId(), expiresAt));
+        }
+    }
+
+    //Returns the cached response when the failure is the server confirming it has not changed, otherwise null
+    private ApiClientResponse revalidate(String key, CachedResponse cached, Throwable failure) {
+        if (cached == null) {
+            return null;
+        }
+        for (Throwable current = failure; current != null && current.getCause() != current;
+             current = current.getCause()) {
+            if (current instanceof HttpStatusException) {
+                HttpStatusException statusException = (HttpStatusException) current;
+                if (statusException.getStatusCode() != 304) {
+                    return null;
+                }
+                long expiresAt = CachedResponse.getExpiresAt(statusException.getHeaders(), responseCacheTimeToLive,
+                        System.currentTimeMillis());
+                if (expiresAt >= 0) {
+                    responseCache.put(key, cached.withExpiresAt(expiresAt));
+                }
+                return cached.toApiClientResponse();
+            }
+        }
+        return null;
+    }
+
+    private void invalidateCache(ApiClientRequest request) {
+        String tokenReferenceId = request.getTokenReferenceId();
+        if (tokenReferenceId != null && !isCacheable(request)) {
+            responseCache.invalidate(tokenReferenceId);
+        }
+    }
+
+    //Waits for a permit of the rate limiter of the client key and API before running the attempt, the time spent
+    //waiting does not count towards the round trip times seen by the other policies
+    private <T> T rateLimited(ApiClientRequest request, AuthProvider authProvider, Deadline deadline,
+                              Supplier<T> attempt) {
+        RateLimiter rateLimiter = getRateLimiter(request, authProvider);
+        if (rateLimiter == null) {
+            return attempt.get();
+        }
+        long maxWait = getMaxRateLimitWait(deadline);
+        if (!rateLimiter.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+            throw rateLimiter.exceeded();
+        }
+        try {
+            T result = attempt.get();
+            if (result instanceof ApiClientResponse) {
+                rateLimiter.onResponse(200, ((ApiClientResponse) result).getHeaders());
+            }
+            return result;
+        } catch (RuntimeException e) {
+            HttpStatusException statusException = getStatusException(e);
+            if (statusException != null) {
+                rateLimiter.onResponse(statusException.getStatusCode(), statusException.getHeaders());
+            }
+            throw e;
+        }
+    }
+
+    //Runs the attempt once a permit of the rate limiter of the client key and API is available, without blocking
+    private CompletableFuture<ApiClientResponse> rateLimitedAsync(ApiClientRequest request,
+                                                                  AuthProvider authProvider, Deadline deadline,
+                                                                  Supplier<CompletableFuture<ApiClientResponse>>
+                                                                          attempt) {
+        final RateLimiter rateLimiter = getRateLimiter(request, authProvider);
+        if (rateLimiter == null) {
+            return attempt.get();
+        }
+        final CompletableFuture<ApiClientResponse> result = new CompletableFuture<ApiClientResponse>();
+        final CompletableFuture<Void> permit = rateLimiter.acquireAsync(getMaxRateLimitWait(deadline),
+                TimeUnit.MILLISECONDS);
+        BiConsumer<Void, Throwable> send = (ignored, throwable) -> {
+            if (throwable != null) {
+                result.completeExceptionally(unwrap(throwable));
+                return;
+            }
+            if (result.isDone()) {
+                rateLimiter.release();
+                return;
+            }
+            CompletableFuture<ApiClientResponse> sent;
+            try {
+                sent = attempt.get();
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            cancelling(result, sent);
+            sent.whenComplete((response, failure) -> {
+                if (failure == null) {
+                    rateLimiter.onResponse(200, response.getHeaders());
+                    result.complete(response);
+                    return;
+                }
+                HttpStatusException statusException = getStatusException(failure);
+                if (statusException != null) {
+                    rateLimiter.onResponse(statusException.getStatusCode(), statusException.getHeaders());
+                }
+                result.completeExceptionally(unwrap(failure));
+            });
+        };
+        //A caller giving up or a deadline passing while the permit is pending returns it to the bucket
+        result.whenComplete((response, throwable) -> permit.cancel(false));
+        //A delayed permit is granted on the shared timer thread, prepare and sign the request elsewhere
+        if (permit.isDone()) {
+            permit.whenComplete(send);
+        } else {
+            permit.whenCompleteAsync(send, getAsyncExecutor());
+        }
+        return result;
+    }
+
+    //Runs the work of asynchronous calls that is triggered by a timer, such as preparing a delayed attempt
+    private Executor getAsyncExecutor() {
+        return (executor != null) ? executor : ForkJoinPool.commonPool();
+    }
+
+    private RateLimiter getRateLimiter(ApiClientRequest request, AuthProvider authProvider) {
+        if (rateLimiterPolicy == null) {
+            return null;
+        }
+        String clientKey = (authProvider instanceof BaseAuthProvider) ?
+                ((BaseAuthProvider) authProvider).getConfigurationValue(ConfigurationKeys.CLIENT_KEY) : null;
+        return rateLimiterPolicy.getRateLimiter(clientKey, request.getUri().toString());
+    }
+
+    //Waiting for a permit beyond the deadline would only end in a DeadlineExceededException
+    private long getMaxRateLimitWait(Deadline deadline) {
+        long maxWait = rateLimiterPolicy.getMaxWaitDuration();
+        return (deadline != null) ? Math.min(maxWait, Math.max(0, deadline.remainingMillis())) : maxWait;
+    }
+
+    //Runs one blocking attempt through the concurrency limiter of the endpoint and the bulkhead and circuit breaker
+    //of the request type, waiting for their permits no longer than the deadline allows
+    private <T> T guard(ApiClientRequest request, Deadline deadline, Supplier<T> attempt) {
+        if (circuitBreakerPolicy == null && bulkheadPolicy == null && adaptiveLimiterPolicy == null) {
+            return attempt.get();
+        }
+        AdaptiveLimiter limiter = acquireLimiter(true, deadline);
+        try {
+            Bulkhead bulkhead = acquireBulkhead(request, true, deadline);
+            try {
+                CircuitBreaker circuitBreaker = getCircuitBreaker(request);
+                long permission = acquirePermission(circuitBreaker);
+                long start = System.nanoTime();
+                try {
+                    T result = attempt.get();
+                    onResult(circuitBreaker, permission, limiter, System.nanoTime() - start, null);
+                    limiter = null;
+                    return result;
+                } catch (RuntimeException e) {
+                    onResult(circuitBreaker, permission, limiter, System.nanoTime() - start, e);
+                    limiter = null;
+                    throw e;
+                }
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+            }
+        } finally {
+            //Rejected by the bulkhead or the circuit breaker before anything was sent
+            if (limiter != null) {
+                limiter.release();
+            }
+        }
+    }
+
+    //Runs one non-blocking attempt through the concurrency limiter of the endpoint and the bulkhead and circuit
+    //breaker of the request type, never waits for a permit
+    private CompletableFuture<ApiClientResponse> guardAsync(ApiClientRequest request,
+                                                            Supplier<CompletableFuture<ApiClientResponse>> attempt) {
+        CompletableFuture<ApiClientResponse> result;
+        if (circuitBreakerPolicy == null && bulkheadPolicy == null && adaptiveLimiterPolicy == null) {
+            try {
+                result = attempt.get();
+            } catch (Exception e) {
+                result = new CompletableFuture<ApiClientResponse>();
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        AdaptiveLimiter limiter = null;
+        Bulkhead bulkhead = null;
+        CircuitBreaker circuitBreaker = null;
+        long permission = CircuitBreaker.NOT_PERMITTED;
+        boolean sent = false;
+        long start = System.nanoTime();
+        try {
+            limiter = acquireLimiter(false, null);
+            bulkhead = acquireBulkhead(request, false, null);
+            circuitBreaker = getCircuitBreaker(request);
+            permission = acquirePermission(circuitBreaker);
+            sent = true;
+            result = attempt.get();
+        } catch (Exception e) {
+            result = new CompletableFuture<ApiClientResponse>();
+            result.completeExceptionally(e);
+        }
+        if (!sent && limiter != null) {
+            limiter.release();
+        }
+
+        final AdaptiveLimiter acquiredLimiter = (sent) ? limiter : null;
+        final Bulkhead acquiredBulkhead = bulkhead;
+        final CircuitBreaker acquiredCircuitBreaker = (sent) ? circuitBreaker : null;
+        final long acquiredPermission = permission;
+        result.whenComplete((response, throwable) -> {
+            onResult(acquiredCircuitBreaker, acquiredPermission, acquiredLimiter, System.nanoTime() - start,
+                    throwable);
+            if (acquiredBulkhead != null) {
+                acquiredBulkhead.release();
+            }
+        });
+        return result;
+    }
+
+    //Reports the outcome of an attempt to the circuit breaker and gives the permit of the limiter back
+    private static void onResult(CircuitBreaker circuitBreaker, long permission, AdaptiveLimiter limiter, long nanos,
+                                 Throwable failure) {
+        boolean serverFailure = isCircuitBreakerFailure(failure);
+        if (circuitBreaker != null) {
+            circuitBreaker.onResult(permission, nanos, serverFailure);
+        }
+        if (limiter != null) {
+            if (failure == null || serverFailure || getStatusCode(failure) == 429) {
+                limiter.onSample(nanos, failure != null);
+            } else {
+                limiter.release();
+            }
+        }
+    }
+
+    //A blocking call waits for a permit, but no longer than the deadline allows
+    private AdaptiveLimiter acquireLimiter(boolean mayBlock, Deadline deadline) {
+        if (adaptiveLimiterPolicy == null) {
+            return null;
+        }
+        AdaptiveLimiter limiter = adaptiveLimiterPolicy.getLimiter(endpointName);
+        if (!limiter.tryAcquire(mayBlock, deadline)) {
+            checkDeadline(deadline);
+            throw new ConcurrencyLimitExceededException("Concurrency limit of " + limiter.getLimit() +
+                    " requests reached for " + limiter.getName());
+        }
+        return limiter;
+    }
+
+    private Bulkhead acquireBulkhead(ApiClientRequest request, boolean mayBlock, Deadline deadline) {
+        if (bulkheadPolicy == null) {
+            return null;
+        }
+        Bulkhead bulkhead = bulkheadPolicy.getBulkhead(endpointName, request.getClass());
+        if (!bulkhead.tryAcquire(mayBlock, deadline)) {
+            checkDeadline(deadline);
+            throw new BulkheadFullException("Maximum of " + bulkhead.getMaxConcurrentCalls() +
+                    " concurrent requests reached for " + bulkhead.getName());
         }
+        return bulkhead;
     }
 
-    private CloseableHttpClient createClient() {
+    private CircuitBreaker getCircuitBreaker(ApiClientRequest request) {
+        return (circuitBreakerPolicy != null) ?
+                circuitBreakerPolicy.getCircuitBreaker(endpointName, request.getClass()) : null;
+    }
+
+    //The permission is handed back with the outcome, so a call permitted before the breaker changed state is ignored
+    private static long acquirePermission(CircuitBreaker circuitBreaker) {
+        if (circuitBreaker == null) {
+            return CircuitBreaker.NOT_PERMITTED;
+        }
+        long permission = circuitBreaker.tryAcquirePermission();
+        if (permission == CircuitBreaker.NOT_PERMITTED) {
+            throw new CircuitBreakerOpenException("Circuit breaker is open for " + circuitBreaker.getName());
+        }
+        return permission;
+    }
+
+    //Client errors, failing response handlers and cancellations say nothing about the health of the server
+    private static boolean isCircuitBreakerFailure(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure == null || failure instanceof HandlerFailure || failure instanceof CancellationException) {
+            return false;
+        }
+        //The deadline passed before anything was sent
+        if (failure instanceof DeadlineExceededException && failure.getCause() == null) {
+            return false;
+        }
+        int statusCode = getStatusCode(failure);
+        return statusCode < 0 || statusCode >= 500;
+    }
+
+    //Returns the http status the failure was caused by, -1 when it was not caused by one
+    private static int getStatusCode(Throwable failure) {
+        HttpStatusException statusException = getStatusException(failure);
+        return (statusException != null) ? statusException.getStatusCode() : -1;
+    }
+
+    private static HttpStatusException getStatusException(Throwable failure) {
+        for (Throwable current = failure; current != null && current.getCause() != current;
+             current = current.getCause()) {
+            if (current instanceof HttpStatusException) {
+                return (HttpStatusException) current;
+            }
+        }
+        return null;
+    }
+
+    private void recordPhase(ApiClientRequest request, RequestPhase phase, long nanos) {
+        metrics.recordPhase(endpointName, getRequestType(request), phase, nanos);
+    }
 
+    private void recordRequest(ApiClientRequest request, long start, Throwable failure) {
+        if (metrics == NoopApiClientMetrics.INSTANCE) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+
+        String outcome = "success";
+        if (failure != null) {
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null) ?
+                    failure.getCause() : failure;
+            outcome = cause.getClass().getSimpleName();
+            for (Throwable current = cause; current != null; current = current.getCause()) {
+                if (current instanceof HttpStatusException) {
+                    outcome = String.valueOf(((HttpStatusException) current).getStatusCode());
+                    break;
+                }
+                if (current.getCause() == current) {
+                    break;
+                }
+            }
+        }
+        metrics.recordRequest(endpointName, getRequestType(request), outcome, nanos);
+    }
+
+    private static String getRequestType(ApiClientRequest request) {
+        String name = request.getClass().getSimpleName();
+        return name.isEmpty() ? request.getClass().getName() : name;
+    }
+
+    private ApiClientResponse getApiClientResponse(TransportResponse response) throws IOException {
+        return handleResponse(response, BUFFERING_HANDLER);
+    }
+
+    private <T> T handleResponse(TransportResponse response, ResponseBodyHandler<T> handler) throws IOException {
+        if (response == null) {
+            return handler.handle(null, new ByteArrayInputStream(new byte[0]));
+        }
+
+        Header[] headers = toHeaders(response);
+        if (response.getStatusCode() != 200) {
+            throw new HttpStatusException(response.getStatusCode(), headers);
+        }
+
+        long contentLength = response.getContentLength();
+        if (maxResponseBodySize != null && contentLength > maxResponseBodySize) {
+            throw new ExecutorException("Response body of " + contentLength + " bytes exceeds the limit of " +
+                    maxResponseBodySize + " bytes");
+        }
+
+        InputStream body = response.getBody();
         try {
+            if (maxResponseBodySize != null) {
+                body = new BoundedInputStream(body, maxResponseBodySize);
+            }
+            if (handler != BUFFERING_HANDLER) {
+                return handleOnce(handler, headers, body);
+            }
+            return handler.handle(headers, body);
+        } finally {
+            body.close();
+        }
+    }
+
+    private static Header[] toHeaders(TransportResponse response) {
+        Header[] headers = new Header[response.getHeaders().size()];
+        int i = 0;
+        for (Map.Entry<String, String> header : response.getHeaders()) {
+            headers[i++] = new BasicHeader(header.getKey(), header.getValue());
+        }
+        return headers;
+    }
+
+    //Part of the body may already have been passed on, so a failing caller supplied handler must not be retried,
+    //and its failure says nothing about the health of the server
+    private static <T> T handleOnce(ResponseBodyHandler<T> handler, Header[] headers, InputStream body) {
+        try {
+            return handler.handle(headers, body);
+        } catch (Exception e) {
+            throw new HandlerFailure(
+                    new ExecutorException("Exception sending request to server: " + e.getMessage(), e));
+        }
+    }
+
+    //Carries a failure past the retry policy and the circuit breaker without exposing its cause to them
+    private static class HandlerFailure extends RuntimeException {
+        private final ExecutorException failure;
 
-            final SSLContext sslcontext = SSLContexts.custom().useProtocol("TLSv1.2").build();
-            SSLConnectionSocketFactory sslConnectionFactory = new SSLConnectionSocketFactory(sslcontext) {
+        private HandlerFailure(ExecutorException failure) {
+            super(failure.getMessage(), null, false, false);
+            this.failure = failure;
+        }
+    }
+
+    //Threads for submit when no executor is configured, created on first use
+    private static class DefaultExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "amex-api-executor-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
 
+    //Reads the whole body into an ApiClientResponse
+    private static final ResponseBodyHandler<ApiClientResponse> BUFFERING_HANDLER =
+            new ResponseBodyHandler<ApiClientResponse>() {
                 @Override
-                public Socket createLayeredSocket(
-                        final Socket socket,
-                        final String target,
-                        final int port,
-                        final HttpContext context) throws IOException {
-                    context.setAttribute("__enable_sni__", true);
-                    return super.createLayeredSocket(socket, target, port, context);
+                public ApiClientResponse handle(Header[] headers, InputStream body) throws IOException {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+                    ResponseBodyHandler.toOutputStream(buffer).handle(headers, body);
+                    return ApiClientResponse.fromBytes(headers, buffer.toByteArray());
                 }
             };
 
-            Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
-                    .register("https", sslConnectionFactory)
-                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
-                    .build();
-            PoolingHttpClientConnectionManager poolingHttpClientConnectionManager =
-                    new PoolingHttpClientConnectionManager(registry);
-            poolingHttpClientConnectionManager.closeExpiredConnections();
-
-            poolingHttpClientConnectionManager
-                    .closeIdleConnections((timeout != null) ? timeout : DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
-            RequestConfig requestConfig = RequestConfig
-                    .custom().setConnectTimeout((timeout != null) ? timeout : DEFAULT_TIMEOUT)
-                    .setConnectionRequestTimeout((timeout != null) ? timeout : DEFAULT_TIMEOUT)
-                    .setSocketTimeout((timeout != null) ? timeout : DEFAULT_TIMEOUT)
-                    .build();
-            httpClient = HttpClients.custom().setConnectionManager(poolingHttpClientConnectionManager)
-                    .setDefaultRequestConfig(requestConfig).build();
-        } catch (Exception ex) {
-            httpClient = HttpClients.createDefault();
-        }
-
-        return httpClient;
+    //Caps every timeout at the time left before the deadline, zero would mean no timeout
+    private void setTimeouts(TransportRequest.TransportRequestBuilder builder, Deadline deadline) {
+        if (deadline == null) {
+            builder.setConnectTimeout(connectTimeout)
+                    .setConnectionRequestTimeout(connectionRequestTimeout)
+                    .setSocketTimeout(socketTimeout);
+            return;
+        }
+        long remaining = deadline.remainingMillis();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException("Deadline exceeded before sending request to server");
+        }
+        builder.setConnectTimeout(cap(connectTimeout, remaining))
+                .setConnectionRequestTimeout(cap(connectionRequestTimeout, remaining))
+                .setSocketTimeout(cap(socketTimeout, remaining));
+    }
+
+    private static int cap(int timeout, long remaining) {
+        return (timeout <= 0 || timeout > remaining) ? (int) Math.min(Integer.MAX_VALUE, remaining) : timeout;
     }
 }
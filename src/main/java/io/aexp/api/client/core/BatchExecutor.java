@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core;
+
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.models.ApiClientResult;
+import io.aexp.api.client.core.security.authentication.AuthProvider;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sends large numbers of requests, such as ProvisioningRequests during a card migration, through an ApiClient.
+ * <p>
+ * Encrypting, signing and authenticating each request runs on a fork-join pool, and the prepared requests are sent
+ * through the non-blocking client of the ApiClient's connection pool.  At most maxConcurrency requests are being
+ * prepared or sent at any time.  Results are returned in the order of the requests, and further requests are only
+ * taken from the source as results are consumed, so a slow consumer holds back the whole pipeline.
+ * Failures are reported per request in the ApiClientResult rather than thrown.  Requests go through
+ * {@link ApiClient#executeAsync(ApiClientRequest, AuthProvider)} apart from where they are prepared, so the
+ * response cache and every policy of the ApiClient apply to them.  Retries are prepared again on the fork-join
+ * pool, and requests wait for a permit of the RateLimiterPolicy without holding a thread, so a large batch is
+ * spread out rather than sent as one burst.
+ */
+public class BatchExecutor {
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    private final ApiClient apiClient;
+    private final AuthProvider authProvider;
+    private final Executor cryptoExecutor;
+    private final int maxConcurrency;
+
+    public BatchExecutor(ApiClient apiClient, AuthProvider authProvider, Executor cryptoExecutor,
+                         int maxConcurrency) {
+        this.apiClient = apiClient;
+        this.authProvider = authProvider;
+        this.cryptoExecutor = cryptoExecutor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public static class BatchExecutorBuilder {
+        private ApiClient apiClient;
+        private AuthProvider authProvider;
+        private Executor cryptoExecutor;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+        public BatchExecutorBuilder setApiClient(ApiClient apiClient) {
+            this.apiClient = apiClient;
+            return this;
+        }
+
+        public BatchExecutorBuilder setAuthProvider(AuthProvider authProvider) {
+            this.authProvider = authProvider;
+            return this;
+        }
+
+        //Executor the requests are encrypted and signed on.  Defaults to the common fork-join pool
+        public BatchExecutorBuilder setCryptoExecutor(Executor cryptoExecutor) {
+            this.cryptoExecutor = cryptoExecutor;
+            return this;
+        }
+
+        //Maximum number of requests being prepared or sent at the same time
+        public BatchExecutorBuilder setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public BatchExecutor createBatchExecutor() {
+            if (apiClient == null || authProvider == null) {
+                throw new IllegalArgumentException("An ApiClient and an AuthProvider are required");
+            }
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("Max concurrency must be positive");
+            }
+            return new BatchExecutor(apiClient, authProvider,
+                    (cryptoExecutor != null) ? cryptoExecutor : ForkJoinPool.commonPool(), maxConcurrency);
+        }
+    }
+
+    /**
+     * Returns the results of the requests in order.  Requests are read from the iterator as the results are
+     * consumed, the iterator is never accessed concurrently.
+     */
+    public Iterator<ApiClientResult> execute(Iterator<? extends ApiClientRequest> requests) {
+        return new ResultIterator(requests);
+    }
+
+    /**
+     * Returns a sequential stream of the results of the requests in order, see {@link #execute(Iterator)}.
+     */
+    public Stream<ApiClientResult> execute(Stream<? extends ApiClientRequest> requests) {
+        Spliterator<ApiClientResult> results = Spliterators.spliteratorUnknownSize(execute(requests.iterator()),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(results, false).onClose(requests::close);
+    }
+
+    private CompletableFuture<ApiClientResult> submit(final ApiClientRequest request) {
+        return apiClient.executeAsync(request, authProvider, cryptoExecutor)
+                .handle((response, throwable) -> ApiClientResult.of(request, response, throwable));
+    }
+
+    //Keeps up to maxConcurrency requests in flight ahead of the consumer
+    private class ResultIterator implements Iterator<ApiClientResult> {
+        private final Iterator<? extends ApiClientRequest> requests;
+        private final ArrayDeque<CompletableFuture<ApiClientResult>> inFlight =
+                new ArrayDeque<CompletableFuture<ApiClientResult>>();
+
+        private ResultIterator(Iterator<? extends ApiClientRequest> requests) {
+            this.requests = requests;
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public ApiClientResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ApiClientResult result = inFlight.poll().join();
+            fill();
+            return result;
+        }
+
+        private void fill() {
+            while (inFlight.size() < maxConcurrency && requests.hasNext()) {
+                inFlight.add(submit(requests.next()));
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.cache;
+
+import io.aexp.api.client.core.models.ApiClientResponse;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+
+import java.io.Serializable;
+
+/**
+ * A response held by a {@link ResponseCache}, with the time until which it may be used without asking the server.
+ * Instances are immutable and serializable, as the headers are those received, which are serializable.
+ */
+public final class CachedResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Header[] headers;
+    private final byte[] body;
+    private final String etag;
+    private final String tokenReferenceId;
+    private final long expiresAt;
+
+    public CachedResponse(Header[] headers, byte[] body, String etag, String tokenReferenceId, long expiresAt) {
+        this.headers = headers;
+        this.body = body;
+        this.etag = etag;
+        this.tokenReferenceId = tokenReferenceId;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns the time in milliseconds since the epoch until which a response with these headers is fresh, or -1
+     * when it must not be stored.  Cache-Control no-store is never stored, no-cache must be revalidated on every use
+     * and max-age shortens the time to live.  Responses to be revalidated are only stored when they have an ETag.
+     */
+    public static long getExpiresAt(Header[] headers, long timeToLive, long now) {
+        long freshFor = timeToLive;
+        boolean hasEtag = false;
+        if (headers != null) {
+            for (Header header : headers) {
+                if ("ETag".equalsIgnoreCase(header.getName())) {
+                    hasEtag = true;
+                } else if ("Cache-Control".equalsIgnoreCase(header.getName())) {
+                    for (HeaderElement element : header.getElements()) {
+                        String directive = element.getName().toLowerCase();
+                        if ("no-store".equals(directive)) {
+                            return -1;
+                        } else if ("no-cache".equals(directive)) {
+                            freshFor = 0;
+                        } else if ("max-age".equals(directive) && element.getValue() != null) {
+                            try {
+                                freshFor = Math.min(freshFor, Math.max(0, Long.parseLong(element.getValue()) * 1000));
+                            } catch (NumberFormatException e) {
+                                freshFor = 0;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return (freshFor > 0 || hasEtag) ? now + freshFor : -1;
+    }
+
+    public static String getEtag(Header[] headers) {
+        if (headers != null) {
+            for (Header header : headers) {
+                if ("ETag".equalsIgnoreCase(header.getName())) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean isFresh() {
+        return System.currentTimeMillis() < expiresAt;
+    }
+
+    //Returns a copy that is fresh until the given time, after the server confirmed the response has not changed
+    public CachedResponse withExpiresAt(long expiresAt) {
+        return new CachedResponse(headers, body, etag, tokenReferenceId, expiresAt);
+    }
+
+    public ApiClientResponse toApiClientResponse() {
+        return ApiClientResponse.fromBytes(headers, body);
+    }
+
+    public Header[] getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getTokenReferenceId() {
+        return tokenReferenceId;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size bounded {@link ResponseCache} on the heap that evicts the least recently used entry when full.
+ * <p>
+ * Lookups are a hash map access under a short lock.  Applications already using a cache library such as Caffeine
+ * can plug it in through the ResponseCache interface instead.
+ */
+public class InMemoryResponseCache implements ResponseCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Set<String>> keysByToken = new HashMap<String, Set<String>>();
+    private final LinkedHashMap<String, CachedResponse> entries;
+
+    public InMemoryResponseCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (size() > InMemoryResponseCache.this.maxEntries) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static class InMemoryResponseCacheBuilder {
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+        public InMemoryResponseCacheBuilder setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public InMemoryResponseCache createInMemoryResponseCache() {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("Max entries must be positive");
+            }
+            return new InMemoryResponseCache(maxEntries);
+        }
+    }
+
+    @Override
+    public CachedResponse get(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, CachedResponse response) {
+        lock.lock();
+        try {
+            CachedResponse previous = entries.put(key, response);
+            if (previous != null) {
+                unindex(key, previous);
+            }
+            String tokenReferenceId = response.getTokenReferenceId();
+            if (tokenReferenceId != null) {
+                Set<String> keys = keysByToken.get(tokenReferenceId);
+                if (keys == null) {
+                    keys = new HashSet<String>(4);
+                    keysByToken.put(tokenReferenceId, keys);
+                }
+                keys.add(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(String tokenReferenceId) {
+        lock.lock();
+        try {
+            Set<String> keys = keysByToken.remove(tokenReferenceId);
+            if (keys != null) {
+                for (String key : keys) {
+                    entries.remove(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unindex(String key, CachedResponse response) {
+        String tokenReferenceId = response.getTokenReferenceId();
+        if (tokenReferenceId != null) {
+            Set<String> keys = keysByToken.get(tokenReferenceId);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByToken.remove(tokenReferenceId);
+            }
+        }
+    }
+}
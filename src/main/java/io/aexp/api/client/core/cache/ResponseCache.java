@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.cache;
+
+/**
+ * Stores the responses of GET requests such as StatusRequest and MetaDataRequest for an
+ * {@link io.aexp.api.client.core.ApiClient}.
+ * <p>
+ * {@link InMemoryResponseCache} keeps responses on the heap.  Implement this interface to keep them in an external
+ * store shared by several instances.  The client decides whether an entry is still fresh, so entries past their
+ * expiry may be kept and returned; their ETag is used to revalidate them with the server.  Implementations must be
+ * thread safe.
+ */
+public interface ResponseCache {
+
+    //Returns the entry stored under the key, fresh or not, or null
+    CachedResponse get(String key);
+
+    void put(String key, CachedResponse response);
+
+    //Removes every entry about the token, called when a request changing the token succeeded
+    void invalidate(String tokenReferenceId);
+}
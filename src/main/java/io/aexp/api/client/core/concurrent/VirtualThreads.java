@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.concurrent;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, which are only available on Java 21 and later.
+ * <p>
+ * This is the implementation for older runtimes.  The jar is a multi-release jar and Java 21 and later load the
+ * implementation from META-INF/versions/21 instead.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread for every task.
+     *
+     * @throws UnsupportedOperationException when the runtime has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running on Java " +
+                System.getProperty("java.specification.version"));
+    }
+}
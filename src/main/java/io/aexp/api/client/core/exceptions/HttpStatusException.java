@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.exceptions;
+
+import org.apache.http.Header;
+
+/**
+ * Thrown when the server answers with a status other than 200.
+ */
+public class HttpStatusException extends ExecutorException {
+    private final int statusCode;
+    private final Header[] headers;
+
+    public HttpStatusException(int statusCode, Header[] headers) {
+        super("Received http status from server: " + statusCode);
+        this.statusCode = statusCode;
+        this.headers = headers;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Header[] getHeaders() {
+        return headers;
+    }
+
+    public String getHeader(String key) {
+        if (headers != null) {
+            for (Header header : headers) {
+                if (key.equalsIgnoreCase(header.getName())) {
+                    return header.getValue();
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.exceptions;
+
+/**
+ * Thrown without sending the request when the rate limit of its client key and API leaves no permit within the
+ * time the caller may wait.
+ */
+public class RateLimitExceededException extends ExecutorException {
+    private final long retryAfter;
+
+    public RateLimitExceededException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    //Milliseconds until a permit is expected to be available
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
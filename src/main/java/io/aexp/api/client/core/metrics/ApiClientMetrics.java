@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.metrics;
+
+import io.aexp.api.client.core.resilience.AdaptiveLimiter;
+import io.aexp.api.client.core.transport.ConnectionPool;
+
+/**
+ * Receives timings from an {@link io.aexp.api.client.core.ApiClient}.  Implementations are called on the request
+ * path and must be thread safe and cheap.
+ * <p>
+ * The endpoint is the name of the EndPoint the client sends to and the request type is the simple class name of
+ * the request, such as ProvisioningRequest.
+ */
+public interface ApiClientMetrics {
+
+    //Time spent in one phase of a single attempt
+    void recordPhase(String endpoint, String requestType, RequestPhase phase, long nanos);
+
+    //Time from the call to the final outcome including retries.  The outcome is "success", the http status for a
+    //status error or the simple name of the exception that ended the request
+    void recordRequest(String endpoint, String requestType, String outcome, long nanos);
+
+    //Called once for the connection pool of each client, so its leased, available and pending connections can be
+    //published
+    void bindConnectionPool(ConnectionPool connectionPool);
+
+    //Called once for the adaptive limiter of the endpoint of each client using one, so its current limit can be
+    //published
+    default void bindAdaptiveLimiter(AdaptiveLimiter limiter) {
+    }
+
+    //Called for every call a hedge was sent for, with whether a hedge rather than the first attempt answered first
+    default void recordHedge(String endpoint, String requestType, boolean hedgeWon) {
+    }
+}
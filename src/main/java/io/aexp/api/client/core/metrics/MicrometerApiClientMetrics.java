@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.metrics;
+
+import io.aexp.api.client.core.resilience.AdaptiveLimiter;
+import io.aexp.api.client.core.transport.ConnectionPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the metrics of an ApiClient to a Micrometer registry.
+ * <p>
+ * Phases are recorded in the amex.api.client.phase timer and whole requests in the amex.api.client.requests timer,
+ * both with percentile histograms so p99 can be aggregated across instances.  Connection pools are published as
+ * the amex.api.client.pool.leased, available, pending and max gauges.  Calls that were hedged are counted in
+ * amex.api.client.hedges tagged with the winner, primary or hedge, which gives the hedge win rate.  TLS handshakes
+ * of the pools are timed in amex.api.client.tls.handshake, tagged with whether a cached session was resumed.
+ * Adaptive limiters publish their limit and requests in progress as the amex.api.client.concurrency.limit and
+ * inflight gauges.
+ * Micrometer is an optional dependency and only needs to be on the classpath when this class is used.
+ */
+public class MicrometerApiClientMetrics implements ApiClientMetrics {
+    public static final String PHASE_TIMER = "amex.api.client.phase";
+    public static final String REQUEST_TIMER = "amex.api.client.requests";
+    public static final String POOL_GAUGE_PREFIX = "amex.api.client.pool.";
+    public static final String HEDGE_COUNTER = "amex.api.client.hedges";
+    public static final String HANDSHAKE_TIMER = "amex.api.client.tls.handshake";
+    public static final String CONCURRENCY_GAUGE_PREFIX = "amex.api.client.concurrency.";
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    //Pools shared by several clients are bound once per client, their handshakes must only be recorded once
+    private final Set<ConnectionPool> boundPools =
+            Collections.newSetFromMap(new ConcurrentHashMap<ConnectionPool, Boolean>());
+
+    public MicrometerApiClientMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordPhase(String endpoint, String requestType, RequestPhase phase, long nanos) {
+        String key = endpoint + '|' + requestType + '|' + phase;
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = Timer.builder(PHASE_TIMER)
+                    .tag("endpoint", endpoint)
+                    .tag("request", requestType)
+                    .tag("phase", phase.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry);
+            timers.putIfAbsent(key, timer);
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordRequest(String endpoint, String requestType, String outcome, long nanos) {
+        String key = endpoint + '|' + requestType + "|outcome=" + outcome;
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = Timer.builder(REQUEST_TIMER)
+                    .tag("endpoint", endpoint)
+                    .tag("request", requestType)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            timers.putIfAbsent(key, timer);
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordHedge(String endpoint, String requestType, boolean hedgeWon) {
+        String winner = hedgeWon ? "hedge" : "primary";
+        String key = endpoint + '|' + requestType + '|' + winner;
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            counter = Counter.builder(HEDGE_COUNTER)
+                    .tag("endpoint", endpoint)
+                    .tag("request", requestType)
+                    .tag("winner", winner)
+                    .register(registry);
+            counters.putIfAbsent(key, counter);
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void bindAdaptiveLimiter(AdaptiveLimiter limiter) {
+        Gauge.builder(CONCURRENCY_GAUGE_PREFIX + "limit", limiter, AdaptiveLimiter::getLimit)
+                .tag("endpoint", limiter.getName()).register(registry);
+        Gauge.builder(CONCURRENCY_GAUGE_PREFIX + "inflight", limiter, AdaptiveLimiter::getInFlight)
+                .tag("endpoint", limiter.getName()).register(registry);
+    }
+
+    @Override
+    public void bindConnectionPool(ConnectionPool connectionPool) {
+        String pool = Integer.toHexString(System.identityHashCode(connectionPool));
+        PoolingHttpClientConnectionManager manager = connectionPool.getConnectionManager();
+
+        Gauge.builder(POOL_GAUGE_PREFIX + "leased", manager, m -> m.getTotalStats().getLeased())
+                .tag("pool", pool).register(registry);
+        Gauge.builder(POOL_GAUGE_PREFIX + "available", manager, m -> m.getTotalStats().getAvailable())
+                .tag("pool", pool).register(registry);
+        Gauge.builder(POOL_GAUGE_PREFIX + "pending", manager, m -> m.getTotalStats().getPending())
+                .tag("pool", pool).register(registry);
+        Gauge.builder(POOL_GAUGE_PREFIX + "max", manager, m -> m.getTotalStats().getMax())
+                .tag("pool", pool).register(registry);
+
+        if (boundPools.add(connectionPool)) {
+            final Timer full = Timer.builder(HANDSHAKE_TIMER).tag("pool", pool).tag("resumed", "false")
+                    .publishPercentileHistogram().register(registry);
+            final Timer resumed = Timer.builder(HANDSHAKE_TIMER).tag("pool", pool).tag("resumed", "true")
+                    .publishPercentileHistogram().register(registry);
+            connectionPool.addHandshakeListener((host, nanos, wasResumed) ->
+                    (wasResumed ? resumed : full).record(nanos, TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.metrics;
+
+/**
+ * The stages a request passes through in {@link io.aexp.api.client.core.ApiClient}.
+ */
+public enum RequestPhase {
+    //Encrypting the payload into a JWE
+    ENCRYPT,
+    //Signing the encrypted payload into a JWS
+    SIGN,
+    //Generating the authentication headers, such as the HMAC signature
+    AUTHENTICATE,
+    //Leasing a connection from the pool, including connecting and the TLS handshake for a new connection
+    CONNECTION_LEASE,
+    //Sending the request and waiting for the response headers
+    NETWORK,
+    //Reading the body and converting it in the response body handler
+    PARSE
+}
@@ -14,6 +14,10 @@
 
 package io.aexp.api.client.core.models;
 
+import io.aexp.api.client.core.utils.JsonUtility;
+
+import java.nio.charset.StandardCharsets;
+
 public abstract class ApiClientRequest {
     abstract public String toJson(String kid, String aesKey);
     abstract public String getUri();
@@ -22,4 +26,30 @@ public abstract class ApiClientRequest {
     public String toJson() {
         return toJson(null, null);
     }
+
+    //The body as the UTF-8 bytes that are sent, written by the ObjectMapper straight from the object returned by
+    //getJsonBody.  Only requests building their JSON themselves go through a String
+    public byte[] toJsonBytes(String kid, String aesKey) {
+        Object body = getJsonBody(kid, aesKey);
+        if (body != null) {
+            return JsonUtility.getInstance().getBytes(body);
+        }
+        String json = toJson(kid, aesKey);
+        return (json != null) ? json.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    public byte[] toJsonBytes() {
+        return toJsonBytes(null, null);
+    }
+
+    //Object the body is serialised from, null when the request has no body or builds its JSON in toJson
+    protected Object getJsonBody(String kid, String aesKey) {
+        return null;
+    }
+
+    //Token the request reads or changes, so cached responses about it can be invalidated.  Null when the request
+    //does not refer to a single token
+    public String getTokenReferenceId() {
+        return null;
+    }
 }
@@ -14,35 +14,52 @@
 
 package io.aexp.api.client.core.models;
 
+import io.aexp.api.client.core.exceptions.JsonException;
 import io.aexp.api.client.core.utils.EncryptionUtility;
 import io.aexp.api.client.core.utils.JsonUtility;
 import org.apache.http.Header;
 
+import java.nio.charset.Charset;
 import java.util.Map;
 
+/**
+ * Headers and JSON body of a response.
+ * <p>
+ * The body is kept exactly as received.  It is only parsed when a field is first requested and only pretty printed
+ * when {@link #toJson()} is called, so callers that merely check the status or read one field do not pay for
+ * formatting large payloads.  An invalid JSON body is reported by the field accessors as a JsonException.
+ */
 public class ApiClientResponse {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     private final Header[] headers;
-    private final Map responseMap;
-    private final String body;
+    private final byte[] bodyBytes;
+    private volatile String body;
+    private volatile String prettyBody;
+    private volatile Map<String, Object> responseMap;
 
     public ApiClientResponse(Header[] headers, String body) {
-        this.headers = headers;
-
-        if (body != null && !"".equals(body)) {
-            body = JsonUtility.getInstance().prettyString(body);
-        } else {
-            body = null;
-        }
-
-        responseMap = body == null ? null : JsonUtility.getInstance().getObject(body, Map.class);
+        this(headers, (body != null && !"".equals(body)) ? body : null, null);
+    }
 
+    private ApiClientResponse(Header[] headers, String body, byte[] bodyBytes) {
+        this.headers = headers;
         this.body = body;
+        this.bodyBytes = bodyBytes;
+    }
+
+    /**
+     * Creates a response from the raw UTF-8 encoded body, which is parsed without first being copied into a String.
+     */
+    public static ApiClientResponse fromBytes(Header[] headers, byte[] body) {
+        return new ApiClientResponse(headers, null, (body != null && body.length > 0) ? body : null);
     }
 
     //Get a particular field from the body of the response
     public Object getField(String key) {
-        if(responseMap != null) {
-            return responseMap.get(key);
+        Map<String, Object> map = getResponseMap();
+        if(map != null) {
+            return map.get(key);
         }
 
         return null;
@@ -60,8 +77,12 @@ public class ApiClientResponse {
         return null;
     }
 
+    public Header[] getHeaders() {
+        return headers;
+    }
+
     public String getDecryptedField(String keyStr, String field) {
-        Object encryptedData = responseMap.get(field);
+        Object encryptedData = getField(field);
 
         if (encryptedData instanceof String) {
             return EncryptionUtility.getInstance().decrypt(keyStr, (String)encryptedData);
@@ -70,7 +91,46 @@ public class ApiClientResponse {
         return null;
     }
 
+    /**
+     * Returns the body exactly as it was received, or null when the response had no body.
+     */
+    public String getBody() {
+        String value = body;
+        if (value == null && bodyBytes != null) {
+            value = new String(bodyBytes, UTF8);
+            body = value;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the body pretty printed, or as received when it is not valid JSON.
+     */
     public String toJson() {
-        return body;
+        String value = prettyBody;
+        if (value == null && hasBody()) {
+            try {
+                value = JsonUtility.getInstance().getString(getResponseMap());
+            } catch (JsonException e) {
+                value = getBody();  //on error, just return the body as received
+            }
+            prettyBody = value;
+        }
+        return value;
+    }
+
+    private boolean hasBody() {
+        return bodyBytes != null || body != null;
+    }
+
+    //Parses the body on first use, concurrent first calls may each parse it but always produce an equal map
+    private Map<String, Object> getResponseMap() {
+        Map<String, Object> map = responseMap;
+        if (map == null && hasBody()) {
+            map = (bodyBytes != null) ? JsonUtility.getInstance().getMap(bodyBytes) :
+                    JsonUtility.getInstance().getMap(body);
+            responseMap = map;
+        }
+        return map;
     }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.models;
+
+import io.aexp.api.client.core.exceptions.ExecutorException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Outcome of one request sent as part of a batch or pipeline, holding either the response or the exception that
+ * ended it.
+ */
+public class ApiClientResult {
+    private final ApiClientRequest request;
+    private final ApiClientResponse response;
+    private final RuntimeException exception;
+
+    public ApiClientResult(ApiClientRequest request, ApiClientResponse response, RuntimeException exception) {
+        this.request = request;
+        this.response = response;
+        this.exception = exception;
+    }
+
+    /**
+     * Creates the result of a request from the outcome of its future.  Failures other than ExecutorExceptions are
+     * wrapped into one.
+     */
+    public static ApiClientResult of(ApiClientRequest request, ApiClientResponse response, Throwable throwable) {
+        if (throwable == null) {
+            return new ApiClientResult(request, response, null);
+        }
+
+        Throwable cause = (throwable instanceof CompletionException && throwable.getCause() != null) ?
+                throwable.getCause() : throwable;
+        RuntimeException exception = (cause instanceof ExecutorException) ? (RuntimeException) cause :
+                new ExecutorException("Exception sending request to server: " + cause.getMessage(),
+                        (cause instanceof Exception) ? (Exception) cause : new ExecutionException(cause));
+        return new ApiClientResult(request, null, exception);
+    }
+
+    public ApiClientRequest getRequest() {
+        return request;
+    }
+
+    public ApiClientResponse getResponse() {
+        return response;
+    }
+
+    public RuntimeException getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+}
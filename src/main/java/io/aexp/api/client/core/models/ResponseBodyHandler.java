@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.models;
+
+import io.aexp.api.client.core.security.authentication.AuthProvider;
+import org.apache.http.Header;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Consumes the body of a successful response as it arrives from the connection, see
+ * {@link io.aexp.api.client.core.ApiClient#execute(ApiClientRequest, AuthProvider, ResponseBodyHandler)}.
+ * <p>
+ * The stream is only valid during the call and is closed afterwards.  A body that is not read to the end causes
+ * the connection to be dropped rather than returned to the pool.
+ *
+ * @param <T> the type the body is converted to
+ */
+public interface ResponseBodyHandler<T> {
+
+    T handle(Header[] headers, InputStream body) throws IOException;
+
+    /**
+     * Returns a handler that copies the body into the given sink, which is not closed, and returns the number of
+     * bytes copied.
+     */
+    static ResponseBodyHandler<Long> toOutputStream(final OutputStream sink) {
+        return new ResponseBodyHandler<Long>() {
+            @Override
+            public Long handle(Header[] headers, InputStream body) throws IOException {
+                byte[] buffer = new byte[8192];
+                long count = 0;
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    sink.write(buffer, 0, read);
+                    count += read;
+                }
+                return count;
+            }
+        };
+    }
+}
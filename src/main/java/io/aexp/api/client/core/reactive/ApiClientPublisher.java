@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.reactive;
+
+import io.aexp.api.client.core.ApiClient;
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.models.ApiClientResponse;
+import io.aexp.api.client.core.models.ApiClientResult;
+import io.aexp.api.client.core.security.authentication.AuthProvider;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive Streams stage sending every request published upstream through
+ * {@link ApiClient#executeAsync(ApiClientRequest, AuthProvider)} and publishing the results in the same order.
+ * <p>
+ * Requests are only taken from upstream when the subscriber has signalled demand for their results, and never
+ * more than maxInFlight ahead of the results delivered, so nothing is buffered without bound when the server
+ * slows down.  A failed request is published as an ApiClientResult holding the exception and the stream carries
+ * on; only an error of the upstream publisher terminates the stream with onError, after the results of the
+ * requests already taken have been delivered.  Cancelling the subscription cancels upstream and the requests in
+ * flight.  On Java 9 and later org.reactivestreams.FlowAdapters converts this to and from java.util.concurrent.Flow.
+ */
+public class ApiClientPublisher implements Publisher<ApiClientResult> {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+    private final ApiClient apiClient;
+    private final AuthProvider authProvider;
+    private final Publisher<? extends ApiClientRequest> requests;
+    private final int maxInFlight;
+
+    public ApiClientPublisher(ApiClient apiClient, AuthProvider authProvider,
+                              Publisher<? extends ApiClientRequest> requests, int maxInFlight) {
+        this.apiClient = apiClient;
+        this.authProvider = authProvider;
+        this.requests = requests;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static class ApiClientPublisherBuilder {
+        private ApiClient apiClient;
+        private AuthProvider authProvider;
+        private Publisher<? extends ApiClientRequest> requests;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+        public ApiClientPublisherBuilder setApiClient(ApiClient apiClient) {
+            this.apiClient = apiClient;
+            return this;
+        }
+
+        public ApiClientPublisherBuilder setAuthProvider(AuthProvider authProvider) {
+            this.authProvider = authProvider;
+            return this;
+        }
+
+        public ApiClientPublisherBuilder setRequests(Publisher<? extends ApiClientRequest> requests) {
+            this.requests = requests;
+            return this;
+        }
+
+        //Maximum number of requests sent but whose results have not been delivered yet
+        public ApiClientPublisherBuilder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public ApiClientPublisher createApiClientPublisher() {
+            if (apiClient == null || authProvider == null || requests == null) {
+                throw new IllegalArgumentException("An ApiClient, an AuthProvider and requests are required");
+            }
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("Max in flight must be positive");
+            }
+            return new ApiClientPublisher(apiClient, authProvider, requests, maxInFlight);
+        }
+    }
+
+    /**
+     * Subscribes to the upstream publisher on behalf of the subscriber, every subscriber gets its own stage.
+     */
+    @Override
+    public void subscribe(Subscriber<? super ApiClientResult> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        requests.subscribe(new Stage(subscriber));
+    }
+
+    private static class Pending {
+        private final ApiClientRequest request;
+        private final CompletableFuture<ApiClientResponse> response;
+
+        private Pending(ApiClientRequest request, CompletableFuture<ApiClientResponse> response) {
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    //Subscriber to the requests and subscription of the results.  All signals to the subscriber and requests to
+    //upstream are made from drain, which only ever runs on one thread at a time
+    private class Stage implements Subscriber<ApiClientRequest>, Subscription {
+        private final Subscriber<? super ApiClientResult> downstream;
+        private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<Pending>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong demand = new AtomicLong();
+
+        private volatile Subscription upstream;
+        private volatile boolean done;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        //Requests asked from upstream whose results have not been delivered, only accessed in drain
+        private int outstanding;
+        private boolean terminated;
+
+        private Stage(Subscriber<? super ApiClientResult> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(ApiClientRequest request) {
+            if (done || cancelled) {
+                return;
+            }
+            CompletableFuture<ApiClientResponse> response = apiClient.executeAsync(request, authProvider);
+            pending.add(new Pending(request, response));
+            response.whenComplete((value, throwable) -> drain());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " results, must be positive");
+            } else {
+                while (true) {
+                    long current = demand.get();
+                    long updated = (current + n < 0) ? Long.MAX_VALUE : current + n;
+                    if (demand.compareAndSet(current, updated)) {
+                        break;
+                    }
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!terminated) {
+                    drainOnce();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainOnce() {
+            if (invalidRequest != null) {
+                cancelled = true;
+                terminate(invalidRequest);
+                return;
+            }
+            if (cancelled) {
+                terminate(null);
+                return;
+            }
+
+            long delivered = 0;
+            long available = demand.get();
+            Pending head;
+            while (delivered < available && (head = pending.peek()) != null && head.response.isDone()) {
+                pending.poll();
+                outstanding--;
+                delivered++;
+                downstream.onNext(getResult(head));
+                if (cancelled) {
+                    terminate(null);
+                    return;
+                }
+            }
+            if (delivered > 0 && available != Long.MAX_VALUE) {
+                available = demand.addAndGet(-delivered);
+            }
+
+            if (done && pending.isEmpty()) {
+                terminated = true;
+                if (error != null) {
+                    downstream.onError(error);
+                } else {
+                    downstream.onComplete();
+                }
+                return;
+            }
+
+            long wanted = Math.min(maxInFlight - outstanding, available - outstanding);
+            if (!done && wanted > 0) {
+                outstanding += (int) wanted;
+                upstream.request(wanted);
+            }
+        }
+
+        private ApiClientResult getResult(Pending pending) {
+            try {
+                return ApiClientResult.of(pending.request, pending.response.join(), null);
+            } catch (Exception e) {
+                return ApiClientResult.of(pending.request, null, e);
+            }
+        }
+
+        //Stops upstream and the requests in flight, signalling the error to the subscriber when there is one
+        private void terminate(Throwable failure) {
+            terminated = true;
+            Subscription subscription = upstream;
+            if (subscription != null && !done) {
+                subscription.cancel();
+            }
+            Pending current;
+            while ((current = pending.poll()) != null) {
+                current.response.cancel(true);
+            }
+            if (failure != null) {
+                downstream.onError(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the requests in progress for one endpoint to an estimate of what the server can take, created by an
+ * {@link AdaptiveLimiterPolicy}.
+ * <p>
+ * The limit follows the gradient between the long term average round trip time and the latest one.  While round
+ * trips stay within the tolerance of the average the limit grows by its square root, when they get slower it
+ * shrinks in proportion, and an overload such as a timeout, a 5xx or a 429 cuts it by the backoff ratio.  Changes
+ * are smoothed and the limit only grows while at least half of it is in use.
+ */
+public class AdaptiveLimiter {
+    //Samples the long term round trip time is averaged over
+    private static final int LONG_WINDOW = 100;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final double backoffRatio;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private double limit;
+    private double longRtt;
+    private int inFlight;
+
+    AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, long maxWaitDuration,
+                    double smoothing, double rttTolerance, double backoffRatio) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitDuration);
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Takes a permit, waiting up to the maximum wait duration for one when blocking is allowed.  Every permit taken
+     * must be given back with {@link #onSample} or {@link #release()}.
+     */
+    public boolean tryAcquire(boolean mayBlock) {
+        return tryAcquire(mayBlock, null);
+    }
+
+    /**
+     * Takes a permit like {@link #tryAcquire(boolean)}, waiting no longer than the time left before the deadline.
+     */
+    public boolean tryAcquire(boolean mayBlock, Deadline deadline) {
+        long remaining = (mayBlock) ? maxWaitNanos : 0;
+        if (deadline != null) {
+            remaining = Math.min(remaining, deadline.remaining(TimeUnit.NANOSECONDS));
+        }
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a permit and adjusts the limit to the round trip time of the request, or backs off when the server
+     * was overloaded.
+     */
+    public void onSample(long rttNanos, boolean overloaded) {
+        lock.lock();
+        try {
+            boolean utilized = inFlight >= limit / 2;
+            inFlight--;
+            double newLimit;
+            if (overloaded) {
+                newLimit = limit * backoffRatio;
+            } else {
+                double rtt = Math.max(1, rttNanos);
+                longRtt = (longRtt == 0) ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW;
+                double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / rtt));
+                newLimit = limit * gradient + ((utilized) ? Math.sqrt(limit) : 0);
+                newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Gives back a permit without a sample, for requests that say nothing about the capacity of the server
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Settings for the adaptive concurrency limiting of an ApiClient, which keeps an {@link AdaptiveLimiter} per
+ * EndPoint so the requests in progress track what the Amex API can currently take instead of a fixed pool size.
+ * A policy may be shared by several clients.
+ */
+public class AdaptiveLimiterPolicy {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final long DEFAULT_MAX_WAIT_DURATION = 0;
+    public static final double DEFAULT_SMOOTHING = 0.2;
+    public static final double DEFAULT_RTT_TOLERANCE = 1.5;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitDuration;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final double backoffRatio;
+    private final ConcurrentMap<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<String, AdaptiveLimiter>();
+
+    public AdaptiveLimiterPolicy(int initialLimit, int minLimit, int maxLimit, long maxWaitDuration, double smoothing,
+                                 double rttTolerance, double backoffRatio) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWaitDuration = maxWaitDuration;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.backoffRatio = backoffRatio;
+    }
+
+    public static class AdaptiveLimiterPolicyBuilder {
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+        private int minLimit = DEFAULT_MIN_LIMIT;
+        private int maxLimit = DEFAULT_MAX_LIMIT;
+        private long maxWaitDuration = DEFAULT_MAX_WAIT_DURATION;
+        private double smoothing = DEFAULT_SMOOTHING;
+        private double rttTolerance = DEFAULT_RTT_TOLERANCE;
+        private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+        public AdaptiveLimiterPolicyBuilder setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public AdaptiveLimiterPolicyBuilder setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        //Should not exceed the connections per route of the pool, beyond that requests queue for a connection
+        public AdaptiveLimiterPolicyBuilder setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        //Milliseconds a blocking call waits for a permit before failing, asynchronous calls never wait
+        public AdaptiveLimiterPolicyBuilder setMaxWaitDuration(long maxWaitDuration) {
+            this.maxWaitDuration = maxWaitDuration;
+            return this;
+        }
+
+        //Weight of a new estimate against the current limit, between 0 exclusive and 1
+        public AdaptiveLimiterPolicyBuilder setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        //How many times the average round trip time a request may take before the limit shrinks
+        public AdaptiveLimiterPolicyBuilder setRttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        //Factor the limit is multiplied by when the server is overloaded, between 0 and 1 exclusive
+        public AdaptiveLimiterPolicyBuilder setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        public AdaptiveLimiterPolicy createAdaptiveLimiterPolicy() {
+            if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit ||
+                    maxWaitDuration < 0 || smoothing <= 0 || smoothing > 1 || rttTolerance < 1 ||
+                    backoffRatio <= 0 || backoffRatio >= 1) {
+                throw new IllegalArgumentException("Invalid adaptive limiter policy settings");
+            }
+            return new AdaptiveLimiterPolicy(initialLimit, minLimit, maxLimit, maxWaitDuration, smoothing,
+                    rttTolerance, backoffRatio);
+        }
+    }
+
+    /**
+     * Returns the limiter for the endpoint, creating it on first use.
+     */
+    public AdaptiveLimiter getLimiter(String endpoint) {
+        AdaptiveLimiter limiter = limiters.get(endpoint);
+        if (limiter == null) {
+            limiters.putIfAbsent(endpoint, new AdaptiveLimiter(endpoint, initialLimit, minLimit, maxLimit,
+                    maxWaitDuration, smoothing, rttTolerance, backoffRatio));
+            limiter = limiters.get(endpoint);
+        }
+        return limiter;
+    }
+}
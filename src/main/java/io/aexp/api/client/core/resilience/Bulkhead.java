@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the concurrent calls for one endpoint and request type, created by a {@link BulkheadPolicy}.
+ */
+public class Bulkhead {
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+
+    Bulkhead(String name, int maxConcurrentCalls, long maxWaitDuration) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitDuration);
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /**
+     * Takes a permit, waiting up to the maximum wait duration when blocking is allowed.  Every permit taken must
+     * be given back with {@link #release()}.
+     */
+    public boolean tryAcquire(boolean mayBlock) {
+        return tryAcquire(mayBlock, null);
+    }
+
+    /**
+     * Takes a permit like {@link #tryAcquire(boolean)}, waiting no longer than the time left before the deadline.
+     */
+    public boolean tryAcquire(boolean mayBlock, Deadline deadline) {
+        long wait = (deadline != null) ? Math.min(maxWaitNanos, deadline.remaining(TimeUnit.NANOSECONDS)) :
+                maxWaitNanos;
+        if (!mayBlock || wait <= 0) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(wait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getAvailableCalls() {
+        return permits.availablePermits();
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
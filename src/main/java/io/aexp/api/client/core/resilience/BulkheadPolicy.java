@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Settings for the bulkheads of an ApiClient, which keeps a separate {@link Bulkhead} per EndPoint and request type
+ * so a slow API cannot take all the threads and connections of the others.  A policy may be shared by several
+ * clients.
+ */
+public class BulkheadPolicy {
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 25;
+    public static final long DEFAULT_MAX_WAIT_DURATION = 0;
+
+    private final int maxConcurrentCalls;
+    private final long maxWaitDuration;
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, Bulkhead>> bulkheads =
+            new ConcurrentHashMap<String, ConcurrentMap<Class<?>, Bulkhead>>();
+
+    public BulkheadPolicy(int maxConcurrentCalls, long maxWaitDuration) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitDuration = maxWaitDuration;
+    }
+
+    public static class BulkheadPolicyBuilder {
+        private int maxConcurrentCalls = DEFAULT_MAX_CONCURRENT_CALLS;
+        private long maxWaitDuration = DEFAULT_MAX_WAIT_DURATION;
+
+        public BulkheadPolicyBuilder setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            return this;
+        }
+
+        //Milliseconds a blocking call waits for a permit before failing, asynchronous calls never wait
+        public BulkheadPolicyBuilder setMaxWaitDuration(long maxWaitDuration) {
+            this.maxWaitDuration = maxWaitDuration;
+            return this;
+        }
+
+        public BulkheadPolicy createBulkheadPolicy() {
+            if (maxConcurrentCalls <= 0 || maxWaitDuration < 0) {
+                throw new IllegalArgumentException("Invalid bulkhead policy settings");
+            }
+            return new BulkheadPolicy(maxConcurrentCalls, maxWaitDuration);
+        }
+    }
+
+    /**
+     * Returns the bulkhead for the endpoint and request type, creating it on first use.
+     */
+    public Bulkhead getBulkhead(String endpoint, Class<?> requestType) {
+        ConcurrentMap<Class<?>, Bulkhead> byType = bulkheads.get(endpoint);
+        if (byType == null) {
+            bulkheads.putIfAbsent(endpoint, new ConcurrentHashMap<Class<?>, Bulkhead>());
+            byType = bulkheads.get(endpoint);
+        }
+        Bulkhead bulkhead = byType.get(requestType);
+        if (bulkhead == null) {
+            byType.putIfAbsent(requestType, new Bulkhead(endpoint + " " + requestType.getSimpleName(),
+                    maxConcurrentCalls, maxWaitDuration));
+            bulkhead = byType.get(requestType);
+        }
+        return bulkhead;
+    }
+}
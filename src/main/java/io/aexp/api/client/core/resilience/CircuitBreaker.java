@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker for one endpoint and request type, created by a {@link CircuitBreakerPolicy}.
+ * <p>
+ * While closed the outcomes of the last slidingWindowSize calls are kept.  Once at least minimumNumberOfCalls
+ * have been recorded and the share of failed or of slow calls reaches its threshold the breaker opens, and calls
+ * fail fast until waitDurationInOpenState has passed.  It then lets permittedCallsInHalfOpenState probe calls
+ * through and closes again when they stay below the thresholds, otherwise it opens for another wait duration.
+ * The outcome of a call only counts in the state it was permitted in, a slow call made before the breaker opened
+ * does not decide the probes.
+ * A ReentrantLock rather than synchronized guards the state so waiting virtual threads do not pin their carrier.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    //Returned by tryAcquirePermission when the call must fail fast
+    public static final long NOT_PERMITTED = -1;
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final int minimumNumberOfCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final long waitDurationNanos;
+    private final int permittedCallsInHalfOpenState;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int failedCalls;
+    private int slowCalls;
+
+    private volatile State state = State.CLOSED;
+    //Incremented after every change of state, a permission is the generation it was granted in
+    private volatile long generation;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenCompleted;
+    private int halfOpenFailed;
+    private int halfOpenSlow;
+
+    CircuitBreaker(String name, int slidingWindowSize, int minimumNumberOfCalls, int failureRateThreshold,
+                   int slowCallRateThreshold, long slowCallDurationThreshold, long waitDurationInOpenState,
+                   int permittedCallsInHalfOpenState) {
+        this.name = name;
+        this.window = new byte[slidingWindowSize];
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationThreshold);
+        this.waitDurationNanos = TimeUnit.MILLISECONDS.toNanos(waitDurationInOpenState);
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    }
+
+    /**
+     * Returns the permission to make a call, or {@link #NOT_PERMITTED} when it must fail fast.  Every permitted call
+     * must be followed by {@link #onResult} with its permission.
+     */
+    public long tryAcquirePermission() {
+        //The state is changed before the generation, so a closed state seen here belongs to this generation or a
+        //later one, whose results are then ignored
+        long permission = generation;
+        if (state == State.CLOSED) {
+            return permission;
+        }
+
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < waitDurationNanos) {
+                    return NOT_PERMITTED;
+                }
+                state = State.HALF_OPEN;
+                generation++;
+                halfOpenPermits = 0;
+                halfOpenCompleted = 0;
+                halfOpenFailed = 0;
+                halfOpenSlow = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits >= permittedCallsInHalfOpenState) {
+                    return NOT_PERMITTED;
+                }
+                halfOpenPermits++;
+            }
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call, unless the state has changed since the call was permitted.
+     */
+    public void onResult(long permission, long durationNanos, boolean failed) {
+        boolean slow = durationNanos >= slowCallDurationNanos;
+
+        lock.lock();
+        try {
+            if (permission != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                halfOpenCompleted++;
+                halfOpenFailed += failed ? 1 : 0;
+                halfOpenSlow += slow ? 1 : 0;
+                if (halfOpenCompleted >= permittedCallsInHalfOpenState) {
+                    if (exceedsThresholds(halfOpenCompleted, halfOpenFailed, halfOpenSlow)) {
+                        open();
+                    } else {
+                        close();
+                    }
+                }
+            } else if (state == State.CLOSED) {
+                record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+                if (windowCount >= minimumNumberOfCalls && exceedsThresholds(windowCount, failedCalls, slowCalls)) {
+                    open();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private boolean exceedsThresholds(int calls, int failed, int slow) {
+        return failed * 100 >= failureRateThreshold * calls || slow * 100 >= slowCallRateThreshold * calls;
+    }
+
+    private void record(byte outcome) {
+        if (windowCount == window.length) {
+            byte evicted = window[windowIndex];
+            failedCalls -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = outcome;
+        failedCalls += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        generation++;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        windowIndex = 0;
+        windowCount = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+        state = State.CLOSED;
+        generation++;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Settings for the circuit breakers of an ApiClient, which keeps a separate {@link CircuitBreaker} per EndPoint and
+ * request type so one failing API does not stop the others.  A policy may be shared by several clients.
+ */
+public class CircuitBreakerPolicy {
+    public static final int DEFAULT_SLIDING_WINDOW_SIZE = 100;
+    public static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 20;
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100;
+    public static final long DEFAULT_SLOW_CALL_DURATION_THRESHOLD = 10000;
+    public static final long DEFAULT_WAIT_DURATION_IN_OPEN_STATE = 30000;
+    public static final int DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE = 5;
+
+    private final int slidingWindowSize;
+    private final int minimumNumberOfCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationThreshold;
+    private final long waitDurationInOpenState;
+    private final int permittedCallsInHalfOpenState;
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, CircuitBreaker>> circuitBreakers =
+            new ConcurrentHashMap<String, ConcurrentMap<Class<?>, CircuitBreaker>>();
+
+    public CircuitBreakerPolicy(int slidingWindowSize, int minimumNumberOfCalls, int failureRateThreshold,
+                                int slowCallRateThreshold, long slowCallDurationThreshold,
+                                long waitDurationInOpenState, int permittedCallsInHalfOpenState) {
+        this.slidingWindowSize = slidingWindowSize;
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationThreshold = slowCallDurationThreshold;
+        this.waitDurationInOpenState = waitDurationInOpenState;
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    }
+
+    public static class CircuitBreakerPolicyBuilder {
+        private int slidingWindowSize = DEFAULT_SLIDING_WINDOW_SIZE;
+        private int minimumNumberOfCalls = DEFAULT_MINIMUM_NUMBER_OF_CALLS;
+        private int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+        private int slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+        private long slowCallDurationThreshold = DEFAULT_SLOW_CALL_DURATION_THRESHOLD;
+        private long waitDurationInOpenState = DEFAULT_WAIT_DURATION_IN_OPEN_STATE;
+        private int permittedCallsInHalfOpenState = DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE;
+
+        //Number of most recent calls the failure and slow call rates are computed over
+        public CircuitBreakerPolicyBuilder setSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+            return this;
+        }
+
+        //Calls needed in the window before the rates are evaluated
+        public CircuitBreakerPolicyBuilder setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+            this.minimumNumberOfCalls = minimumNumberOfCalls;
+            return this;
+        }
+
+        //Percentage of failed calls that opens the breaker
+        public CircuitBreakerPolicyBuilder setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        //Percentage of slow calls that opens the breaker
+        public CircuitBreakerPolicyBuilder setSlowCallRateThreshold(int slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        //Milliseconds after which a call counts as slow
+        public CircuitBreakerPolicyBuilder setSlowCallDurationThreshold(long slowCallDurationThreshold) {
+            this.slowCallDurationThreshold = slowCallDurationThreshold;
+            return this;
+        }
+
+        //Milliseconds the breaker stays open before letting probe calls through
+        public CircuitBreakerPolicyBuilder setWaitDurationInOpenState(long waitDurationInOpenState) {
+            this.waitDurationInOpenState = waitDurationInOpenState;
+            return this;
+        }
+
+        //Number of probe calls let through while half open
+        public CircuitBreakerPolicyBuilder setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+            this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+            return this;
+        }
+
+        public CircuitBreakerPolicy createCircuitBreakerPolicy() {
+            if (slidingWindowSize <= 0 || minimumNumberOfCalls <= 0 || permittedCallsInHalfOpenState <= 0 ||
+                    failureRateThreshold <= 0 || failureRateThreshold > 100 ||
+                    slowCallRateThreshold <= 0 || slowCallRateThreshold > 100 ||
+                    slowCallDurationThreshold <= 0 || waitDurationInOpenState < 0) {
+                throw new IllegalArgumentException("Invalid circuit breaker policy settings");
+            }
+            return new CircuitBreakerPolicy(slidingWindowSize, Math.min(minimumNumberOfCalls, slidingWindowSize),
+                    failureRateThreshold, slowCallRateThreshold, slowCallDurationThreshold, waitDurationInOpenState,
+                    permittedCallsInHalfOpenState);
+        }
+    }
+
+    /**
+     * Returns the circuit breaker for the endpoint and request type, creating it on first use.
+     */
+    public CircuitBreaker getCircuitBreaker(String endpoint, Class<?> requestType) {
+        ConcurrentMap<Class<?>, CircuitBreaker> byType = circuitBreakers.get(endpoint);
+        if (byType == null) {
+            circuitBreakers.putIfAbsent(endpoint, new ConcurrentHashMap<Class<?>, CircuitBreaker>());
+            byType = circuitBreakers.get(endpoint);
+        }
+        CircuitBreaker circuitBreaker = byType.get(requestType);
+        if (circuitBreaker == null) {
+            byType.putIfAbsent(requestType, new CircuitBreaker(endpoint + " " + requestType.getSimpleName(),
+                    slidingWindowSize, minimumNumberOfCalls, failureRateThreshold, slowCallRateThreshold,
+                    slowCallDurationThreshold, waitDurationInOpenState, permittedCallsInHalfOpenState));
+            circuitBreaker = byType.get(requestType);
+        }
+        return circuitBreaker;
+    }
+}
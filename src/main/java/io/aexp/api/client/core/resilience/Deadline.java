@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a call must have completed, covering every attempt and the time spent between them.
+ * <p>
+ * Pass a deadline to ApiClient.execute or executeAsync to bound the time a caller spends in the client.  The
+ * connection lease, connect and read timeouts of each attempt are shortened to the time remaining, retries that
+ * could not complete before the deadline are not attempted, and an exchange still in progress when the deadline
+ * passes is aborted.  Deadlines are immutable and may be shared by related calls.
+ */
+public final class Deadline {
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    public long remaining(TimeUnit unit) {
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    //Milliseconds left, rounded up so a deadline is only reported as zero once it has passed
+    public long remainingMillis() {
+        long remaining = deadlineNanos - System.nanoTime();
+        return (remaining <= 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(remaining + 999999);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Returns whichever of this deadline and the other one expires first.
+     */
+    public Deadline min(Deadline other) {
+        if (other == null) {
+            return this;
+        }
+        return (other.deadlineNanos - deadlineNanos < 0) ? other : this;
+    }
+
+    /**
+     * Runs the task on the shared timer thread once the deadline has passed.  The task must not block.
+     */
+    public ScheduledFuture<?> whenExpired(Runnable task) {
+        return RetryPolicy.getScheduler().schedule(task, Math.max(0, deadlineNanos - System.nanoTime()),
+                TimeUnit.NANOSECONDS);
+    }
+}
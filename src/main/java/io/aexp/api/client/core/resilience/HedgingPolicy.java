@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import io.aexp.api.client.core.models.ApiClientRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second copy of a slow GET request and uses whichever response arrives first.
+ * <p>
+ * When a response has not arrived after the hedge delay another attempt, built from scratch with fresh
+ * authentication headers, is sent on its own pooled connection.  The first successful response completes the
+ * call and the other attempts are cancelled.  The delay is either fixed or the configured percentile of the
+ * latencies recently observed for the endpoint and request type, so only the slowest calls are hedged.  Hedges
+ * take a token from a {@link RetryBudget}, which by default allows one hedge per ten successful calls, so a slow
+ * server does not receive twice the load.  Only GET requests, such as StatusRequest and MetaDataRequest, are
+ * hedged.
+ */
+public class HedgingPolicy {
+    public static final long DEFAULT_HEDGE_DELAY = 100;
+    public static final int DEFAULT_MAX_HEDGES = 1;
+
+    //Latencies kept per endpoint and request type and how often the percentile is recomputed from them
+    private static final int SAMPLE_SIZE = 256;
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    private final long hedgeDelay;
+    private final double latencyPercentile;
+    private final int maxHedges;
+    private final RetryBudget hedgeBudget;
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, Latencies>> latencies =
+            new ConcurrentHashMap<String, ConcurrentMap<Class<?>, Latencies>>();
+
+    public HedgingPolicy(long hedgeDelay, double latencyPercentile, int maxHedges, RetryBudget hedgeBudget) {
+        this.hedgeDelay = hedgeDelay;
+        this.latencyPercentile = latencyPercentile;
+        this.maxHedges = maxHedges;
+        this.hedgeBudget = hedgeBudget;
+    }
+
+    public static class HedgingPolicyBuilder {
+        private long hedgeDelay = DEFAULT_HEDGE_DELAY;
+        private double latencyPercentile;
+        private int maxHedges = DEFAULT_MAX_HEDGES;
+        private RetryBudget hedgeBudget;
+
+        //Milliseconds to wait for a response before sending a hedge, also used until enough latencies have been
+        //observed for the percentile
+        public HedgingPolicyBuilder setHedgeDelay(long hedgeDelay) {
+            this.hedgeDelay = hedgeDelay;
+            return this;
+        }
+
+        //Hedges once a call takes longer than this percentile of recent latencies, for example 0.95.  Not set by
+        //default, the fixed hedge delay is used
+        public HedgingPolicyBuilder setLatencyPercentile(double latencyPercentile) {
+            this.latencyPercentile = latencyPercentile;
+            return this;
+        }
+
+        //Number of hedges sent at most per call, one hedge delay apart
+        public HedgingPolicyBuilder setMaxHedges(int maxHedges) {
+            this.maxHedges = maxHedges;
+            return this;
+        }
+
+        //Budget shared by every client using the policy.  Defaults to a new RetryBudget
+        public HedgingPolicyBuilder setHedgeBudget(RetryBudget hedgeBudget) {
+            this.hedgeBudget = hedgeBudget;
+            return this;
+        }
+
+        public HedgingPolicy createHedgingPolicy() {
+            if (hedgeDelay < 0 || maxHedges <= 0 || latencyPercentile < 0 || latencyPercentile >= 1) {
+                throw new IllegalArgumentException("Invalid hedging policy settings");
+            }
+            return new HedgingPolicy(hedgeDelay, latencyPercentile, maxHedges,
+                    (hedgeBudget != null) ? hedgeBudget : new RetryBudget());
+        }
+    }
+
+    public boolean isHedgeable(ApiClientRequest request) {
+        return request != null && "GET".equals(request.getHttpAction());
+    }
+
+    /**
+     * Runs the attempt, hedging it when the request is hedgeable.  The listener is told whether a hedge or the
+     * first attempt won for every call a hedge was sent for.  Cancelling the returned future cancels every
+     * attempt in progress.
+     */
+    public <T> CompletableFuture<T> executeAsync(String endpoint, ApiClientRequest request,
+                                                 Supplier<CompletableFuture<T>> attempt,
+                                                 Consumer<Boolean> hedgeListener) {
+        return executeAsync(endpoint, request, attempt, hedgeListener, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the attempt like {@link #executeAsync(String, ApiClientRequest, Supplier, Consumer)}, starting hedges on
+     * the executor.  The timer thread only triggers a hedge, so preparing and signing it never holds up the
+     * deadlines, retries and hedges of other calls.
+     */
+    public <T> CompletableFuture<T> executeAsync(String endpoint, ApiClientRequest request,
+                                                 Supplier<CompletableFuture<T>> attempt,
+                                                 Consumer<Boolean> hedgeListener, Executor executor) {
+        if (!isHedgeable(request)) {
+            return attempt.get();
+        }
+        HedgedCall<T> call = new HedgedCall<T>(getLatencies(endpoint, request.getClass()),
+                getHedgeDelay(endpoint, request.getClass()), attempt, hedgeListener, executor);
+        call.send(0);
+        return call.result;
+    }
+
+    /**
+     * Returns the milliseconds to wait for a response before hedging a request to the endpoint.
+     */
+    public long getHedgeDelay(String endpoint, Class<?> requestType) {
+        if (latencyPercentile > 0) {
+            long percentile = getLatencies(endpoint, requestType).percentileNanos;
+            if (percentile >= 0) {
+                return TimeUnit.NANOSECONDS.toMillis(percentile);
+            }
+        }
+        return hedgeDelay;
+    }
+
+    public RetryBudget getHedgeBudget() {
+        return hedgeBudget;
+    }
+
+    private Latencies getLatencies(String endpoint, Class<?> requestType) {
+        ConcurrentMap<Class<?>, Latencies> byType = latencies.get(endpoint);
+        if (byType == null) {
+            latencies.putIfAbsent(endpoint, new ConcurrentHashMap<Class<?>, Latencies>());
+            byType = latencies.get(endpoint);
+        }
+        Latencies result = byType.get(requestType);
+        if (result == null) {
+            byType.putIfAbsent(requestType, new Latencies());
+            result = byType.get(requestType);
+        }
+        return result;
+    }
+
+    //The attempts of one call, the first one and its hedges
+    private class HedgedCall<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<T>();
+        private final List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<CompletableFuture<T>>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Latencies latencies;
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final Consumer<Boolean> hedgeListener;
+        private final Executor executor;
+        private final long delay;
+        private volatile boolean hedged;
+        private volatile ScheduledFuture<?> timer;
+
+        private HedgedCall(Latencies latencies, long delay, Supplier<CompletableFuture<T>> attempt,
+                           Consumer<Boolean> hedgeListener, Executor executor) {
+            this.latencies = latencies;
+            this.delay = delay;
+            this.attempt = attempt;
+            this.hedgeListener = hedgeListener;
+            this.executor = executor;
+
+            result.whenComplete((value, throwable) -> {
+                ScheduledFuture<?> scheduled = timer;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+                for (CompletableFuture<T> current : attempts) {
+                    current.cancel(true);
+                }
+            });
+        }
+
+        private void send(final int index) {
+            final long start = System.nanoTime();
+            CompletableFuture<T> current;
+            pending.incrementAndGet();
+            try {
+                current = attempt.get();
+            } catch (Exception e) {
+                current = new CompletableFuture<T>();
+                current.completeExceptionally(e);
+            }
+            attempts.add(current);
+            if (result.isDone()) {
+                current.cancel(true);
+                return;
+            }
+
+            current.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    latencies.record(System.nanoTime() - start);
+                    if (result.complete(value)) {
+                        hedgeBudget.onSuccess();
+                        if (hedged && hedgeListener != null) {
+                            hedgeListener.accept(index > 0);
+                        }
+                    }
+                } else if (pending.decrementAndGet() == 0) {
+                    //Failures are left to the retry policy, no hedge is sent once every attempt has failed
+                    result.completeExceptionally((throwable instanceof CompletionException &&
+                            throwable.getCause() != null) ? throwable.getCause() : throwable);
+                }
+            });
+
+            if (index < maxHedges && !result.isDone()) {
+                final Runnable hedge = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!result.isDone() && hedgeBudget.tryAcquire()) {
+                            hedged = true;
+                            send(index + 1);
+                        }
+                    }
+                };
+                timer = RetryPolicy.getScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (result.isDone()) {
+                            return;
+                        }
+                        try {
+                            executor.execute(hedge);
+                        } catch (RejectedExecutionException e) {
+                            //No hedge, the attempts in progress still complete the call
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    //Recent latencies of successful attempts in a ring, with the configured percentile recomputed periodically
+    private class Latencies {
+        private final AtomicLongArray samples = new AtomicLongArray(SAMPLE_SIZE);
+        private final AtomicLong count = new AtomicLong();
+        private volatile long percentileNanos = -1;
+
+        private void record(long nanos) {
+            long recorded = count.incrementAndGet();
+            samples.set((int) ((recorded - 1) % SAMPLE_SIZE), nanos);
+            if (latencyPercentile > 0 && recorded % RECOMPUTE_INTERVAL == 0) {
+                int size = (int) Math.min(recorded, SAMPLE_SIZE);
+                long[] sorted = new long[size];
+                for (int i = 0; i < size; i++) {
+                    sorted[i] = samples.get(i);
+                }
+                Arrays.sort(sorted);
+                percentileNanos = sorted[(int) Math.min(size - 1, Math.ceil(latencyPercentile * size) - 1)];
+            }
+        }
+    }
+}
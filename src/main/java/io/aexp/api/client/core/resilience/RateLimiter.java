@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import io.aexp.api.client.core.exceptions.RateLimitExceededException;
+import org.apache.http.Header;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket limiting the rate of requests made with one client key to one API, created by a
+ * {@link RateLimiterPolicy}.
+ * <p>
+ * Permits are added at a fixed rate up to the burst size.  A caller may take a permit without waiting, wait for
+ * one blocking the thread or get a future completing once its permit is available.  Waiting callers reserve their
+ * permits in order, so a burst is spread out instead of being retried in lock step.  When the server answers 429
+ * the bucket is emptied and no permits are handed out until the time given in Retry-After has passed, and a
+ * response reporting the quota as used up through the RateLimit-Remaining and RateLimit-Reset headers, with or
+ * without the X- prefix, pauses the bucket until the reset.
+ * <p>
+ * A ReentrantLock rather than synchronized guards the state so waiting virtual threads do not pin their carrier.
+ */
+public class RateLimiter {
+    //Reset values larger than this are epoch seconds rather than seconds from now
+    private static final long EPOCH_SECONDS_THRESHOLD = 1000000000L;
+
+    private final String name;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final double nanosPerPermit;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private double storedPermits;
+    //Time the stored permits were last topped up to, in the future while the server asked to pause
+    private long lastRefill;
+
+    RateLimiter(String name, double permitsPerSecond, int burst) {
+        this.name = name;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.storedPermits = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a permit if one is available right now.
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Takes a permit, blocking until it is available when that is within the timeout.
+     *
+     * @return false without waiting when no permit becomes available within the timeout
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) {
+        long wait = reserve(unit.toNanos(timeout));
+        if (wait < 0) {
+            return false;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return true;
+        } catch (InterruptedException e) {
+            //Nothing will be sent, let the next caller have the permit
+            release();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Reserves a permit and returns a future completing once it is available, without blocking the caller.  The
+     * future fails with a RateLimitExceededException when no permit becomes available within the timeout.
+     * Cancelling the future before it completes gives the permit back to the bucket.
+     */
+    public CompletableFuture<Void> acquireAsync(long timeout, TimeUnit unit) {
+        long wait = reserve(unit.toNanos(timeout));
+        if (wait == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> permit = new CompletableFuture<Void>();
+        if (wait < 0) {
+            permit.completeExceptionally(exceeded());
+            return permit;
+        }
+        final ScheduledFuture<?> grant = RetryPolicy.getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                permit.complete(null);
+            }
+        }, wait, TimeUnit.NANOSECONDS);
+        //The caller gave up before the permit was granted, let the next caller have it
+        permit.whenComplete((ignored, throwable) -> {
+            if (permit.isCancelled()) {
+                grant.cancel(false);
+                release();
+            }
+        });
+        return permit;
+    }
+
+    //The failure of a request that could not get a permit in time, tells the caller when to try again
+    public RateLimitExceededException exceeded() {
+        return new RateLimitExceededException("Rate limit of " + permitsPerSecond +
+                " requests per second reached for " + name, TimeUnit.NANOSECONDS.toMillis(getWaitNanos()));
+    }
+
+    /**
+     * Adapts to the rate limiting headers of a response.
+     */
+    public void onResponse(int statusCode, Header[] headers) {
+        long now = System.nanoTime();
+        if (statusCode == 429) {
+            long retryAfter = parseSeconds(getHeader(headers, "Retry-After"));
+            pause(now, (retryAfter > 0) ? TimeUnit.SECONDS.toNanos(retryAfter) : 0);
+            return;
+        }
+        String remaining = getHeader(headers, "RateLimit-Remaining");
+        if (remaining != null && parseSeconds(remaining) == 0) {
+            long reset = parseSeconds(getHeader(headers, "RateLimit-Reset"));
+            if (reset > EPOCH_SECONDS_THRESHOLD) {
+                reset -= TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            }
+            if (reset > 0) {
+                pause(now, TimeUnit.SECONDS.toNanos(reset));
+            }
+        }
+    }
+
+    //Empties the bucket and hands out no permits for the duration, waiting callers keep their place in line
+    private void pause(long now, long duration) {
+        lock.lock();
+        try {
+            refill(now);
+            storedPermits = Math.min(storedPermits, (duration > 0) ? 1 : 0);
+            lastRefill = Math.max(lastRefill, now + duration);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Returns the nanoseconds until the reserved permit is available, or -1 without reserving when that exceeds
+    //the maximum wait
+    private long reserve(long maxWaitNanos) {
+        lock.lock();
+        try {
+            long wait = getWaitNanos();
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            storedPermits -= 1;
+            return wait;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Gives back a permit that was granted but will not be used
+    public void release() {
+        lock.lock();
+        try {
+            storedPermits = Math.min(burst, storedPermits + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long getWaitNanos() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            long wait = Math.max(0, lastRefill - now);
+            if (storedPermits < 1) {
+                wait += (long) Math.ceil((1 - storedPermits) * nanosPerPermit);
+            }
+            return wait;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            storedPermits = Math.min(burst, storedPermits + (now - lastRefill) / nanosPerPermit);
+            lastRefill = now;
+        }
+    }
+
+    private static String getHeader(Header[] headers, String name) {
+        if (headers != null) {
+            for (Header header : headers) {
+                String headerName = header.getName();
+                if (name.equalsIgnoreCase(headerName) || ("X-" + name).equalsIgnoreCase(headerName)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    //Only whole seconds are understood, dates and anything else are ignored
+    private static long parseSeconds(String value) {
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
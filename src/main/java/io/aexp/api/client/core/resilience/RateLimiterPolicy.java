@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Settings for the client side rate limits of an ApiClient, which keeps a {@link RateLimiter} per client key and
+ * limit so bursts stay within the quotas of the APIs instead of being answered with 429s.  A limit applies to the
+ * requests whose path starts with its URI prefix, either for one client key or for every key, each key getting a
+ * bucket of its own.  The limit with the longest matching prefix is used, one for the client key before one for
+ * every key.  A policy may be shared by several clients.
+ */
+public class RateLimiterPolicy {
+    public static final long DEFAULT_MAX_WAIT_DURATION = 0;
+
+    private final List<Limit> limits;
+    private final long maxWaitDuration;
+    private final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<String, RateLimiter>();
+
+    public RateLimiterPolicy(List<Limit> limits, long maxWaitDuration) {
+        this.limits = Collections.unmodifiableList(new ArrayList<Limit>(limits));
+        this.maxWaitDuration = maxWaitDuration;
+    }
+
+    public static class RateLimiterPolicyBuilder {
+        private final List<Limit> limits = new ArrayList<Limit>();
+        private long maxWaitDuration = DEFAULT_MAX_WAIT_DURATION;
+
+        //Limits the requests made with every client key to paths starting with the prefix, such as /b2bcommerce/v2
+        public RateLimiterPolicyBuilder addLimit(String uriPrefix, double permitsPerSecond, int burst) {
+            return addLimit(null, uriPrefix, permitsPerSecond, burst);
+        }
+
+        //Limits the requests made with the client key to paths starting with the prefix
+        public RateLimiterPolicyBuilder addLimit(String clientKey, String uriPrefix, double permitsPerSecond,
+                                                 int burst) {
+            limits.add(new Limit(clientKey, uriPrefix, permitsPerSecond, burst));
+            return this;
+        }
+
+        //Milliseconds a call waits for a permit before failing, blocking calls sleep while asynchronous calls are
+        //prepared and sent on the executor of the client once their permit is available.  0 fails right away
+        public RateLimiterPolicyBuilder setMaxWaitDuration(long maxWaitDuration) {
+            this.maxWaitDuration = maxWaitDuration;
+            return this;
+        }
+
+        public RateLimiterPolicy createRateLimiterPolicy() {
+            if (limits.isEmpty() || maxWaitDuration < 0) {
+                throw new IllegalArgumentException("Invalid rate limiter policy settings");
+            }
+            for (Limit limit : limits) {
+                if (limit.uriPrefix == null || limit.permitsPerSecond <= 0 || limit.burst <= 0) {
+                    throw new IllegalArgumentException("Invalid rate limiter policy settings");
+                }
+            }
+            return new RateLimiterPolicy(limits, maxWaitDuration);
+        }
+    }
+
+    /**
+     * Returns the rate limiter for requests made with the client key to the path, creating it on first use.
+     *
+     * @return null when no limit applies to the path
+     */
+    public RateLimiter getRateLimiter(String clientKey, String path) {
+        Limit limit = getLimit(clientKey, path);
+        if (limit == null) {
+            return null;
+        }
+        String name = ((clientKey != null) ? clientKey : "") + " " + limit.uriPrefix;
+        RateLimiter rateLimiter = rateLimiters.get(name);
+        if (rateLimiter == null) {
+            rateLimiters.putIfAbsent(name, new RateLimiter(name, limit.permitsPerSecond, limit.burst));
+            rateLimiter = rateLimiters.get(name);
+        }
+        return rateLimiter;
+    }
+
+    private Limit getLimit(String clientKey, String path) {
+        Limit best = null;
+        for (Limit limit : limits) {
+            if ((limit.clientKey == null || limit.clientKey.equals(clientKey)) && path.startsWith(limit.uriPrefix) &&
+                    (best == null || limit.isBetterMatchThan(best))) {
+                best = limit;
+            }
+        }
+        return best;
+    }
+
+    public long getMaxWaitDuration() {
+        return maxWaitDuration;
+    }
+
+    //A rate for the requests to paths under a prefix, for one client key or for every key when it is null
+    public static final class Limit {
+        private final String clientKey;
+        private final String uriPrefix;
+        private final double permitsPerSecond;
+        private final int burst;
+
+        private Limit(String clientKey, String uriPrefix, double permitsPerSecond, int burst) {
+            this.clientKey = clientKey;
+            this.uriPrefix = uriPrefix;
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+
+        private boolean isBetterMatchThan(Limit other) {
+            if ((clientKey != null) != (other.clientKey != null)) {
+                return clientKey != null;
+            }
+            return uriPrefix.length() > other.uriPrefix.length();
+        }
+    }
+}
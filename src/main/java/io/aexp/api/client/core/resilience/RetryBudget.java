@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting retries to a fraction of successful requests, so an outage does not multiply the load
+ * on the server by the number of attempts.
+ * <p>
+ * Every retry takes one token and every successful request returns tokenRatio tokens, up to maxTokens.  Once
+ * the bucket is empty failed requests are not retried until enough requests have succeeded again.
+ */
+public class RetryBudget {
+    public static final int DEFAULT_MAX_TOKENS = 10;
+    public static final double DEFAULT_TOKEN_RATIO = 0.1;
+
+    //Tokens are counted in thousandths so fractional ratios can be kept in a single atomic
+    private static final long SCALE = 1000;
+
+    private final long maxTokens;
+    private final long tokenRatio;
+    private final AtomicLong tokens;
+
+    public RetryBudget(int maxTokens, double tokenRatio) {
+        if (maxTokens <= 0 || tokenRatio < 0) {
+            throw new IllegalArgumentException("Max tokens must be positive and token ratio must not be negative");
+        }
+        this.maxTokens = maxTokens * SCALE;
+        this.tokenRatio = Math.round(tokenRatio * SCALE);
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    public RetryBudget() {
+        this(DEFAULT_MAX_TOKENS, DEFAULT_TOKEN_RATIO);
+    }
+
+    //Takes a token for a retry, returns false when the budget is exhausted
+    public boolean tryAcquire() {
+        while (true) {
+            long current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    public void onSuccess() {
+        while (true) {
+            long current = tokens.get();
+            long updated = Math.min(maxTokens, current + tokenRatio);
+            if (current == updated || tokens.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    public double getAvailableTokens() {
+        return (double) tokens.get() / SCALE;
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import io.aexp.api.client.core.exceptions.ExecutorException;
+import io.aexp.api.client.core.exceptions.HttpStatusException;
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.tokenization.MetaDataRequest;
+import io.aexp.api.client.core.tokenization.StatusRequest;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether and when a failed request is sent again.
+ * <p>
+ * Requests are only retried when it is safe to do so.  Idempotent requests, identified by their HTTP method or
+ * their type, are retried after I/O errors and retryable statuses.  Other requests, such as ProvisioningRequests,
+ * are only retried when the connection could not be established or the server answered 429, as the server has
+ * not processed them in either case.  Retries wait an exponentially growing, fully jittered delay, or the delay
+ * the server asked for in Retry-After, and are limited by a {@link RetryBudget} shared by every client using the
+ * policy.  Each attempt is built from scratch, so it is signed with a fresh nonce and timestamp.
+ */
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF = 100;
+    public static final long DEFAULT_MAX_BACKOFF = 5000;
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+
+    private static final Set<String> IDEMPOTENT_METHODS =
+            Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE")));
+
+    private static volatile ScheduledExecutorService scheduler;
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final double multiplier;
+    private final Set<Integer> retryableStatusCodes;
+    private final Set<Class<? extends ApiClientRequest>> idempotentRequestTypes;
+    private final RetryBudget retryBudget;
+
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, double multiplier,
+                       Set<Integer> retryableStatusCodes,
+                       Set<Class<? extends ApiClientRequest>> idempotentRequestTypes, RetryBudget retryBudget) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.multiplier = multiplier;
+        this.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(retryableStatusCodes));
+        this.idempotentRequestTypes = Collections.unmodifiableSet(
+                new HashSet<Class<? extends ApiClientRequest>>(idempotentRequestTypes));
+        this.retryBudget = retryBudget;
+    }
+
+    public static class RetryPolicyBuilder {
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+        private long maxBackoff = DEFAULT_MAX_BACKOFF;
+        private double multiplier = DEFAULT_MULTIPLIER;
+        private Set<Integer> retryableStatusCodes = new HashSet<Integer>(Arrays.asList(429, 502, 503, 504));
+        private Set<Class<? extends ApiClientRequest>> idempotentRequestTypes =
+                new HashSet<Class<? extends ApiClientRequest>>(
+                        Arrays.<Class<? extends ApiClientRequest>>asList(StatusRequest.class, MetaDataRequest.class));
+        private RetryBudget retryBudget;
+
+        //Total number of attempts including the first one
+        public RetryPolicyBuilder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        //Upper bound in milliseconds of the delay before the first retry, it grows by the multiplier per retry
+        public RetryPolicyBuilder setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        //Largest delay in milliseconds between two attempts, also caps the delay asked for in Retry-After
+        public RetryPolicyBuilder setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public RetryPolicyBuilder setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        public RetryPolicyBuilder setRetryableStatusCodes(Integer... statusCodes) {
+            this.retryableStatusCodes = new HashSet<Integer>(Arrays.asList(statusCodes));
+            return this;
+        }
+
+        //Marks a request type as safe to send more than once regardless of its HTTP method
+        public RetryPolicyBuilder addIdempotentRequestType(Class<? extends ApiClientRequest> requestType) {
+            this.idempotentRequestTypes.add(requestType);
+            return this;
+        }
+
+        //Budget shared by every client using the policy.  Defaults to a new RetryBudget
+        public RetryPolicyBuilder setRetryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        public RetryPolicy createRetryPolicy() {
+            if (maxAttempts <= 0 || initialBackoff < 0 || maxBackoff < initialBackoff || multiplier < 1) {
+                throw new IllegalArgumentException("Invalid retry policy settings");
+            }
+            return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier, retryableStatusCodes,
+                    idempotentRequestTypes, (retryBudget != null) ? retryBudget : new RetryBudget());
+        }
+    }
+
+    /**
+     * Runs the attempt until it succeeds or the failure may not be retried, sleeping between attempts.
+     */
+    public <T> T execute(ApiClientRequest request, Callable<T> attempt) {
+        return execute(request, null, attempt);
+    }
+
+    /**
+     * Runs the attempt like {@link #execute(ApiClientRequest, Callable)}, without retrying once the next attempt
+     * could not start before the deadline.
+     */
+    public <T> T execute(ApiClientRequest request, Deadline deadline, Callable<T> attempt) {
+        for (int attempts = 1; ; attempts++) {
+            try {
+                T result = attempt.call();
+                retryBudget.onSuccess();
+                return result;
+            } catch (Exception e) {
+                long delay = getRetryDelay(request, attempts, e, deadline);
+                if (delay < 0) {
+                    throw asRuntimeException(e);
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw asRuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the attempt until it succeeds or the failure may not be retried.  The delay before a retry is waited out
+     * on a shared timer thread rather than blocking the caller, and the retry is started on the common fork-join
+     * pool.  Cancelling the returned future cancels the current attempt and stops further retries.
+     */
+    public <T> CompletableFuture<T> executeAsync(ApiClientRequest request, Supplier<CompletableFuture<T>> attempt) {
+        return executeAsync(request, null, attempt);
+    }
+
+    /**
+     * Runs the attempt like {@link #executeAsync(ApiClientRequest, Supplier)}, without retrying once the next
+     * attempt could not start before the deadline.
+     */
+    public <T> CompletableFuture<T> executeAsync(ApiClientRequest request, Deadline deadline,
+                                                 Supplier<CompletableFuture<T>> attempt) {
+        return executeAsync(request, deadline, attempt, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the attempt like {@link #executeAsync(ApiClientRequest, Deadline, Supplier)}, starting retries on the
+     * executor.  The timer thread only triggers a retry, so preparing and signing it never holds up the deadlines
+     * and retries of other calls.
+     */
+    public <T> CompletableFuture<T> executeAsync(ApiClientRequest request, Deadline deadline,
+                                                 Supplier<CompletableFuture<T>> attempt, Executor executor) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        final AtomicReference<CompletableFuture<T>> current = new AtomicReference<CompletableFuture<T>>();
+        result.whenComplete((value, throwable) -> {
+            CompletableFuture<T> inFlight = current.get();
+            if (result.isCancelled() && inFlight != null) {
+                inFlight.cancel(true);
+            }
+        });
+        executeAsync(request, deadline, attempt, executor, 1, result, current);
+        return result;
+    }
+
+    private <T> void executeAsync(final ApiClientRequest request, final Deadline deadline,
+                                  final Supplier<CompletableFuture<T>> attempt, final Executor executor,
+                                  final int attempts, final CompletableFuture<T> result,
+                                  final AtomicReference<CompletableFuture<T>> inFlight) {
+        CompletableFuture<T> current;
+        try {
+            current = attempt.get();
+        } catch (Exception e) {
+            current = new CompletableFuture<T>();
+            current.completeExceptionally(e);
+        }
+        inFlight.set(current);
+        if (result.isCancelled()) {
+            current.cancel(true);
+        }
+
+        current.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                retryBudget.onSuccess();
+                result.complete(value);
+                return;
+            }
+
+            Throwable cause = (throwable instanceof CompletionException && throwable.getCause() != null) ?
+                    throwable.getCause() : throwable;
+            long delay = (cause instanceof Exception && !result.isDone()) ?
+                    getRetryDelay(request, attempts, (Exception) cause, deadline) : -1;
+            if (delay < 0) {
+                result.completeExceptionally(cause);
+            } else {
+                final Runnable retry = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!result.isDone()) {
+                            executeAsync(request, deadline, attempt, executor, attempts + 1, result, inFlight);
+                        }
+                    }
+                };
+                getScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (result.isDone()) {
+                            return;
+                        }
+                        try {
+                            executor.execute(retry);
+                        } catch (RejectedExecutionException e) {
+                            result.completeExceptionally(cause);
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Returns the milliseconds to wait before the next attempt, or -1 when the failure of the given attempt must
+     * not be retried.  A retry takes a token from the retry budget.
+     */
+    long getRetryDelay(ApiClientRequest request, int attempts, Exception exception) {
+        return getRetryDelay(request, attempts, exception, null);
+    }
+
+    long getRetryDelay(ApiClientRequest request, int attempts, Exception exception, Deadline deadline) {
+        if (attempts >= maxAttempts || !isRetryable(request, exception)) {
+            return -1;
+        }
+
+        long backoff = (long) Math.min(maxBackoff, initialBackoff * Math.pow(multiplier, attempts - 1));
+        long delay = ThreadLocalRandom.current().nextLong(backoff + 1);
+
+        HttpStatusException statusException = findCause(exception, HttpStatusException.class);
+        long retryAfter = (statusException != null) ? parseRetryAfter(statusException.getHeader("Retry-After")) : -1;
+        if (retryAfter > 0) {
+            delay = Math.min(maxBackoff, Math.max(delay, retryAfter));
+        }
+
+        //A retry that cannot start before the deadline would only be aborted, keep the budget token
+        if (deadline != null && delay >= deadline.remainingMillis()) {
+            return -1;
+        }
+        return retryBudget.tryAcquire() ? delay : -1;
+    }
+
+    boolean isRetryable(ApiClientRequest request, Exception exception) {
+        //Nothing was sent, any request can be sent again
+        if (findCause(exception, ConnectException.class) != null ||
+                findCause(exception, ConnectTimeoutException.class) != null ||
+                findCause(exception, NoRouteToHostException.class) != null ||
+                findCause(exception, UnknownHostException.class) != null) {
+            return true;
+        }
+
+        HttpStatusException statusException = findCause(exception, HttpStatusException.class);
+        if (statusException != null) {
+            if (!retryableStatusCodes.contains(statusException.getStatusCode())) {
+                return false;
+            }
+            //The server rejected the request before processing it
+            return statusException.getStatusCode() == 429 || isIdempotent(request);
+        }
+
+        //Timeouts, resets and dropped connections, the request may or may not have been processed
+        return isIdempotent(request) && (findCause(exception, NoHttpResponseException.class) != null ||
+                findCause(exception, SocketException.class) != null ||
+                findCause(exception, InterruptedIOException.class) != null);
+    }
+
+    public boolean isIdempotent(ApiClientRequest request) {
+        return request != null && (IDEMPOTENT_METHODS.contains(request.getHttpAction()) ||
+                idempotentRequestTypes.contains(request.getClass()));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    //Only the delta-seconds form is honoured, dates are ignored
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static <E extends Throwable> E findCause(Throwable throwable, Class<E> type) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static RuntimeException asRuntimeException(Exception e) {
+        return (e instanceof RuntimeException) ? (RuntimeException) e :
+                new ExecutorException("Exception sending request to server: " + e.getMessage(), e);
+    }
+
+    //Timer thread shared by the retries and the deadlines of every client
+    static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (RetryPolicy.class) {
+                if (scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "amex-api-scheduler");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    //Deadlines are cancelled by almost every call that sets one, do not let them pile up
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+}
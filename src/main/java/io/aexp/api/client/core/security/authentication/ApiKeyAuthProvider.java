@@ -16,6 +16,8 @@ package io.aexp.api.client.core.security.authentication;
 
 import io.aexp.api.client.core.configuration.ConfigurationKeys;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.Map;
@@ -36,4 +38,23 @@ public class ApiKeyAuthProvider extends BaseAuthProvider {
 		return Collections.unmodifiableMap(headers);
 	}
 
+	//The body is not part of the headers, it is neither decoded nor read
+
+	@Override
+	public Map<String, String> generateAuthHeadersForBody(byte[] requestBody, String requestUrl, String httpMethod) {
+		return generateAuthHeaders(null, requestUrl, httpMethod);
+	}
+
+	@Override
+	public Map<String, String> generateAuthHeadersForBody(ByteBuffer requestBody, String requestUrl,
+														  String httpMethod) {
+		return generateAuthHeaders(null, requestUrl, httpMethod);
+	}
+
+	@Override
+	public Map<String, String> generateAuthHeadersForBody(InputStream requestBody, String requestUrl,
+														  String httpMethod) {
+		return generateAuthHeaders(null, requestUrl, httpMethod);
+	}
+
 }
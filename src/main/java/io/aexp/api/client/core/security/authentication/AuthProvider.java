@@ -16,6 +16,12 @@ package io.aexp.api.client.core.security.authentication;
 
 import io.aexp.api.client.core.configuration.ConfigurationProvider;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 
@@ -33,5 +39,46 @@ public interface AuthProvider {
 	
 	Map<String, String> generateAuthHeaders(String requestPayload, String requestUrl, String httpMethod);
 
+	/**
+	 * Generates the authentication headers for a request whose body is already encoded as UTF-8, such as the
+	 * bytes about to be sent.  Providers hashing the body override this to avoid decoding it into a String.
+	 * @param requestBody the body, null when the request has none
+	 */
+	default Map<String, String> generateAuthHeadersForBody(byte[] requestBody, String requestUrl, String httpMethod) {
+		return generateAuthHeaders((requestBody != null) ? new String(requestBody, StandardCharsets.UTF_8) : null,
+				requestUrl, httpMethod);
+	}
+
+	/**
+	 * Generates the authentication headers for a body held in the remaining bytes of the buffer, encoded as UTF-8.
+	 * The position of the buffer is left unchanged.
+	 */
+	default Map<String, String> generateAuthHeadersForBody(ByteBuffer requestBody, String requestUrl,
+														   String httpMethod) {
+		return generateAuthHeaders((requestBody != null) ?
+				StandardCharsets.UTF_8.decode(requestBody.duplicate()).toString() : null, requestUrl, httpMethod);
+	}
+
+	/**
+	 * Generates the authentication headers for a body read from the stream, encoded as UTF-8.  The stream is read
+	 * to its end but not closed, the body has to be supplied again to send it.
+	 */
+	default Map<String, String> generateAuthHeadersForBody(InputStream requestBody, String requestUrl,
+														   String httpMethod) {
+		if (requestBody == null) {
+			return generateAuthHeaders(null, requestUrl, httpMethod);
+		}
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int read = requestBody.read(buffer); read != -1; read = requestBody.read(buffer)) {
+				body.write(buffer, 0, read);
+			}
+			return generateAuthHeadersForBody(body.toByteArray(), requestUrl, httpMethod);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 
 }
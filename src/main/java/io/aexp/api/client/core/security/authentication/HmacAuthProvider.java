@@ -15,28 +15,45 @@
 
 package io.aexp.api.client.core.security.authentication;
 
-import java.net.URL;
-import java.util.Collections;
-import java.util.Hashtable;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.UUID;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import io.aexp.api.client.core.configuration.ConfigurationKeys;
-import io.aexp.api.client.core.security.Base64;
+import io.aexp.api.client.core.configuration.ConfigurationProvider;
 
 /**
  * Provides the implementation of the Amex specific HMAC algorithm.
  */
 public class HmacAuthProvider extends BaseAuthProvider {
 
-	private static final String HMAC_SHA256_ALGORITHM = "HmacSHA256";
-    private static final String SIGNATURE_FORMAT = "%s\n%s\n%s\n%s\n%s\n%s\n%s\n";
-    private static final String AUTH_HEADER_FORMAT = "MAC id=\"%s\",ts=\"%s\",nonce=\"%s\",bodyhash=\"%s\",mac=\"%s\"";
-	private static final String UTF8_ENCODING = "UTF-8";
+	//Endpoints a provider signs for are few, more than this means the map is not worth keeping
+	private static final int MAX_ENDPOINT_SIGNERS = 16;
+
+	//Resolved once when the configuration is set
+	private volatile String clientKey;
+	private volatile String clientSecret;
+	//Reused for as long as the configured client secret does not change
+	private volatile HmacSigner signer;
+	//Signers bound to the scheme and authority request URLs start with, so clients of several EndPoints share one
+	private final ConcurrentMap<String, HmacEndpointSigner> endpointSigners =
+			new ConcurrentHashMap<String, HmacEndpointSigner>();
+
+	/**
+	 * Sets the configuration and resolves the client key and secret from it, later changes to the values of the
+	 * configuration are not picked up.
+	 */
+	@Override
+	public AuthProvider setConfiguration(ConfigurationProvider provider) {
+		super.setConfiguration(provider);
+		this.clientKey = (provider != null) ? provider.getValue(ConfigurationKeys.CLIENT_KEY) : null;
+		this.clientSecret = (provider != null) ? provider.getValue(ConfigurationKeys.CLIENT_SECRET) : null;
+		endpointSigners.clear();
+		return this;
+	}
 
  /**
   * Generates the Amex specific authentication headers required to support the HMCA authentication schema.
@@ -45,28 +62,62 @@ public class HmacAuthProvider extends BaseAuthProvider {
   * The request ID header will be populated with a GUID.
   */
 	public Map<String, String> generateAuthHeaders(String reqPayload, String requestUrl, String httpMethod) {
-		String payload;
-		URL url;
-		String resourcePath;
-		String host;
-		String macAuth;
-		int port;
-		Map<String, String> headers = new Hashtable<String, String>();
+		return generateHeaders((reqPayload == null)? "" : reqPayload, requestUrl, httpMethod);
+	}
+
+	/**
+	 * Generates the headers like {@link #generateAuthHeaders(String, String, String)}, hashing the body bytes as
+	 * they are instead of a String copy of them.
+	 */
+	@Override
+	public Map<String, String> generateAuthHeadersForBody(byte[] requestBody, String requestUrl, String httpMethod) {
+		return generateHeaders((requestBody == null)? "" : requestBody, requestUrl, httpMethod);
+	}
+
+	/**
+	 * Generates the headers hashing the remaining bytes of the buffer in place, its position is left unchanged.
+	 */
+	@Override
+	public Map<String, String> generateAuthHeadersForBody(ByteBuffer requestBody, String requestUrl,
+														  String httpMethod) {
+		return generateHeaders((requestBody == null)? "" : requestBody, requestUrl, httpMethod);
+	}
+
+	/**
+	 * Generates the headers hashing the body as it is read from the stream, a chunk at a time, so a large body
+	 * never has to be held in memory.  The stream is read to its end but not closed.
+	 */
+	@Override
+	public Map<String, String> generateAuthHeadersForBody(InputStream requestBody, String requestUrl,
+														  String httpMethod) {
+		return generateHeaders((requestBody == null)? "" : requestBody, requestUrl, httpMethod);
+	}
+
+	private Map<String, String> generateHeaders(Object payload, String requestUrl, String httpMethod) {
 		try {
-			url = new URL(requestUrl);
-			resourcePath = url.getPath();
-			host = url.getHost().trim().toLowerCase();
-			port = (url.getPort() == -1) ? url.getDefaultPort() : url.getPort();
-			payload = (reqPayload == null)? "" : reqPayload;
-			macAuth = generateMacHeader(getConfigurationValue(ConfigurationKeys.CLIENT_KEY),
-					getConfigurationValue(ConfigurationKeys.CLIENT_SECRET), resourcePath, host, port, httpMethod, payload);
-			headers.put(AuthHeaderNames.AUTHORIZATION, macAuth);
-			headers.put(AuthHeaderNames.X_AMEX_API_KEY, getConfigurationValue(ConfigurationKeys.CLIENT_KEY));
-			headers.put(AuthHeaderNames.X_AMEX_REQUEST_ID, getRequestUUID());
+			return getEndpointSigner(requestUrl).generateAuthHeaders(payload, requestUrl, httpMethod,
+					UUID.randomUUID().toString(), Long.toString(System.currentTimeMillis()), getRequestUUID());
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
-		return Collections.unmodifiableMap(headers);
+	}
+
+	private HmacEndpointSigner getEndpointSigner(String requestUrl) throws Exception {
+		String baseUrl = HmacEndpointSigner.getBaseUrl(requestUrl);
+		HmacEndpointSigner current = endpointSigners.get(baseUrl);
+		if (current == null) {
+			String key = clientKey;
+			String secret = clientSecret;
+			if (key == null || secret == null) {
+				throw new IllegalStateException("Client key and secret are required");
+			}
+			current = HmacEndpointSigner.create(key, requestUrl, getSigner(secret));
+			if (endpointSigners.size() >= MAX_ENDPOINT_SIGNERS) {
+				endpointSigners.clear();
+			}
+			endpointSigners.putIfAbsent(baseUrl, current);
+		}
+		return current;
 	}
 
 	final String generateMacHeader(String client_id,
@@ -81,25 +132,15 @@ public class HmacAuthProvider extends BaseAuthProvider {
 	final String generateMacHeader(String client_id,
 			String client_secret, String resourcePath, String host, int port,
 			String httpMethod, String payload, String nonce, String ts) throws Exception {
-		SecretKeySpec signingKey = new SecretKeySpec(
-				client_secret.getBytes(UTF8_ENCODING), HMAC_SHA256_ALGORITHM);
-		Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
-		mac.init(signingKey);
-		
-		// create the bodyHash value by hashing the payload and encoding it
-		byte[] rawBodyHash = mac.doFinal(payload.getBytes(UTF8_ENCODING));
-		String bodyHash = Base64.encodeBytes(rawBodyHash);
-
-		//The order is CRITICAL! 
-		//Timestamp + \n + nonce + \n+ httpmethod + \n + path + \n +host + \n + port + \n +hash + \n
-		String signature = String.format(SIGNATURE_FORMAT, ts, nonce, httpMethod, resourcePath, host, port, bodyHash);
-
-		// Generate signature using client secret (crypto initialized above)
-		byte[] signatureBytes = mac.doFinal(signature.getBytes(UTF8_ENCODING));
-
-		// now encode the cypher for the web
-		String signatureStr = Base64.encodeBytes(signatureBytes);
-		String mac_authorization_header = String.format(AUTH_HEADER_FORMAT, client_id, ts, nonce, bodyHash, signatureStr);
-		return mac_authorization_header;
+		return getSigner(client_secret).sign(client_id, resourcePath, host, port, httpMethod, payload, nonce, ts);
+	}
+
+	private HmacSigner getSigner(String client_secret) {
+		HmacSigner current = signer;
+		if (current == null || !current.isFor(client_secret)) {
+			current = new HmacSigner(client_secret);
+			signer = current;
+		}
+		return current;
 	}
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.security.authentication;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * Signs requests made with one client key to one EndPoint.
+ * <p>
+ * Everything that only depends on the client and the target, the key material, the lower cased host and the port,
+ * the authorization header up to the timestamp and the start of the request URLs, is worked out once when the
+ * signer is created, so a request only costs its nonce, timestamp, body hash and MAC.  Instances are immutable and
+ * thread safe.
+ */
+final class HmacEndpointSigner {
+
+	private final String clientKey;
+	//Scheme and authority exactly as the request URLs start
+	private final String baseUrl;
+	private final String headerPrefix;
+	private final byte[] hostLine;
+	private final HmacSigner signer;
+
+	private HmacEndpointSigner(String clientKey, String baseUrl, String host, int port, HmacSigner signer) {
+		this.clientKey = clientKey;
+		this.baseUrl = baseUrl;
+		this.headerPrefix = HmacSigner.getHeaderPrefix(clientKey);
+		this.hostLine = HmacSigner.getHostLine(host, port);
+		this.signer = signer;
+	}
+
+	//Binds the signer to the target of the URL
+	static HmacEndpointSigner create(String clientKey, String requestUrl, HmacSigner signer)
+			throws MalformedURLException {
+		URL url = new URL(requestUrl);
+		String host = url.getHost().trim().toLowerCase();
+		int port = (url.getPort() == -1) ? url.getDefaultPort() : url.getPort();
+		return new HmacEndpointSigner(clientKey, getBaseUrl(requestUrl), host, port, signer);
+	}
+
+	//The scheme and authority the URL starts with, up to the path, query or fragment
+	static String getBaseUrl(String requestUrl) {
+		int pathStart = requestUrl.indexOf("://") + 3;
+		while (pathStart < requestUrl.length() && "/?#".indexOf(requestUrl.charAt(pathStart)) < 0) {
+			pathStart++;
+		}
+		return requestUrl.substring(0, pathStart);
+	}
+
+	//The payload is a String, a byte[], a ByteBuffer or an InputStream, see HmacSigner
+	Map<String, String> generateAuthHeaders(Object payload, String requestUrl, String httpMethod, String nonce,
+											String ts, String requestId) throws IOException {
+		Map<String, String> headers = new Hashtable<String, String>();
+		headers.put(AuthHeaderNames.AUTHORIZATION, signer.sign(headerPrefix, getResourcePath(requestUrl), hostLine,
+				httpMethod, payload, nonce, ts));
+		headers.put(AuthHeaderNames.X_AMEX_API_KEY, clientKey);
+		headers.put(AuthHeaderNames.X_AMEX_REQUEST_ID, requestId);
+		return Collections.unmodifiableMap(headers);
+	}
+
+	//The path of the URL without query or fragment, as java.net.URL would report it
+	private String getResourcePath(String requestUrl) {
+		int end = baseUrl.length();
+		while (end < requestUrl.length() && requestUrl.charAt(end) != '?' && requestUrl.charAt(end) != '#') {
+			end++;
+		}
+		return requestUrl.substring(baseUrl.length(), end);
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2016 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.security.authentication;
+
+import io.aexp.api.client.core.exceptions.CryptoException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Computes Amex HMAC authorization headers for a single client secret.
+ * <p>
+ * Initialised Mac instances are kept in a small lock-free pool together with the scratch buffers the canonical
+ * request is written into, so signing a request allocates little more than the resulting header strings.
+ * Bodies given as bytes, a ByteBuffer or an InputStream are hashed where they are rather than copied.
+ * Instances are thread safe.
+ */
+final class HmacSigner {
+
+	private static final String HMAC_SHA256_ALGORITHM = "HmacSHA256";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int MAC_LENGTH = 32;
+	private static final int ENCODED_MAC_LENGTH = 44;
+	private static final int INITIAL_BUFFER_SIZE = 512;
+	//Buffers grown beyond this by large payloads are not kept in the pool
+	private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+	private static final int POOL_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+	private final String clientSecret;
+	private final SecretKeySpec signingKey;
+	private final AtomicReferenceArray<State> pool = new AtomicReferenceArray<State>(POOL_SIZE);
+
+	HmacSigner(String clientSecret) {
+		this.clientSecret = clientSecret;
+		this.signingKey = new SecretKeySpec(clientSecret.getBytes(UTF8), HMAC_SHA256_ALGORITHM);
+	}
+
+	boolean isFor(String clientSecret) {
+		return this.clientSecret.equals(clientSecret);
+	}
+
+	String sign(String clientId, String resourcePath, String host, int port, String httpMethod, String payload,
+				String nonce, String ts) throws IOException {
+		return sign(getHeaderPrefix(clientId), resourcePath, getHostLine(host, port), httpMethod, payload, nonce, ts);
+	}
+
+	//The start of the authorization header up to the timestamp, which only depends on the client id
+	static String getHeaderPrefix(String clientId) {
+		return "MAC id=\"" + clientId + "\",ts=\"";
+	}
+
+	//The host and port lines of the data to sign, which only depend on the target
+	static byte[] getHostLine(String host, int port) {
+		return (host + "\n" + port + "\n").getBytes(UTF8);
+	}
+
+	//The payload is a String, a byte[], a ByteBuffer or an InputStream, which is read to its end
+	String sign(String headerPrefix, String resourcePath, byte[] hostLine, String httpMethod, Object payload,
+				String nonce, String ts) throws IOException {
+		State state = borrow();
+		try {
+			// create the bodyHash value by hashing the payload and encoding it
+			String bodyHash = state.hash(payload);
+
+			//The order is CRITICAL!
+			//Timestamp + \n + nonce + \n+ httpmethod + \n + path + \n +host + \n + port + \n +hash + \n
+			state.length = 0;
+			state.append(ts).newLine();
+			state.append(nonce).newLine();
+			state.append(httpMethod).newLine();
+			state.append(resourcePath).newLine();
+			state.append(hostLine);
+			state.appendEncodedMac().newLine();
+			String signature = state.mac();
+
+			return new StringBuilder(80 + headerPrefix.length() + ts.length() + nonce.length())
+					.append(headerPrefix)
+					.append(ts)
+					.append("\",nonce=\"").append(nonce)
+					.append("\",bodyhash=\"").append(bodyHash)
+					.append("\",mac=\"").append(signature)
+					.append('"').toString();
+		} finally {
+			release(state);
+		}
+	}
+
+	private State borrow() {
+		for (int i = 0; i < POOL_SIZE; i++) {
+			State state = pool.getAndSet(i, null);
+			if (state != null) {
+				return state;
+			}
+		}
+		return new State(createMac());
+	}
+
+	private void release(State state) {
+		if (state.buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+			return;
+		}
+		for (int i = 0; i < POOL_SIZE; i++) {
+			if (pool.compareAndSet(i, null, state)) {
+				return;
+			}
+		}
+	}
+
+	private Mac createMac() {
+		try {
+			Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
+			mac.init(signingKey);
+			return mac;
+		} catch (Exception e) {
+			throw new CryptoException("Exception initialising " + HMAC_SHA256_ALGORITHM + ": " + e.getMessage(), e);
+		}
+	}
+
+	//A Mac bound to the signing key plus reusable buffers for the data to sign and the encoded results
+	private static final class State {
+		private final Mac mac;
+		private final byte[] rawMac = new byte[MAC_LENGTH];
+		private final byte[] encodedMac = new byte[ENCODED_MAC_LENGTH];
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+		private int length;
+
+		private State(Mac mac) {
+			this.mac = mac;
+		}
+
+		//MACs the body where it is, only a String is copied into the buffer to encode it
+		private String hash(Object body) throws IOException {
+			length = 0;
+			if (body instanceof byte[]) {
+				mac.update((byte[]) body);
+			} else if (body instanceof ByteBuffer) {
+				mac.update(((ByteBuffer) body).duplicate());
+			} else if (body instanceof InputStream) {
+				InputStream in = (InputStream) body;
+				try {
+					for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+						mac.update(buffer, 0, read);
+					}
+				} catch (IOException e) {
+					//The Mac goes back to the pool, drop what was hashed so far
+					mac.reset();
+					throw e;
+				}
+			} else if (body != null) {
+				append((String) body);
+			}
+			return mac();
+		}
+
+		//MACs the buffer and leaves the Base64 encoded result in encodedMac
+		private String mac() {
+			try {
+				mac.update(buffer, 0, length);
+				mac.doFinal(rawMac, 0);
+			} catch (ShortBufferException e) {
+				throw new CryptoException("Exception computing mac: " + e.getMessage(), e);
+			}
+			Base64.getEncoder().encode(rawMac, encodedMac);
+			return new String(encodedMac, 0, ENCODED_MAC_LENGTH, UTF8);
+		}
+
+		private State appendEncodedMac() {
+			ensureCapacity(ENCODED_MAC_LENGTH);
+			System.arraycopy(encodedMac, 0, buffer, length, ENCODED_MAC_LENGTH);
+			length += ENCODED_MAC_LENGTH;
+			return this;
+		}
+
+		private State append(byte[] bytes) {
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, buffer, length, bytes.length);
+			length += bytes.length;
+			return this;
+		}
+
+		private State newLine() {
+			ensureCapacity(1);
+			buffer[length++] = '\n';
+			return this;
+		}
+
+		private State append(String value) {
+			int count = value.length();
+			ensureCapacity(count);
+			for (int i = 0; i < count; i++) {
+				char c = value.charAt(i);
+				if (c >= 0x80) {
+					//Not plain ASCII, let the charset deal with the multi byte sequences
+					byte[] bytes = value.substring(i).getBytes(UTF8);
+					ensureCapacity(bytes.length);
+					System.arraycopy(bytes, 0, buffer, length, bytes.length);
+					length += bytes.length;
+					return this;
+				}
+				buffer[length++] = (byte) c;
+			}
+			return this;
+		}
+
+		private void ensureCapacity(int additional) {
+			if (length + additional > buffer.length) {
+				byte[] grown = new byte[Math.max(buffer.length * 2, length + additional)];
+				System.arraycopy(buffer, 0, grown, 0, length);
+				buffer = grown;
+			}
+		}
+	}
+}
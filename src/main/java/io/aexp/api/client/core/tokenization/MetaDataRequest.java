@@ -49,6 +49,11 @@ public class MetaDataRequest extends ApiClientRequest {
         return String.format(METADATA_TARGET_URI, tokenReferenceId);
     }
 
+    @Override
+    public String getTokenReferenceId() {
+        return tokenReferenceId;
+    }
+
     @Override
     public String getHttpAction() {
         return "GET";
@@ -54,12 +54,21 @@ public class NotificationsRequest extends ApiClientRequest {
 
     @Override
     public String toJson(String kid, String aesKey) {
+        return JsonUtility.getInstance().getString(toMap());
+    }
+
+    @Override
+    protected Object getJsonBody(String kid, String aesKey) {
+        return toMap();
+    }
+
+    private Map<String, Object> toMap() {
         Map<String, Object> map = new HashMap<String, Object>();
 
         map.put("token_ref_id", tokenReferenceId);
         map.put("notification_type", notificationType.getType());
 
-        return JsonUtility.getInstance().getString(map);
+        return map;
     }
 
     @Override
@@ -67,6 +76,11 @@ public class NotificationsRequest extends ApiClientRequest {
         return NOTIFICATIONS_TARGET_URI;
     }
 
+    @Override
+    public String getTokenReferenceId() {
+        return tokenReferenceId;
+    }
+
     @Override
     public String getHttpAction() {
         return "POST";
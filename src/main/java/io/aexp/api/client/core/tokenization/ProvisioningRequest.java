@@ -165,6 +165,15 @@ public class ProvisioningRequest extends ApiClientRequest {
 
     @Override
     public String toJson(String kid, String aesKey) {
+        return JsonUtility.getInstance().getString(toMap(kid, aesKey));
+    }
+
+    @Override
+    protected Object getJsonBody(String kid, String aesKey) {
+        return toMap(kid, aesKey);
+    }
+
+    private Map<String, Object> toMap(String kid, String aesKey) {
         Map<String, Object> map = new HashMap<String, Object>();
 
         map.put("user_data", getUserData());
@@ -172,7 +181,7 @@ public class ProvisioningRequest extends ApiClientRequest {
         map.put("account_data", aesKey == null ? "Need key for encryption" :
                 EncryptionUtility.getInstance().encrypt(getAccountData(), kid, aesKey));
 
-        return JsonUtility.getInstance().getString(map);
+        return map;
     }
 
     private String getAccountData() {
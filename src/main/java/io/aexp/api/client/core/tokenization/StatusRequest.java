@@ -48,6 +48,11 @@ public class StatusRequest extends ApiClientRequest {
         return String.format(STATUS_TARGET_URI, tokenReferenceId);
     }
 
+    @Override
+    public String getTokenReferenceId() {
+        return tokenReferenceId;
+    }
+
     @Override
     public String getHttpAction() {
         return "GET";
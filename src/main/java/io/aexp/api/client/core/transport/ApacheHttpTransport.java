@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import org.apache.http.ContentTooLongException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Transport using Apache HttpClient, either the clients of a {@link ConnectionPool} or clients the application has
+ * already configured.  This is what an ApiClient uses when it is not given a transport, passing it explicitly lets
+ * several transports be compared or an existing client be reused.  The clients stay owned by the caller.
+ * <p>
+ * Responses report when the pooled connection was leased, so the wait for the pool can be told apart from the
+ * exchange itself.  The non-blocking client receives the whole body before completing, so it stops reading once the
+ * body exceeds the maximum size of the request instead of buffering all of it.
+ */
+public class ApacheHttpTransport implements HttpTransport {
+    private final CloseableHttpClient httpClient;
+    private final CloseableHttpAsyncClient asyncHttpClient;
+
+    //The non-blocking client of the pool is only started once a request is sent through it
+    public ApacheHttpTransport(ConnectionPool connectionPool) {
+        if (connectionPool == null) {
+            throw new IllegalArgumentException("Connection pool is required");
+        }
+        this.httpClient = connectionPool.getHttpClient();
+        this.asyncHttpClient = connectionPool.getAsyncHttpClient();
+    }
+
+    //The non-blocking client must have been started
+    public ApacheHttpTransport(CloseableHttpClient httpClient, CloseableHttpAsyncClient asyncHttpClient) {
+        if (httpClient == null || asyncHttpClient == null) {
+            throw new IllegalArgumentException("Blocking and non-blocking clients are required");
+        }
+        this.httpClient = httpClient;
+        this.asyncHttpClient = asyncHttpClient;
+    }
+
+    public static final class Provider implements HttpTransportProvider {
+
+        @Override
+        public String getName() {
+            return "apache";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        //Uses the default connection pool shared with the clients that were not given one
+        @Override
+        public HttpTransport createTransport() {
+            return new ApacheHttpTransport(ConnectionPool.getDefault());
+        }
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        HttpUriRequest httpRequest = toApacheRequest(request);
+        HttpClientContext context = HttpClientContext.create();
+        long start = System.nanoTime();
+        HttpResponse response = httpClient.execute(getTarget(request), httpRequest, context);
+        Long exchangeStart = (Long) context.getAttribute(ConnectionPool.EXCHANGE_START_ATTRIBUTE);
+        return toTransportResponse(response, (exchangeStart != null) ? exchangeStart - start : -1);
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        final CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+        final Future<HttpResponse> exchange;
+        try {
+            HttpAsyncResponseConsumer<HttpResponse> consumer = (request.getMaxResponseBodySize() >= 0) ?
+                    new BoundedResponseConsumer(request.getMaxResponseBodySize()) :
+                    HttpAsyncMethods.createConsumer();
+            exchange = asyncHttpClient.execute(HttpAsyncMethods.create(getTarget(request), toApacheRequest(request)),
+                    consumer, new FutureCallback<HttpResponse>() {
+                        @Override
+                        public void completed(HttpResponse response) {
+                            try {
+                                TransportResponse converted = toTransportResponse(response, -1);
+                                if (!result.complete(converted)) {
+                                    closeQuietly(converted);
+                                }
+                            } catch (IOException e) {
+                                result.completeExceptionally(e);
+                            }
+                        }
+
+                        @Override
+                        public void failed(Exception e) {
+                            result.completeExceptionally(e);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            result.cancel(false);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled() && exchange != null) {
+                exchange.cancel(true);
+            }
+        });
+        request.setAbortAction(() -> result.cancel(true));
+        return result;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static HttpHost getTarget(TransportRequest request) {
+        return URIUtils.extractHost(request.getUri());
+    }
+
+    //The entity wraps the body of the request, it is not copied
+    private static HttpUriRequest toApacheRequest(TransportRequest request) {
+        RequestBuilder builder = RequestBuilder.create(request.getMethod()).setUri(request.getUri());
+        for (Map.Entry<String, String> header : request.getHeaders()) {
+            builder.addHeader(header.getKey(), header.getValue());
+        }
+        if (request.getBody() != null) {
+            ByteArrayEntity entity = new ByteArrayEntity(request.getBody());
+            entity.setContentType(request.getContentType());
+            builder.setEntity(entity);
+        }
+        builder.setConfig(RequestConfig.custom()
+                .setConnectTimeout(request.getConnectTimeout())
+                .setConnectionRequestTimeout(request.getConnectionRequestTimeout())
+                .setSocketTimeout(request.getSocketTimeout())
+                .build());
+        HttpUriRequest httpRequest = builder.build();
+        if (httpRequest instanceof HttpRequestBase) {
+            request.setAbortAction(((HttpRequestBase) httpRequest)::abort);
+        }
+        return httpRequest;
+    }
+
+    private static TransportResponse toTransportResponse(HttpResponse response, long connectionLeaseNanos)
+            throws IOException {
+        if (response == null) {
+            return null;
+        }
+        List<Map.Entry<String, String>> headers = new ArrayList<Map.Entry<String, String>>();
+        Header[] allHeaders = response.getAllHeaders();
+        if (allHeaders != null) {
+            for (Header header : allHeaders) {
+                headers.add(new AbstractMap.SimpleImmutableEntry<String, String>(header.getName(),
+                        header.getValue()));
+            }
+        }
+        Closeable resource = (response instanceof Closeable) ? (Closeable) response : null;
+        HttpEntity entity = response.getEntity();
+        try {
+            return new TransportResponse(response.getStatusLine().getStatusCode(), headers,
+                    (entity != null) ? entity.getContent() : null, resource, connectionLeaseNanos);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(resource);
+            throw e;
+        }
+    }
+
+    //Buffers the body of the response like the default consumer, failing as soon as it grows beyond the maximum
+    //size rather than after it has been received
+    private static final class BoundedResponseConsumer extends BasicAsyncResponseConsumer {
+        private final long maxBodySize;
+        private long received;
+
+        private BoundedResponseConsumer(long maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        //Checked before the buffer is sized from the Content-Length header
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+            if (entity.getContentLength() > maxBodySize) {
+                throw new ContentTooLongException("Response body of " + entity.getContentLength() +
+                        " bytes exceeds the limit of " + maxBodySize + " bytes");
+            }
+            super.onEntityEnclosed(entity, contentType);
+        }
+
+        @Override
+        protected void onContentReceived(final ContentDecoder decoder, IOControl ioControl) throws IOException {
+            super.onContentReceived(new ContentDecoder() {
+                @Override
+                public int read(ByteBuffer dst) throws IOException {
+                    int read = decoder.read(dst);
+                    if (read > 0) {
+                        received += read;
+                        if (received > maxBodySize) {
+                            throw new ContentTooLongException("Response body exceeds the limit of " + maxBodySize +
+                                    " bytes");
+                        }
+                    }
+                    return read;
+                }
+
+                @Override
+                public boolean isCompleted() {
+                    return decoder.isCompleted();
+                }
+            }, ioControl);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //the exchange was abandoned already
+        }
+    }
+}
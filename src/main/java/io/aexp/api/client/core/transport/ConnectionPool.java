@@ -0,0 +1,523 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.transport;
+
+import io.aexp.api.client.core.exceptions.ExecutorException;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.ssl.SSLIOSession;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the pooled HTTP connections used by {@link io.aexp.api.client.core.ApiClient}.
+ * <p>
+ * A pool can be owned by a single client or shared by several clients by passing the same instance to
+ * each DevPortalExecutorBuilder.  Clients that are not given a pool share {@link #getDefault()}.
+ * Expired and idle connections are closed by a background evictor thread until the pool is closed.
+ * <p>
+ * Both clients share one SSLContext, so a session negotiated by either can be resumed by the other.  TLS 1.3 is
+ * offered when the runtime supports it, and {@link #warmUp} opens connections ahead of the first requests.
+ */
+public class ConnectionPool implements Closeable {
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 100;
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+    public static final long DEFAULT_TIME_TO_LIVE = 300000;
+    public static final long DEFAULT_MAX_IDLE_TIME = 30000;
+    public static final long DEFAULT_EVICTION_INTERVAL = 5000;
+    public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 1024;
+    //Seconds a TLS session can be resumed for
+    public static final int DEFAULT_TLS_SESSION_TIMEOUT = 86400;
+    private static final String[] DEFAULT_TLS_PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+    //Attribute of a non-blocking session holding the System.nanoTime() and wall clock its handshake started at
+    private static final String HANDSHAKE_START_ATTRIBUTE = "io.aexp.api.client.handshake-start";
+    //Context attribute holding the System.nanoTime() at which a request started to be written to its connection
+    public static final String EXCHANGE_START_ATTRIBUTE = "io.aexp.api.client.exchange-start";
+
+    private static volatile ConnectionPool defaultPool;
+
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final int validateAfterInactivity;
+    private final long timeToLive;
+    private final long maxIdleTime;
+    private final SSLContext sslContext;
+    private final String[] tlsProtocols;
+    private final List<TlsHandshakeListener> handshakeListeners = new CopyOnWriteArrayList<TlsHandshakeListener>();
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final CloseableHttpAsyncClient asyncHttpClient = new DeferredHttpAsyncClient();
+    private final ScheduledExecutorService evictor;
+
+    private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+    private volatile CloseableHttpAsyncClient startedAsyncHttpClient;
+    private volatile boolean closed;
+
+    public ConnectionPool(int maxTotal, int maxPerRoute, int validateAfterInactivity, long timeToLive,
+                          long maxIdleTime, long evictionInterval) {
+        this(maxTotal, maxPerRoute, validateAfterInactivity, timeToLive, maxIdleTime, evictionInterval,
+                DEFAULT_TLS_PROTOCOLS, DEFAULT_TLS_SESSION_CACHE_SIZE, DEFAULT_TLS_SESSION_TIMEOUT);
+    }
+
+    private ConnectionPool(int maxTotal, int maxPerRoute, int validateAfterInactivity, long timeToLive,
+                           long maxIdleTime, long evictionInterval, String[] tlsProtocols, int tlsSessionCacheSize,
+                           int tlsSessionTimeout) {
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+        this.validateAfterInactivity = validateAfterInactivity;
+        this.timeToLive = timeToLive;
+        this.maxIdleTime = maxIdleTime;
+        this.sslContext = createSslContext();
+        this.tlsProtocols = getSupportedProtocols(sslContext, tlsProtocols);
+        sslContext.getClientSessionContext().setSessionCacheSize(tlsSessionCacheSize);
+        sslContext.getClientSessionContext().setSessionTimeout(tlsSessionTimeout);
+
+        SSLConnectionSocketFactory sslConnectionFactory = new SSLConnectionSocketFactory(sslContext,
+                this.tlsProtocols, null, SSLConnectionSocketFactory.getDefaultHostnameVerifier()) {
+
+            @Override
+            public Socket createLayeredSocket(
+                    final Socket socket,
+                    final String target,
+                    final int port,
+                    final HttpContext context) throws IOException {
+                context.setAttribute("__enable_sni__", true);
+                long start = System.nanoTime();
+                long startMillis = System.currentTimeMillis();
+                Socket layered = super.createLayeredSocket(socket, target, port, context);
+                if (layered instanceof SSLSocket) {
+                    handshakeCompleted(target, start, startMillis, ((SSLSocket) layered).getSession());
+                }
+                return layered;
+            }
+        };
+
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("https", sslConnectionFactory)
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(registry, null, null, null,
+                timeToLive, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setRequestExecutor(new HttpRequestExecutor() {
+                    @Override
+                    public HttpResponse execute(HttpRequest request, HttpClientConnection connection,
+                                                HttpContext context) throws IOException, HttpException {
+                        //Marks the end of the connection lease for the metrics of the client
+                        context.setAttribute(EXCHANGE_START_ATTRIBUTE, System.nanoTime());
+                        return super.execute(request, connection, context);
+                    }
+                })
+                .build();
+
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "amex-api-connection-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictConnections();
+            }
+        }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public static class ConnectionPoolBuilder {
+        private int maxTotal = DEFAULT_MAX_TOTAL;
+        private int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+        private int validateAfterInactivity = DEFAULT_VALIDATE_AFTER_INACTIVITY;
+        private long timeToLive = DEFAULT_TIME_TO_LIVE;
+        private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+        private long evictionInterval = DEFAULT_EVICTION_INTERVAL;
+        private String[] tlsProtocols = DEFAULT_TLS_PROTOCOLS;
+        private int tlsSessionCacheSize = DEFAULT_TLS_SESSION_CACHE_SIZE;
+        private int tlsSessionTimeout = DEFAULT_TLS_SESSION_TIMEOUT;
+
+        public ConnectionPoolBuilder setMaxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+            return this;
+        }
+
+        public ConnectionPoolBuilder setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+            return this;
+        }
+
+        //Milliseconds a connection may sit idle in the pool before it is re-validated on lease
+        public ConnectionPoolBuilder setValidateAfterInactivity(int validateAfterInactivity) {
+            this.validateAfterInactivity = validateAfterInactivity;
+            return this;
+        }
+
+        //Maximum lifetime of a connection in milliseconds, zero or less keeps connections indefinitely
+        public ConnectionPoolBuilder setTimeToLive(long timeToLive) {
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        //Milliseconds after which the evictor closes an unused connection
+        public ConnectionPoolBuilder setMaxIdleTime(long maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+            return this;
+        }
+
+        //Milliseconds between two runs of the evictor thread
+        public ConnectionPoolBuilder setEvictionInterval(long evictionInterval) {
+            this.evictionInterval = evictionInterval;
+            return this;
+        }
+
+        //Protocols offered to servers, those the runtime does not support are left out.  Defaults to TLS 1.3 and 1.2
+        public ConnectionPoolBuilder setTlsProtocols(String... tlsProtocols) {
+            this.tlsProtocols = tlsProtocols;
+            return this;
+        }
+
+        //Number of TLS sessions kept for resumption, zero means no limit
+        public ConnectionPoolBuilder setTlsSessionCacheSize(int tlsSessionCacheSize) {
+            this.tlsSessionCacheSize = tlsSessionCacheSize;
+            return this;
+        }
+
+        //Seconds a cached TLS session can be resumed for, zero means no limit
+        public ConnectionPoolBuilder setTlsSessionTimeout(int tlsSessionTimeout) {
+            this.tlsSessionTimeout = tlsSessionTimeout;
+            return this;
+        }
+
+        public ConnectionPool createConnectionPool() {
+            if (maxTotal <= 0 || maxPerRoute <= 0 || evictionInterval <= 0) {
+                throw new IllegalArgumentException("Pool sizes and eviction interval must be positive");
+            }
+            if (tlsProtocols == null || tlsProtocols.length == 0 || tlsSessionCacheSize < 0 || tlsSessionTimeout < 0) {
+                throw new IllegalArgumentException("TLS protocols are required and TLS session settings must not " +
+                        "be negative");
+            }
+            return new ConnectionPool(maxTotal, maxPerRoute, validateAfterInactivity, timeToLive, maxIdleTime,
+                    evictionInterval, tlsProtocols.clone(), tlsSessionCacheSize, tlsSessionTimeout);
+        }
+    }
+
+    /**
+     * Returns the pool shared by every ApiClient that was not configured with its own pool.
+     */
+    public static ConnectionPool getDefault() {
+        if (defaultPool == null) {
+            synchronized (ConnectionPool.class) {
+                if (defaultPool == null) {
+                    defaultPool = new ConnectionPoolBuilder().createConnectionPool();
+                }
+            }
+        }
+        return defaultPool;
+    }
+
+    public CloseableHttpClient getHttpClient() {
+        checkOpen();
+        return httpClient;
+    }
+
+    /**
+     * Returns the non-blocking client for this pool.  Its I/O reactor threads are only started by the first request
+     * sent through it, so clients can hold on to it from the start without paying for threads they never use.
+     */
+    public CloseableHttpAsyncClient getAsyncHttpClient() {
+        checkOpen();
+        return asyncHttpClient;
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public int getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public String[] getTlsProtocols() {
+        return tlsProtocols.clone();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void addHandshakeListener(TlsHandshakeListener listener) {
+        handshakeListeners.add(listener);
+    }
+
+    /**
+     * Opens connections to the target ahead of the first requests, so they do not pay for the TCP and TLS
+     * handshakes.  Connections that are already pooled count towards the number and the number is capped at the
+     * maximum per route.  Opened connections stay pooled until they are idle for longer than the max idle time.
+     *
+     * @return the number of connections that were opened
+     * @throws ExecutorException when a connection could not be opened in time
+     */
+    public int warmUp(HttpHost target, int connections, int connectTimeout) {
+        checkOpen();
+        HttpRoute route = new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+        List<HttpClientConnection> leased = new ArrayList<HttpClientConnection>();
+        int opened = 0;
+        try {
+            for (int i = 0; i < Math.min(connections, maxPerRoute); i++) {
+                HttpClientConnection connection = connectionManager.requestConnection(route, null)
+                        .get(connectTimeout, TimeUnit.MILLISECONDS);
+                leased.add(connection);
+                if (!connection.isOpen()) {
+                    HttpClientContext context = HttpClientContext.create();
+                    connectionManager.connect(connection, route, connectTimeout, context);
+                    connectionManager.routeComplete(connection, route, context);
+                    opened++;
+                }
+            }
+            return opened;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ExecutorException("Exception warming up connections to " + target + ": " + e.getMessage(), e);
+        } finally {
+            for (HttpClientConnection connection : leased) {
+                connectionManager.releaseConnection(connection, null, maxIdleTime, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    //Reports a completed handshake, the session predates the handshake when it was resumed
+    void handshakeCompleted(String host, long start, long startMillis, SSLSession session) {
+        if (handshakeListeners.isEmpty()) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        boolean resumed = session.getCreationTime() < startMillis;
+        for (TlsHandshakeListener listener : handshakeListeners) {
+            listener.handshakeCompleted(host, nanos, resumed);
+        }
+    }
+
+    //Closes expired connections and those idle for longer than the configured idle time
+    void evictConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+
+        PoolingNHttpClientConnectionManager asyncManager = asyncConnectionManager;
+        if (asyncManager != null) {
+            asyncManager.closeExpiredConnections();
+            asyncManager.closeIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the evictor thread and closes every pooled connection.  Clients using this pool can no longer
+     * send requests afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        evictor.shutdownNow();
+        connectionManager.shutdown();
+        CloseableHttpAsyncClient started = startedAsyncHttpClient;
+        if (started != null) {
+            started.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new ExecutorException("Connection pool has been closed");
+        }
+    }
+
+    private CloseableHttpAsyncClient getStartedAsyncClient() {
+        checkOpen();
+        CloseableHttpAsyncClient started = startedAsyncHttpClient;
+        if (started == null) {
+            synchronized (this) {
+                started = startedAsyncHttpClient;
+                if (started == null) {
+                    started = createAsyncClient();
+                    startedAsyncHttpClient = started;
+                }
+            }
+        }
+        return started;
+    }
+
+    private CloseableHttpAsyncClient createAsyncClient() {
+        try {
+            SSLIOSessionStrategy sslStrategy = new SSLIOSessionStrategy(sslContext, tlsProtocols, null,
+                    SSLIOSessionStrategy.getDefaultHostnameVerifier()) {
+
+                @Override
+                public SSLIOSession upgrade(HttpHost host, IOSession session) throws IOException {
+                    session.setAttribute(HANDSHAKE_START_ATTRIBUTE,
+                            new long[]{System.nanoTime(), System.currentTimeMillis()});
+                    return super.upgrade(host, session);
+                }
+
+                @Override
+                protected void verifySession(HttpHost host, IOSession session, SSLSession sslSession)
+                        throws SSLException {
+                    super.verifySession(host, session, sslSession);
+                    long[] start = (long[]) session.removeAttribute(HANDSHAKE_START_ATTRIBUTE);
+                    if (start != null) {
+                        handshakeCompleted(host.getHostName(), start[0], start[1], sslSession);
+                    }
+                }
+            };
+            Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                    .register("https", sslStrategy)
+                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                    .build();
+            PoolingNHttpClientConnectionManager manager = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(), null, registry, null, null,
+                    timeToLive, TimeUnit.MILLISECONDS);
+            manager.setMaxTotal(maxTotal);
+            manager.setDefaultMaxPerRoute(maxPerRoute);
+
+            CloseableHttpAsyncClient client = HttpAsyncClients.custom().setConnectionManager(manager).build();
+            client.start();
+            asyncConnectionManager = manager;
+            return client;
+        } catch (Exception e) {
+            throw new ExecutorException("Exception creating non-blocking http client: " + e.getMessage(), e);
+        }
+    }
+
+    //Creates and starts the non-blocking client of the pool when the first request is sent through it
+    private class DeferredHttpAsyncClient extends CloseableHttpAsyncClient {
+
+        @Override
+        public boolean isRunning() {
+            CloseableHttpAsyncClient started = startedAsyncHttpClient;
+            return started != null && started.isRunning();
+        }
+
+        @Override
+        public void start() {
+            getStartedAsyncClient();
+        }
+
+        @Override
+        public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
+                                     HttpAsyncResponseConsumer<T> responseConsumer, HttpContext context,
+                                     FutureCallback<T> callback) {
+            return getStartedAsyncClient().execute(requestProducer, responseConsumer, context, callback);
+        }
+
+        //The pool owns the client, it is closed with the pool
+        @Override
+        public void close() {
+        }
+    }
+
+    private static SSLContext createSslContext() {
+        try {
+            return SSLContexts.custom().useProtocol("TLS").build();
+        } catch (Exception e) {
+            return SSLContexts.createDefault();
+        }
+    }
+
+    private static String[] getSupportedProtocols(SSLContext sslContext, String[] protocols) {
+        List<String> supported = Arrays.asList(sslContext.getSupportedSSLParameters().getProtocols());
+        List<String> enabled = new ArrayList<String>();
+        for (String protocol : protocols) {
+            if (supported.contains(protocol)) {
+                enabled.add(protocol);
+            }
+        }
+        if (enabled.isEmpty()) {
+            throw new ExecutorException("None of the TLS protocols " + Arrays.toString(protocols) +
+                    " is supported by the runtime");
+        }
+        return enabled.toArray(new String[enabled.size()]);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the requests of an {@link io.aexp.api.client.core.ApiClient}.  Requests and responses are exchanged as
+ * {@link TransportRequest} and {@link TransportResponse}, so an implementation only translates them to the HTTP
+ * library it uses.  {@link ApacheHttpTransport} is used when a client is not given a transport.
+ * <p>
+ * Implementations register an abort action on the request while it is in progress and must be thread safe.
+ */
+public interface HttpTransport extends Closeable {
+
+    /**
+     * Sends the request and waits for the status line and headers of the response.  The caller closes the response
+     * once its body has been read.
+     */
+    TransportResponse execute(TransportRequest request) throws IOException;
+
+    /**
+     * Sends the request without blocking.  The future completes with the response or the failure, and cancelling
+     * it aborts the exchange.
+     */
+    CompletableFuture<TransportResponse> executeAsync(TransportRequest request);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import io.aexp.api.client.core.exceptions.ExecutorException;
+
+import java.util.ServiceLoader;
+
+/**
+ * Creates {@link HttpTransport}s by name.  Providers are found with the ServiceLoader, the library registers
+ * apache, okhttp and jdk, and further ones are listed in META-INF/services/
+ * io.aexp.api.client.core.transport.HttpTransportProvider of their jar.
+ */
+public interface HttpTransportProvider {
+
+    String getName();
+
+    //False when a library or the Java version the transport needs is missing at runtime
+    boolean isAvailable();
+
+    //The caller owns the transport and closes it once no client uses it anymore
+    HttpTransport createTransport();
+
+    /**
+     * Creates a transport with the first available provider of that name.
+     *
+     * @throws ExecutorException when no available provider has the name
+     */
+    static HttpTransport create(String name) {
+        for (HttpTransportProvider provider : ServiceLoader.load(HttpTransportProvider.class)) {
+            if (provider.getName().equals(name) && provider.isAvailable()) {
+                return provider.createTransport();
+            }
+        }
+        throw new ExecutorException("No HTTP transport named " + name + " is available");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport using the HttpClient of the JDK, which multiplexes the requests to a host as HTTP/2 streams over a
+ * single TLS connection instead of holding a pooled connection per request in progress.
+ * <p>
+ * This is the implementation for older runtimes, where the JDK has no HttpClient.  The jar is a multi-release jar
+ * and Java 11 and later load the implementation from META-INF/versions/11 instead.
+ */
+public final class JdkHttpTransport implements HttpTransport {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 15000;
+
+    private JdkHttpTransport() {
+    }
+
+    public static boolean isSupported() {
+        return false;
+    }
+
+    public static class JdkHttpTransportBuilder {
+        private boolean http2 = true;
+        private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        private SSLContext sslContext;
+        private Executor executor;
+
+        //Negotiates HTTP/2 with the server, falling back to HTTP/1.1 when the server does not offer it
+        public JdkHttpTransportBuilder setHttp2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        //Milliseconds to wait for a new connection to be established
+        public JdkHttpTransportBuilder setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        //Defaults to the SSLContext of the JDK, which offers TLS 1.3
+        public JdkHttpTransportBuilder setSslContext(SSLContext sslContext) {
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        //Executor the client completes responses on, defaults to a pool owned by the client
+        public JdkHttpTransportBuilder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @throws UnsupportedOperationException when the JDK has no HttpClient
+         */
+        public JdkHttpTransport createJdkHttpTransport() {
+            throw unsupported();
+        }
+    }
+
+    public static final class Provider implements HttpTransportProvider {
+
+        @Override
+        public String getName() {
+            return "jdk";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return isSupported();
+        }
+
+        //Negotiates HTTP/2 with the default settings of the builder
+        @Override
+        public HttpTransport createTransport() {
+            return new JdkHttpTransportBuilder().createJdkHttpTransport();
+        }
+    }
+
+    //No instance is ever created on this runtime, the methods below only complete the HttpTransport interface
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        throw unsupported();
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        throw unsupported();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("The JDK HttpClient requires Java 11 or later, running on Java " +
+                System.getProperty("java.specification.version"));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport using OkHttp, which negotiates HTTP/2 when the runtime supports ALPN.  OkHttp is an optional dependency
+ * of the library and must be on the classpath to use this transport.
+ * <p>
+ * The timeouts of a request are applied through a client derived from the given one, sharing its connection pool
+ * and dispatcher.  The last derived client is kept, so requests with the usual timeouts do not derive a new one.
+ */
+public class OkHttpTransport implements HttpTransport {
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final OkHttpClient client;
+    private final boolean owned;
+    private volatile OkHttpClient configured;
+
+    //The client stays owned by the caller
+    public OkHttpTransport(OkHttpClient client) {
+        this(client, false);
+    }
+
+    private OkHttpTransport(OkHttpClient client, boolean owned) {
+        if (client == null) {
+            throw new IllegalArgumentException("OkHttp client is required");
+        }
+        this.client = client;
+        this.owned = owned;
+        this.configured = client;
+    }
+
+    public static final class Provider implements HttpTransportProvider {
+
+        @Override
+        public String getName() {
+            return "okhttp";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            try {
+                Class.forName("okhttp3.OkHttpClient", false, Provider.class.getClassLoader());
+                return true;
+            } catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
+
+        //Creates a client of its own, which closing the transport shuts down
+        @Override
+        public HttpTransport createTransport() {
+            return new OkHttpTransport(new OkHttpClient(), true);
+        }
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        return toTransportResponse(newCall(request).execute());
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        final CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+        final Call call;
+        try {
+            call = newCall(request);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (!result.complete(toTransportResponse(response))) {
+                    response.close();
+                }
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (owned) {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    private Call newCall(TransportRequest request) {
+        Request.Builder builder = new Request.Builder().url(request.getUri().toString());
+        for (Map.Entry<String, String> header : request.getHeaders()) {
+            if (!TransportRequest.isManagedHeader(header.getKey())) {
+                builder.addHeader(header.getKey(), header.getValue());
+            }
+        }
+        byte[] body = request.getBody();
+        String method = request.getMethod();
+        if (body == null && ("POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method))) {
+            //OkHttp requires a body for POST, PUT and PATCH
+            body = EMPTY_BODY;
+        }
+        //The request body wraps the array, it is not copied
+        String contentType = request.getContentType();
+        builder.method(method, (body != null) ?
+                RequestBody.create((contentType != null) ? MediaType.parse(contentType) : null, body) : null);
+
+        final Call call = getClient(request).newCall(builder.build());
+        request.setAbortAction(call::cancel);
+        return call;
+    }
+
+    //Returns a client with the timeouts of the request, negative timeouts keep those of the client
+    private OkHttpClient getClient(TransportRequest request) {
+        int connectTimeout = (request.getConnectTimeout() >= 0) ? request.getConnectTimeout() :
+                client.connectTimeoutMillis();
+        int socketTimeout = (request.getSocketTimeout() >= 0) ? request.getSocketTimeout() :
+                client.readTimeoutMillis();
+        OkHttpClient current = configured;
+        if (current.connectTimeoutMillis() == connectTimeout && current.readTimeoutMillis() == socketTimeout &&
+                current.writeTimeoutMillis() == socketTimeout) {
+            return current;
+        }
+        OkHttpClient derived = client.newBuilder()
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(socketTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(socketTimeout, TimeUnit.MILLISECONDS)
+                .build();
+        configured = derived;
+        return derived;
+    }
+
+    private static TransportResponse toTransportResponse(Response response) {
+        Headers headers = response.headers();
+        List<Map.Entry<String, String>> converted = new ArrayList<Map.Entry<String, String>>(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            converted.add(new AbstractMap.SimpleImmutableEntry<String, String>(headers.name(i), headers.value(i)));
+        }
+        ResponseBody body = response.body();
+        return new TransportResponse(response.code(), converted, (body != null) ? body.byteStream() : null,
+                response, -1);
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+/**
+ * Notified of the TLS handshakes of the connections a {@link ConnectionPool} opens, for example to publish how
+ * long they take and how often a cached session is resumed.
+ */
+public interface TlsHandshakeListener {
+
+    //Called on the thread that completed the handshake, resumed when the session was taken from the session cache
+    void handshakeCompleted(String host, long nanos, boolean resumed);
+}
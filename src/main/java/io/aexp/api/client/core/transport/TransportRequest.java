@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Request sent through an {@link HttpTransport}, independent of the HTTP library the transport uses.
+ * <p>
+ * The body is the array the request was built with, it is not copied and must not be modified once the request
+ * has been created.  Timeouts are in milliseconds, zero means no timeout and a negative value keeps the default of
+ * the transport.  A transport registers an abort action while it sends the request, so {@link #abort()} stops the
+ * exchange from any thread.
+ */
+public final class TransportRequest {
+    private static final Runnable ABORTED = () -> {
+    };
+
+    private final String method;
+    private final URI uri;
+    private final List<Map.Entry<String, String>> headers;
+    private final byte[] body;
+    private final String contentType;
+    private final int connectTimeout;
+    private final int connectionRequestTimeout;
+    private final int socketTimeout;
+    private final long maxResponseBodySize;
+    private final AtomicReference<Runnable> abortAction = new AtomicReference<Runnable>();
+
+    private TransportRequest(TransportRequestBuilder builder) {
+        this.method = builder.method;
+        this.uri = builder.uri;
+        this.headers = Collections.unmodifiableList(new ArrayList<Map.Entry<String, String>>(builder.headers));
+        this.body = builder.body;
+        this.contentType = builder.contentType;
+        this.connectTimeout = builder.connectTimeout;
+        this.connectionRequestTimeout = builder.connectionRequestTimeout;
+        this.socketTimeout = builder.socketTimeout;
+        this.maxResponseBodySize = builder.maxResponseBodySize;
+    }
+
+    public static class TransportRequestBuilder {
+        private String method = "GET";
+        private URI uri;
+        private final List<Map.Entry<String, String>> headers = new ArrayList<Map.Entry<String, String>>();
+        private byte[] body;
+        private String contentType;
+        private int connectTimeout = -1;
+        private int connectionRequestTimeout = -1;
+        private int socketTimeout = -1;
+        private long maxResponseBodySize = -1;
+
+        public TransportRequestBuilder setMethod(String method) {
+            this.method = method;
+            return this;
+        }
+
+        //Scheme, host and port as well as the path, the transport does not resolve relative URIs
+        public TransportRequestBuilder setUri(URI uri) {
+            this.uri = uri;
+            return this;
+        }
+
+        //Headers are sent in the order they are added, a name may be added more than once
+        public TransportRequestBuilder addHeader(String name, String value) {
+            this.headers.add(new AbstractMap.SimpleImmutableEntry<String, String>(name, value));
+            return this;
+        }
+
+        public TransportRequestBuilder setBody(byte[] body, String contentType) {
+            this.body = body;
+            this.contentType = contentType;
+            return this;
+        }
+
+        public TransportRequestBuilder setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        //Time to wait for a pooled connection, transports without a pool ignore it
+        public TransportRequestBuilder setConnectionRequestTimeout(int connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+            return this;
+        }
+
+        //Longest wait for data from the server, transports without a timeout per read apply it to the wait for the
+        //response headers
+        public TransportRequestBuilder setSocketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+            return this;
+        }
+
+        //Largest response body the caller accepts, negative for no limit.  Transports that receive the whole body
+        //before handing it over fail the exchange once more arrives, the others leave the check to the caller
+        public TransportRequestBuilder setMaxResponseBodySize(long maxResponseBodySize) {
+            this.maxResponseBodySize = maxResponseBodySize;
+            return this;
+        }
+
+        public TransportRequest createTransportRequest() {
+            if (method == null || method.isEmpty()) {
+                throw new IllegalArgumentException("Method is required");
+            }
+            if (uri == null || !uri.isAbsolute()) {
+                throw new IllegalArgumentException("Absolute URI is required");
+            }
+            return new TransportRequest(this);
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public List<Map.Entry<String, String>> getHeaders() {
+        return headers;
+    }
+
+    //Returns the value of the first header with the name, null when there is none
+    public String getFirstHeader(String name) {
+        for (Map.Entry<String, String> header : headers) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    //Returns null when the request has no body
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public long getMaxResponseBodySize() {
+        return maxResponseBodySize;
+    }
+
+    //Called by the transport once the exchange has started, runs the action straight away when the request has
+    //already been aborted
+    public void setAbortAction(Runnable action) {
+        while (true) {
+            Runnable current = abortAction.get();
+            if (current == ABORTED) {
+                action.run();
+                return;
+            }
+            if (abortAction.compareAndSet(current, action)) {
+                return;
+            }
+        }
+    }
+
+    //Stops the exchange in progress, or the one about to start
+    public void abort() {
+        Runnable action = abortAction.getAndSet(ABORTED);
+        if (action != null && action != ABORTED) {
+            action.run();
+        }
+    }
+
+    public boolean isAborted() {
+        return abortAction.get() == ABORTED;
+    }
+
+    //Headers the transport manages itself and does not let callers set
+    static boolean isManagedHeader(String name) {
+        return "Connection".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name) ||
+                "Host".equalsIgnoreCase(name) || "Expect".equalsIgnoreCase(name) ||
+                "Upgrade".equalsIgnoreCase(name) || "Transfer-Encoding".equalsIgnoreCase(name) ||
+                "TE".equalsIgnoreCase(name) || "Keep-Alive".equalsIgnoreCase(name);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response received by an {@link HttpTransport}, independent of the HTTP library the transport uses.  The body is
+ * read from the connection as it is consumed, closing the response releases the connection or HTTP/2 stream it may
+ * still be holding.
+ */
+public final class TransportResponse implements Closeable {
+    private final int statusCode;
+    private final List<Map.Entry<String, String>> headers;
+    private final InputStream body;
+    private final Closeable resource;
+    private final long connectionLeaseNanos;
+
+    public TransportResponse(int statusCode, List<Map.Entry<String, String>> headers, InputStream body) {
+        this(statusCode, headers, body, null, -1);
+    }
+
+    /**
+     * @param resource             closed with the response instead of the body, for example the response of the
+     *                             library
+     * @param connectionLeaseNanos time spent waiting for a pooled connection before the request was written,
+     *                             negative when the transport does not report it
+     */
+    public TransportResponse(int statusCode, List<Map.Entry<String, String>> headers, InputStream body,
+                             Closeable resource, long connectionLeaseNanos) {
+        this.statusCode = statusCode;
+        this.headers = (headers != null) ? headers : Collections.<Map.Entry<String, String>>emptyList();
+        this.body = (body != null) ? body : new ByteArrayInputStream(new byte[0]);
+        this.resource = (resource != null) ? resource : this.body;
+        this.connectionLeaseNanos = connectionLeaseNanos;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public List<Map.Entry<String, String>> getHeaders() {
+        return headers;
+    }
+
+    //Returns the value of the first header with the name, null when there is none
+    public String getFirstHeader(String name) {
+        for (Map.Entry<String, String> header : headers) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    //Returns the length the Content-Length header announces, -1 when it is missing or not a number
+    public long getContentLength() {
+        String contentLength = getFirstHeader("Content-Length");
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    public long getConnectionLeaseNanos() {
+        return connectionLeaseNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        resource.close();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails with an IOException once more than the allowed number of bytes have been read from the wrapped stream.
+ */
+public class BoundedInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+    private long mark;
+
+    public BoundedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+        if (result != -1) {
+            count(1);
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        //Read at most one byte past the limit so an oversized body is detected without buffering it
+        int result = super.read(b, off, (int) Math.min(len, limit - count + 1));
+        if (result > 0) {
+            count(result);
+        }
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = super.skip(Math.min(n, limit - count + 1));
+        count(result);
+        return result;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        super.mark(readLimit);
+        mark = count;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        count = mark;
+    }
+
+    private void count(long read) throws IOException {
+        count += read;
+        if (count > limit) {
+            throw new IOException("Response body exceeds the limit of " + limit + " bytes");
+        }
+    }
+}
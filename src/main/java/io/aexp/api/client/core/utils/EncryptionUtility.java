@@ -34,13 +34,45 @@ import io.aexp.api.client.core.exceptions.CryptoException;
 import org.bouncycastle.util.encoders.Base64;
 
 import javax.crypto.spec.SecretKeySpec;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Encrypts, signs and decrypts payloads as JOSE objects.
+ * <p>
+ * Parsing keys and binding them to the JCA provider is far more expensive than the cryptography itself, so the
+ * ready signers, encrypters and decrypters are cached by algorithm, key id and a digest of the key.  A rotated
+ * key is picked up automatically because it yields a new cache entry; {@link #invalidate(String)} and
+ * {@link #invalidateAll()} drop entries for keys that must no longer be used.
+ */
 public class EncryptionUtility {
     private static final EncryptionUtility ENCRYPTION_UTILITY = new EncryptionUtility();
+    private static final int MAX_CACHED_KEYS = 64;
+    private static final int FINGERPRINT_SLOTS = 64;
+    //The JSON around the parts of a signed payload, see sign
+    private static final byte[] JWS_PROTECTED = "{\"protected\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JWS_PAYLOAD = "\", \"payload\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JWS_SIGNATURE = "\", \"signature\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JWS_END = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+    private final ConcurrentMap<CacheKey, CryptoEntry<JWSSigner, JWSHeader>> signers =
+            new ConcurrentHashMap<CacheKey, CryptoEntry<JWSSigner, JWSHeader>>();
+    private final ConcurrentMap<CacheKey, CryptoEntry<JWEEncrypter, JWEHeader>> encrypters =
+            new ConcurrentHashMap<CacheKey, CryptoEntry<JWEEncrypter, JWEHeader>>();
+    private final ConcurrentMap<CacheKey, JWEDecrypter> decrypters = new ConcurrentHashMap<CacheKey, JWEDecrypter>();
+    //Digests of the keys in use by the identity of their string, see fingerprint
+    private final AtomicReferenceArray<Fingerprint> fingerprints =
+            new AtomicReferenceArray<Fingerprint>(FINGERPRINT_SLOTS);
 
     private EncryptionUtility() {
     }
@@ -52,20 +84,10 @@ public class EncryptionUtility {
     public String encrypt(String data, String keyId, String aesKey) {
 
         try {
-            byte[] keyBytes = Base64.decode(aesKey);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, 0, keyBytes.length, "AES");
-
-            JWEAlgorithm jweAlgorithm = JWEAlgorithm.A256KW;
-            EncryptionMethod encryptionMethod = EncryptionMethod.A128GCM;
-            JWEHeader.Builder headerBuilder = new JWEHeader.Builder(jweAlgorithm, encryptionMethod);
-
-            headerBuilder.keyID(keyId);
+            CryptoEntry<JWEEncrypter, JWEHeader> entry = getEncrypter(keyId, aesKey);
 
-            JWEHeader header = headerBuilder.build();
-            JWEEncrypter encrypter = new AESEncrypter(secretKey);
-            encrypter.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
-            JWEObject jweObject = new JWEObject(header, new Payload(data));
-            jweObject.encrypt(encrypter);
+            JWEObject jweObject = new JWEObject(entry.header, new Payload(data));
+            jweObject.encrypt(entry.crypto);
             return jweObject.serialize();
         } catch (Exception e) {
             throw new CryptoException("Exception encrypting data: " + e.getMessage(), e);
@@ -75,15 +97,10 @@ public class EncryptionUtility {
     public String sign(String algorithm, String kid, String keyStr, String dataToSign) {
         try {
 
-            Key key = getKey(algorithm, keyStr);
+            CryptoEntry<JWSSigner, JWSHeader> entry = getSigner(algorithm, kid, keyStr);
 
-            JWSHeader.Builder jwsBuilder = new JWSHeader.Builder("HS256".equals(algorithm) ? JWSAlgorithm.HS256 : JWSAlgorithm.RS256);
-            jwsBuilder.keyID(kid);
-
-            JWSHeader signingHeader = jwsBuilder.build();
-            JWSSigner signer = "HS256".equals(algorithm) ? new MACSigner(key.getEncoded()) : new RSASSASigner((RSAPrivateKey) key);
-            JWSObject jwsObject = new JWSObject(signingHeader, new Payload(dataToSign));
-            jwsObject.sign(signer);
+            JWSObject jwsObject = new JWSObject(entry.header, new Payload(dataToSign));
+            jwsObject.sign(entry.crypto);
             checkObject(jwsObject);
 
             String parts[] = jwsObject.serialize().split("\\.");
@@ -95,6 +112,51 @@ public class EncryptionUtility {
         }
     }
 
+    /**
+     * Signs the bytes like {@link #sign(String, String, String, String)} and returns the same JSON as UTF-8 bytes.
+     * The payload is neither decoded into a String nor are the parts of the JWS split out of its serialized form,
+     * the result is assembled straight from the signing input and the signature.
+     */
+    public byte[] sign(String algorithm, String kid, String keyStr, byte[] dataToSign) {
+        try {
+
+            CryptoEntry<JWSSigner, JWSHeader> entry = getSigner(algorithm, kid, keyStr);
+
+            JWSObject jwsObject = new JWSObject(entry.header, new Payload(dataToSign));
+            jwsObject.sign(entry.crypto);
+            checkObject(jwsObject);
+
+            //protected.payload in Base64URL, plain ASCII
+            byte[] signingInput = jwsObject.getSigningInput();
+            int dot = 0;
+            while (signingInput[dot] != '.') {
+                dot++;
+            }
+            String signature = jwsObject.getSignature().toString();
+
+            byte[] signed = new byte[JWS_PROTECTED.length + JWS_PAYLOAD.length + JWS_SIGNATURE.length +
+                    JWS_END.length + signingInput.length - 1 + signature.length()];
+            int length = append(signed, 0, JWS_PROTECTED, 0, JWS_PROTECTED.length);
+            length = append(signed, length, signingInput, 0, dot);
+            length = append(signed, length, JWS_PAYLOAD, 0, JWS_PAYLOAD.length);
+            length = append(signed, length, signingInput, dot + 1, signingInput.length - dot - 1);
+            length = append(signed, length, JWS_SIGNATURE, 0, JWS_SIGNATURE.length);
+            for (int i = 0; i < signature.length(); i++) {
+                signed[length++] = (byte) signature.charAt(i);
+            }
+            append(signed, length, JWS_END, 0, JWS_END.length);
+            return signed;
+
+        } catch (Exception e) {
+            throw new CryptoException("Exception signing data: " + e.getMessage(), e);
+        }
+    }
+
+    private static int append(byte[] target, int offset, byte[] source, int from, int length) {
+        System.arraycopy(source, from, target, offset, length);
+        return offset + length;
+    }
+
     private void checkObject(JWSObject jwsObject) {
         if (JWSObject.State.SIGNED != jwsObject.getState()) {
             throw new CryptoException("Failed to generate signed payload");
@@ -121,13 +183,8 @@ public class EncryptionUtility {
 
     public String decrypt(String keyStr, String encryptedData) {
         try {
-            byte[] decodedKey = Base64.decode(keyStr);
-            SecretKeySpec key = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
-
-            JWEDecrypter decrypter = new AESDecrypter(key);
-            decrypter.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
-
             JWEObject jweObject = JWEObject.parse(encryptedData);
+            JWEDecrypter decrypter = getDecrypter(jweObject.getHeader().getKeyID(), keyStr);
             jweObject.decrypt(decrypter);
             return jweObject.getPayload().toBase64URL().decodeToString();
 
@@ -135,4 +192,202 @@ public class EncryptionUtility {
             throw new CryptoException("Exception decrypting field: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Drops every cached signer, encrypter and decrypter created for the given key id, e.g. after the key was
+     * revoked.
+     */
+    public void invalidate(String kid) {
+        for (CacheKey cacheKey : signers.keySet()) {
+            if (cacheKey.hasKeyId(kid)) {
+                signers.remove(cacheKey);
+            }
+        }
+        for (CacheKey cacheKey : encrypters.keySet()) {
+            if (cacheKey.hasKeyId(kid)) {
+                encrypters.remove(cacheKey);
+            }
+        }
+        for (CacheKey cacheKey : decrypters.keySet()) {
+            if (cacheKey.hasKeyId(kid)) {
+                decrypters.remove(cacheKey);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached signer, encrypter and decrypter.
+     */
+    public void invalidateAll() {
+        signers.clear();
+        encrypters.clear();
+        decrypters.clear();
+    }
+
+    private CryptoEntry<JWSSigner, JWSHeader> getSigner(String algorithm, String kid, String keyStr) {
+        CacheKey cacheKey = new CacheKey(algorithm, kid, fingerprint(keyStr));
+        CryptoEntry<JWSSigner, JWSHeader> entry = signers.get(cacheKey);
+
+        if (entry == null) {
+            Key key = getKey(algorithm, keyStr);
+
+            JWSHeader.Builder jwsBuilder = new JWSHeader.Builder("HS256".equals(algorithm) ? JWSAlgorithm.HS256 : JWSAlgorithm.RS256);
+            jwsBuilder.keyID(kid);
+
+            JWSHeader signingHeader = jwsBuilder.build();
+            try {
+                JWSSigner signer = "HS256".equals(algorithm) ? new MACSigner(key.getEncoded()) : new RSASSASigner((RSAPrivateKey) key);
+                entry = new CryptoEntry<JWSSigner, JWSHeader>(signer, signingHeader);
+            } catch (Exception e) {
+                throw new CryptoException("Exception creating signer: " + e.getMessage(), e);
+            }
+            put(signers, cacheKey, entry);
+        }
+
+        return entry;
+    }
+
+    private CryptoEntry<JWEEncrypter, JWEHeader> getEncrypter(String keyId, String aesKey) {
+        CacheKey cacheKey = new CacheKey(JWEAlgorithm.A256KW.getName(), keyId, fingerprint(aesKey));
+        CryptoEntry<JWEEncrypter, JWEHeader> entry = encrypters.get(cacheKey);
+
+        if (entry == null) {
+            try {
+                byte[] keyBytes = Base64.decode(aesKey);
+                SecretKeySpec secretKey = new SecretKeySpec(keyBytes, 0, keyBytes.length, "AES");
+
+                JWEAlgorithm jweAlgorithm = JWEAlgorithm.A256KW;
+                EncryptionMethod encryptionMethod = EncryptionMethod.A128GCM;
+                JWEHeader.Builder headerBuilder = new JWEHeader.Builder(jweAlgorithm, encryptionMethod);
+
+                headerBuilder.keyID(keyId);
+
+                JWEHeader header = headerBuilder.build();
+                JWEEncrypter encrypter = new AESEncrypter(secretKey);
+                encrypter.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+                entry = new CryptoEntry<JWEEncrypter, JWEHeader>(encrypter, header);
+            } catch (Exception e) {
+                throw new CryptoException("Exception creating encrypter: " + e.getMessage(), e);
+            }
+            put(encrypters, cacheKey, entry);
+        }
+
+        return entry;
+    }
+
+    //Decrypters are cached under the key id found in the header of the encrypted data
+    private JWEDecrypter getDecrypter(String keyId, String keyStr) {
+        CacheKey cacheKey = new CacheKey(JWEAlgorithm.A256KW.getName(), keyId, fingerprint(keyStr));
+        JWEDecrypter decrypter = decrypters.get(cacheKey);
+
+        if (decrypter == null) {
+            try {
+                byte[] decodedKey = Base64.decode(keyStr);
+                SecretKeySpec key = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
+
+                decrypter = new AESDecrypter(key);
+                decrypter.getJCAContext().setProvider(BouncyCastleProviderSingleton.getInstance());
+            } catch (Exception e) {
+                throw new CryptoException("Exception creating decrypter: " + e.getMessage(), e);
+            }
+            put(decrypters, cacheKey, decrypter);
+        }
+
+        return decrypter;
+    }
+
+    //Returns the SHA-256 digest of the key.  Callers pass the same key string with every call, so the digest is
+    //looked up by the identity of the string and only computed for a string not seen before.  The string is held
+    //weakly, the slot is simply taken over by the next key landing in it
+    private byte[] fingerprint(String keyStr) {
+        if (keyStr == null) {
+            return null;
+        }
+        int slot = System.identityHashCode(keyStr) & (FINGERPRINT_SLOTS - 1);
+        Fingerprint fingerprint = fingerprints.get(slot);
+        if (fingerprint != null && fingerprint.keyStr.get() == keyStr) {
+            return fingerprint.digest;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(keyStr.getBytes(StandardCharsets.UTF_8));
+            fingerprints.set(slot, new Fingerprint(keyStr, digest));
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoException("Exception creating key fingerprint: " + e.getMessage(), e);
+        }
+    }
+
+    //Keeps the caches bounded when keys are rotated without being invalidated
+    private <V> void put(ConcurrentMap<CacheKey, V> cache, CacheKey cacheKey, V value) {
+        if (cache.size() >= MAX_CACHED_KEYS) {
+            cache.clear();
+        }
+        cache.put(cacheKey, value);
+    }
+
+    private static final class CryptoEntry<C, H> {
+        private final C crypto;
+        private final H header;
+
+        private CryptoEntry(C crypto, H header) {
+            this.crypto = crypto;
+            this.header = header;
+        }
+    }
+
+    private static final class Fingerprint {
+        private final WeakReference<String> keyStr;
+        private final byte[] digest;
+
+        private Fingerprint(String keyStr, byte[] digest) {
+            this.keyStr = new WeakReference<String>(keyStr);
+            this.digest = digest;
+        }
+    }
+
+    //Identifies a key by algorithm, key id and the SHA-256 digest of the key, so the cache does not keep the key
+    //material itself reachable
+    private static final class CacheKey {
+        private final String algorithm;
+        private final String kid;
+        private final byte[] fingerprint;
+        private final int hash;
+
+        private CacheKey(String algorithm, String kid, byte[] fingerprint) {
+            this.algorithm = algorithm;
+            this.kid = kid;
+            this.fingerprint = fingerprint;
+            this.hash = 31 * (31 * hash(algorithm) + hash(kid)) + Arrays.hashCode(fingerprint);
+        }
+
+        private boolean hasKeyId(String kid) {
+            return same(kid, this.kid);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) object;
+            return hash == other.hash && same(algorithm, other.algorithm) && same(kid, other.kid) &&
+                    MessageDigest.isEqual(fingerprint, other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static int hash(String value) {
+            return value == null ? 0 : value.hashCode();
+        }
+
+        private static boolean same(String first, String second) {
+            return first == null ? second == null : first.equals(second);
+        }
+    }
 }
@@ -15,14 +15,20 @@
 package io.aexp.api.client.core.utils;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import io.aexp.api.client.core.exceptions.JsonException;
 
+import java.io.InputStream;
 import java.util.Map;
 
 public class JsonUtility {
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
     private final ObjectMapper mapper;
     private final static JsonUtility INSTANCE = new JsonUtility();
 
@@ -48,6 +54,48 @@ public class JsonUtility {
         }
     }
 
+    public <T> T getObject(byte[] json, Class<T> objectClass) {
+        try {
+            return mapper.readValue(json, objectClass);
+        } catch (Exception e) {
+            throw new JsonException("Exception mapping bytes to class, caused by " + e.getMessage(), e);
+        }
+    }
+
+    public <T> T getObject(InputStream json, Class<T> objectClass) {
+        try {
+            return mapper.readValue(json, objectClass);
+        } catch (Exception e) {
+            throw new JsonException("Exception mapping stream to class, caused by " + e.getMessage(), e);
+        }
+    }
+
+    //Maps a JSON object to its fields, typed so callers need no unchecked conversion
+    public Map<String, Object> getMap(String jsonString) {
+        try {
+            return mapper.readValue(jsonString, MAP_TYPE);
+        } catch (Exception e) {
+            throw new JsonException("Exception mapping string to map, caused by " + e.getMessage(), e);
+        }
+    }
+
+    public Map<String, Object> getMap(byte[] json) {
+        try {
+            return mapper.readValue(json, MAP_TYPE);
+        } catch (Exception e) {
+            throw new JsonException("Exception mapping bytes to map, caused by " + e.getMessage(), e);
+        }
+    }
+
+    //Returns a streaming parser over the JSON, readValueAs on the parser maps values like getObject does
+    public JsonParser createParser(InputStream json) {
+        try {
+            return mapper.getFactory().createParser(json);
+        } catch (Exception e) {
+            throw new JsonException("Exception creating parser, caused by " + e.getMessage(), e);
+        }
+    }
+
     public String getString(Object object) {
         try {
             return mapper.writeValueAsString(object);
@@ -56,6 +104,15 @@ public class JsonUtility {
         }
     }
 
+    //Writes the UTF-8 JSON straight into a byte array, Jackson recycles its buffers between calls
+    public byte[] getBytes(Object object) {
+        try {
+            return mapper.writeValueAsBytes(object);
+        } catch (Exception e) {
+            throw new JsonException("Exception writing object as bytes, caused by " + e.getMessage(), e);
+        }
+    }
+
     public String prettyString(String jsonString) {
         try {
             return getString(getObject(jsonString, Map.class));
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport using the HttpClient of the JDK, this is the implementation for Java 11 and later.
+ */
+public final class JdkHttpTransport implements HttpTransport {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 15000;
+
+    private final HttpClient client;
+
+    private JdkHttpTransport(JdkHttpTransportBuilder builder) {
+        HttpClient.Builder client = HttpClient.newBuilder()
+                .version(builder.http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(builder.connectTimeout));
+        if (builder.sslContext != null) {
+            client.sslContext(builder.sslContext);
+        }
+        if (builder.executor != null) {
+            client.executor(builder.executor);
+        }
+        this.client = client.build();
+    }
+
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public static class JdkHttpTransportBuilder {
+        private boolean http2 = true;
+        private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        private SSLContext sslContext;
+        private Executor executor;
+
+        //Negotiates HTTP/2 with the server, falling back to HTTP/1.1 when the server does not offer it
+        public JdkHttpTransportBuilder setHttp2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        //Milliseconds to wait for a new connection to be established
+        public JdkHttpTransportBuilder setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        //Defaults to the SSLContext of the JDK, which offers TLS 1.3
+        public JdkHttpTransportBuilder setSslContext(SSLContext sslContext) {
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        //Executor the client completes responses on, defaults to a pool owned by the client
+        public JdkHttpTransportBuilder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public JdkHttpTransport createJdkHttpTransport() {
+            if (connectTimeout <= 0) {
+                throw new IllegalArgumentException("Connect timeout must be positive");
+            }
+            return new JdkHttpTransport(this);
+        }
+    }
+
+    public static final class Provider implements HttpTransportProvider {
+
+        @Override
+        public String getName() {
+            return "jdk";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return isSupported();
+        }
+
+        //Negotiates HTTP/2 with the default settings of the builder
+        @Override
+        public HttpTransport createTransport() {
+            return new JdkHttpTransportBuilder().createJdkHttpTransport();
+        }
+    }
+
+    @Override
+    public TransportResponse execute(TransportRequest request) throws IOException {
+        CompletableFuture<TransportResponse> response = executeAsync(request);
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Request aborted");
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for response");
+        }
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+        final CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+        final CompletableFuture<HttpResponse<InputStream>> exchange;
+        try {
+            exchange = client.sendAsync(toJdkRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        request.setAbortAction(() -> result.cancel(true));
+        exchange.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                TransportResponse converted = toTransportResponse(response);
+                if (!result.complete(converted)) {
+                    closeQuietly(converted);
+                }
+                return;
+            }
+            result.completeExceptionally((throwable instanceof CompletionException && throwable.getCause() != null) ?
+                    throwable.getCause() : throwable);
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        //The JDK client releases its connections once it is no longer referenced
+    }
+
+    //The body publisher reads the array of the request, it is not copied
+    private static HttpRequest toJdkRequest(TransportRequest request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri());
+        if (request.getSocketTimeout() > 0) {
+            //The JDK client has no timeout per read, the socket timeout bounds the wait for the response headers
+            builder.timeout(Duration.ofMillis(request.getSocketTimeout()));
+        }
+        for (Map.Entry<String, String> header : request.getHeaders()) {
+            if (!TransportRequest.isManagedHeader(header.getKey())) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        if (request.getContentType() != null && request.getFirstHeader("Content-Type") == null) {
+            builder.header("Content-Type", request.getContentType());
+        }
+        byte[] body = request.getBody();
+        return builder.method(request.getMethod(), (body != null) ?
+                HttpRequest.BodyPublishers.ofByteArray(body) : HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static TransportResponse toTransportResponse(HttpResponse<InputStream> response) {
+        List<Map.Entry<String, String>> headers = new ArrayList<Map.Entry<String, String>>();
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            //HTTP/2 pseudo headers such as :status are already in the status code
+            if (!header.getKey().startsWith(":")) {
+                for (String value : header.getValue()) {
+                    headers.add(new AbstractMap.SimpleImmutableEntry<String, String>(header.getKey(), value));
+                }
+            }
+        }
+        return new TransportResponse(response.statusCode(), headers, response.body());
+    }
+
+    private static void closeQuietly(TransportResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            //the exchange was abandoned already
+        }
+    }
+}
@@ -14,6 +14,7 @@
 
 package io.aexp.api.client.core;
 
+import io.aexp.api.client.core.exceptions.JsonException;
 import io.aexp.api.client.core.models.ApiClientResponse;
 import io.aexp.api.client.core.utils.EncryptionUtility;
 import org.apache.http.Header;
@@ -83,4 +84,39 @@ public class ApiClientResponseTest {
         assertEquals(null, response.toJson());
         assertEquals(null, response.getField("key"));
     }
+
+    @Test
+    public void lazyBody() throws Exception {
+        ApiClientResponse response = ApiClientResponse.fromBytes(null,
+                "{\"key\":\"v\u00e4lue\",\"n\":1}".getBytes("UTF-8"));
+
+        assertEquals("{\"key\":\"v\u00e4lue\",\"n\":1}", response.getBody());
+        assertEquals("v\u00e4lue", response.getField("key"));
+        assertEquals(1, response.getField("n"));
+        assertEquals("{\n  \"key\" : \"v\u00e4lue\",\n  \"n\" : 1\n}", response.toJson());
+    }
+
+    @Test
+    public void emptyBody() {
+        ApiClientResponse response = ApiClientResponse.fromBytes(null, new byte[0]);
+
+        assertNull(response.getBody());
+        assertNull(response.toJson());
+        assertNull(response.getField("key"));
+        assertNull(new ApiClientResponse(null, "").toJson());
+    }
+
+    @Test
+    public void invalidBody() {
+        ApiClientResponse response = new ApiClientResponse(null, "not json");
+
+        assertEquals("not json", response.getBody());
+        assertEquals("not json", response.toJson());
+        try {
+            response.getField("key");
+        } catch (JsonException e) {
+            return;
+        }
+        throw new AssertionError("Expected a JsonException for an invalid body");
+    }
 }
@@ -14,37 +14,101 @@
 
 package io.aexp.api.client.core;
 
+import io.aexp.api.client.core.cache.InMemoryResponseCache;
+import io.aexp.api.client.core.concurrent.VirtualThreads;
 import io.aexp.api.client.core.enums.AccountInputMethod;
 import io.aexp.api.client.core.enums.EndPoint;
+import io.aexp.api.client.core.enums.NotificationType;
+import io.aexp.api.client.core.exceptions.CircuitBreakerOpenException;
+import io.aexp.api.client.core.exceptions.ConcurrencyLimitExceededException;
+import io.aexp.api.client.core.exceptions.DeadlineExceededException;
 import io.aexp.api.client.core.exceptions.ExecutorException;
+import io.aexp.api.client.core.exceptions.HttpStatusException;
+import io.aexp.api.client.core.exceptions.RateLimitExceededException;
 import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.metrics.ApiClientMetrics;
+import io.aexp.api.client.core.metrics.RequestPhase;
 import io.aexp.api.client.core.models.ApiClientResponse;
+import io.aexp.api.client.core.models.ResponseBodyHandler;
+import io.aexp.api.client.core.resilience.AdaptiveLimiterPolicy;
+import io.aexp.api.client.core.resilience.Bulkhead;
+import io.aexp.api.client.core.resilience.BulkheadPolicy;
+import io.aexp.api.client.core.resilience.CircuitBreakerPolicy;
+import io.aexp.api.client.core.resilience.Deadline;
+import io.aexp.api.client.core.resilience.HedgingPolicy;
+import io.aexp.api.client.core.resilience.RateLimiterPolicy;
+import io.aexp.api.client.core.resilience.RetryPolicy;
 import io.aexp.api.client.core.security.authentication.AuthProvider;
 import io.aexp.api.client.core.security.authentication.HmacAuthProvider;
 import io.aexp.api.client.core.tokenization.ProvisioningRequest;
+import io.aexp.api.client.core.tokenization.NotificationsRequest;
 import io.aexp.api.client.core.tokenization.StatusRequest;
+import io.aexp.api.client.core.transport.ApacheHttpTransport;
+import io.aexp.api.client.core.transport.HttpTransport;
+import io.aexp.api.client.core.transport.TransportRequest;
+import io.aexp.api.client.core.transport.TransportResponse;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.SocketTimeoutException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ApiClientTest {
@@ -85,9 +149,7 @@ public class ApiClientTest {
                 .createDevPortalExecutor();
 
         setTestOverride(devPortalExecutor, true);
-        Field field = devPortalExecutor.getClass().getDeclaredField("httpClient");
-        field.setAccessible(true);
-        field.set(devPortalExecutor, HttpClientBuilder.create().build());
+        setApacheClient(devPortalExecutor, "httpClient", HttpClientBuilder.create().build());
         AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
         assertNotNull(devPortalExecutor.execute(
                 new StatusRequest.StatusRequestBuilder().createStatusRequest(), authProvider));
@@ -145,9 +207,7 @@ public class ApiClientTest {
 
         CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
 
-        Field field = executor.getClass().getDeclaredField("httpClient");
-        field.setAccessible(true);
-        field.set(executor,httpClient);
+        setApacheClient(executor, "httpClient", httpClient);
         CloseableHttpResponse response = mock(CloseableHttpResponse.class);
         StatusLine statusLine = mock(StatusLine.class);
         when(statusLine.getStatusCode()).thenReturn(500);
@@ -155,7 +215,8 @@ public class ApiClientTest {
         HttpEntity entity = mock(HttpEntity.class);
         when(entity.getContent()).thenReturn(new ByteArrayInputStream("{\"k\":\"v\"}".getBytes()));
         when(response.getEntity()).thenReturn(entity);
-        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject())).thenReturn(response);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenReturn(response);
         AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
         HttpHost httpHost = new HttpHost("apigateway.americanexpress.com", 443, "https");
         Throwable exception = null;
@@ -179,10 +240,9 @@ public class ApiClientTest {
         Method method = getExecuteMethod(executor);
 
         CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
-        Field field = executor.getClass().getDeclaredField("httpClient");
-        field.setAccessible(true);
-        field.set(executor,httpClient);
-        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject())).thenReturn(null);
+        setApacheClient(executor, "httpClient", httpClient);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenReturn(null);
         AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
         HttpHost httpHost = new HttpHost("apigateway.americanexpress.com", 443, "https");
         ApiClientResponse response = (ApiClientResponse) method.invoke(executor, httpHost,
@@ -201,9 +261,7 @@ public class ApiClientTest {
         Method method = getExecuteMethod(executor);
 
         CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
-        Field field = executor.getClass().getDeclaredField("httpClient");
-        field.setAccessible(true);
-        field.set(executor,httpClient);
+        setApacheClient(executor, "httpClient", httpClient);
         CloseableHttpResponse response = mock(CloseableHttpResponse.class);
         StatusLine statusLine = mock(StatusLine.class);
         when(statusLine.getStatusCode()).thenReturn(200);
@@ -211,7 +269,8 @@ public class ApiClientTest {
         HttpEntity entity = mock(HttpEntity.class);
         when(entity.getContent()).thenReturn(new ByteArrayInputStream("{\"key\":\"v\"}".getBytes()));
         when(response.getEntity()).thenReturn(entity);
-        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject())).thenReturn(response);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenReturn(response);
         AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
         HttpHost httpHost = new HttpHost("apigateway.americanexpress.com", 443, "https");
         ApiClientResponse devResponse = (ApiClientResponse) method.invoke(executor, httpHost,
@@ -220,4 +279,757 @@ public class ApiClientTest {
         assertNotNull(devResponse);
         assertEquals("v", devResponse.getField("key"));
     }
+
+    @Test
+    public void executeAsyncFailure() throws Exception {
+        ApiClient devPortalExecutor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setTokenRequesterId("token")
+                .createDevPortalExecutor();
+
+        setTestOverride(devPortalExecutor, true);
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        CompletableFuture<ApiClientResponse> future = devPortalExecutor.executeAsync(
+                new StatusRequest.StatusRequestBuilder().createStatusRequest(), authProvider);
+
+        Throwable exception = null;
+        try {
+            future.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            exception = e.getCause();
+        }
+
+        assertNotNull(exception);
+        assertTrue(exception instanceof ExecutorException);
+    }
+
+    @Test
+    public void executeAsync() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .createDevPortalExecutor();
+
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        final CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContent()).thenReturn(new ByteArrayInputStream("{\"key\":\"v\"}".getBytes()));
+        when(response.getEntity()).thenReturn(entity);
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Future>() {
+                    public Future answer(InvocationOnMock invocation) {
+                        ((FutureCallback) invocation.getArguments()[2]).completed(response);
+                        return mock(Future.class);
+                    }
+                });
+
+        Object original = getApacheClient(executor, "asyncHttpClient");
+        setApacheClient(executor, "asyncHttpClient", asyncHttpClient);
+        try {
+            AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+            ApiClientResponse devResponse = executor.executeAsync(
+                    new StatusRequest.StatusRequestBuilder().createStatusRequest(), authProvider).get();
+
+            assertNotNull(devResponse);
+            assertEquals("v", devResponse.getField("key"));
+        } finally {
+            setApacheClient(executor, "asyncHttpClient", original);
+        }
+    }
+
+    @Test
+    public void executeAppliesClientTimeout() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setTimeout(1234)
+                .createDevPortalExecutor();
+
+        Method method = getExecuteMethod(executor);
+
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        setApacheClient(executor, "httpClient", httpClient);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenReturn(null);
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        HttpHost httpHost = new HttpHost("apigateway.americanexpress.com", 443, "https");
+        method.invoke(executor, httpHost, new StatusRequest.StatusRequestBuilder().createStatusRequest(), authProvider);
+
+        ArgumentCaptor<HttpRequestBase> captor = ArgumentCaptor.forClass(HttpRequestBase.class);
+        verify(httpClient).execute((HttpHost) anyObject(), captor.capture(), (HttpContext) anyObject());
+        assertEquals(1234, captor.getValue().getConfig().getSocketTimeout());
+        assertEquals(1234, captor.getValue().getConfig().getConnectTimeout());
+        assertEquals(1234, captor.getValue().getConfig().getConnectionRequestTimeout());
+    }
+
+    private CloseableHttpClient mockHttpClient(ApiClient executor, String body) throws Exception {
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        setApacheClient(executor, "httpClient", httpClient);
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContent()).thenReturn(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        when(entity.getContentLength()).thenReturn(-1L);
+        when(response.getEntity()).thenReturn(entity);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenReturn(response);
+        return httpClient;
+    }
+
+    @Test
+    public void executeStreaming() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setMaxResponseBodySize(1024L)
+                .createDevPortalExecutor();
+        setTestOverride(executor, true);
+        mockHttpClient(executor, "{\"key\":\"v\"}");
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        long count = executor.execute(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                Mockito.mock(HmacAuthProvider.class), ResponseBodyHandler.toOutputStream(sink));
+
+        assertEquals(11, count);
+        assertEquals("{\"key\":\"v\"}", sink.toString("UTF-8"));
+    }
+
+    @Test(expected = ExecutorException.class)
+    public void executeBodyTooLarge() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setMaxResponseBodySize(4L)
+                .createDevPortalExecutor();
+        setTestOverride(executor, true);
+        mockHttpClient(executor, "{\"key\":\"v\"}");
+
+        executor.execute(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                Mockito.mock(HmacAuthProvider.class));
+    }
+
+    @Test
+    public void executeRetriesWithFreshHeaders() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setRetryPolicy(new RetryPolicy.RetryPolicyBuilder().setInitialBackoff(1).createRetryPolicy())
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mockHttpClient(executor, "{\"key\":\"v\"}");
+        CloseableHttpResponse unavailable = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(503);
+        when(unavailable.getStatusLine()).thenReturn(statusLine);
+        CloseableHttpResponse ok = httpClient.execute(null, (HttpRequest) null, (HttpContext) null);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenReturn(unavailable, ok);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        ApiClientResponse response = executor.execute(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                authProvider);
+
+        assertEquals("v", response.getField("key"));
+        verify(authProvider, times(2)).generateAuthHeaders(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void executeRecordsMetrics() throws Exception {
+        ApiClientMetrics metrics = mock(ApiClientMetrics.class);
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setMetrics(metrics)
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        setApacheClient(executor, "httpClient", httpClient);
+
+        executor.execute(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                Mockito.mock(HmacAuthProvider.class));
+
+        verify(metrics).recordPhase(eq("PRODUCTION"), eq("StatusRequest"), eq(RequestPhase.AUTHENTICATE), anyLong());
+        verify(metrics).recordPhase(eq("PRODUCTION"), eq("StatusRequest"), eq(RequestPhase.NETWORK), anyLong());
+        verify(metrics).recordPhase(eq("PRODUCTION"), eq("StatusRequest"), eq(RequestPhase.PARSE), anyLong());
+        verify(metrics).recordRequest(eq("PRODUCTION"), eq("StatusRequest"), eq("success"), anyLong());
+    }
+
+    @Test
+    public void submit() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setVirtualThreads(VirtualThreads.isSupported())
+                .createDevPortalExecutor();
+        mockHttpClient(executor, "{\"key\":\"v\"}");
+
+        ApiClientResponse response = executor.submit(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                Mockito.mock(HmacAuthProvider.class)).get(30, TimeUnit.SECONDS);
+
+        assertEquals("v", response.getField("key"));
+    }
+
+    @Test
+    public void virtualThreadsUnsupported() {
+        if (VirtualThreads.isSupported()) {
+            return;
+        }
+        try {
+            new ApiClient.DevPortalExecutorBuilder()
+                    .setEndpoint(EndPoint.PRODUCTION)
+                    .setVirtualThreads(true)
+                    .createDevPortalExecutor();
+        } catch (ExecutorException e) {
+            return;
+        }
+        throw new AssertionError("Expected virtual threads to be rejected");
+    }
+
+    @Test
+    public void maxConcurrentRequests() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                    .setEndpoint(EndPoint.PRODUCTION)
+                    .setExecutor(threads)
+                    .setMaxConcurrentRequests(2)
+                    .createDevPortalExecutor();
+            CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+            setApacheClient(executor, "httpClient", httpClient);
+
+            final AtomicInteger active = new AtomicInteger();
+            final AtomicInteger maxActive = new AtomicInteger();
+            final CountDownLatch started = new CountDownLatch(2);
+            when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                    .thenAnswer(new Answer<CloseableHttpResponse>() {
+                        public CloseableHttpResponse answer(InvocationOnMock invocation) throws Exception {
+                            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                            started.countDown();
+                            Thread.sleep(20);
+                            active.decrementAndGet();
+                            return null;
+                        }
+                    });
+
+            AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                        authProvider);
+            }
+            CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+
+            assertTrue(started.await(0, TimeUnit.SECONDS));
+            assertTrue(maxActive.get() <= 2);
+            assertEquals(0, active.get());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void circuitBreakerFailsFast() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setCircuitBreakerPolicy(new CircuitBreakerPolicy.CircuitBreakerPolicyBuilder()
+                        .setSlidingWindowSize(2)
+                        .setMinimumNumberOfCalls(2)
+                        .createCircuitBreakerPolicy())
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        setApacheClient(executor, "httpClient", httpClient);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenThrow(new SocketTimeoutException("Read timed out"));
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest request = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+        for (int i = 0; i < 2; i++) {
+            try {
+                executor.execute(request, authProvider);
+            } catch (ExecutorException e) {
+                assertFalse(e instanceof CircuitBreakerOpenException);
+            }
+        }
+        try {
+            executor.execute(request, authProvider);
+            fail();
+        } catch (CircuitBreakerOpenException e) {
+            verify(httpClient, times(2)).execute((HttpHost) anyObject(), (HttpRequest) anyObject(),
+                    (HttpContext) anyObject());
+        }
+
+        try {
+            executor.executeAsync(request, authProvider).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+        }
+    }
+
+    @Test
+    public void circuitBreakerIgnoresHandlerFailures() throws Exception {
+        CircuitBreakerPolicy policy = new CircuitBreakerPolicy.CircuitBreakerPolicyBuilder()
+                .setSlidingWindowSize(2)
+                .setMinimumNumberOfCalls(2)
+                .createCircuitBreakerPolicy();
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setCircuitBreakerPolicy(policy)
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mockHttpClient(executor, "{}");
+        ResponseBodyHandler<String> handler = new ResponseBodyHandler<String>() {
+            @Override
+            public String handle(Header[] headers, InputStream body) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+
+        //Without a retry policy the failing handler still does not count against the server
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest request = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+        for (int i = 0; i < 3; i++) {
+            try {
+                executor.execute(request, authProvider, handler);
+                fail();
+            } catch (ExecutorException e) {
+                assertFalse(e instanceof CircuitBreakerOpenException);
+                assertEquals("Disk full", e.getCause().getMessage());
+            }
+        }
+        verify(httpClient, times(3)).execute((HttpHost) anyObject(), (HttpRequest) anyObject(),
+                (HttpContext) anyObject());
+    }
+
+    @Test
+    public void executeAppliesDeadline() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setConnectTimeout(100)
+                .setConnectionRequestTimeout(200)
+                .setSocketTimeout(60000)
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mockHttpClient(executor, "{\"key\":\"v\"}");
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest request = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+        executor.execute(request, authProvider, Deadline.after(5, TimeUnit.SECONDS));
+
+        ArgumentCaptor<HttpRequestBase> captor = ArgumentCaptor.forClass(HttpRequestBase.class);
+        verify(httpClient).execute((HttpHost) anyObject(), captor.capture(), (HttpContext) anyObject());
+        assertEquals(100, captor.getValue().getConfig().getConnectTimeout());
+        assertEquals(200, captor.getValue().getConfig().getConnectionRequestTimeout());
+        assertTrue(captor.getValue().getConfig().getSocketTimeout() <= 5000);
+
+        try {
+            executor.execute(request, authProvider, Deadline.after(0, TimeUnit.MILLISECONDS));
+            fail();
+        } catch (DeadlineExceededException e) {
+            verify(httpClient, times(1)).execute((HttpHost) anyObject(), (HttpRequest) anyObject(),
+                    (HttpContext) anyObject());
+        }
+    }
+
+    @Test
+    public void executeAsyncTotalTimeout() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setTotalTimeout(50L)
+                .createDevPortalExecutor();
+
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        final Future exchange = mock(Future.class);
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenReturn(exchange);
+        setApacheClient(executor, "asyncHttpClient", asyncHttpClient);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        try {
+            executor.executeAsync(new StatusRequest.StatusRequestBuilder().createStatusRequest(), authProvider)
+                    .get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+        //The scheduler thread cancels the exchange right after failing the future the caller waits on
+        verify(exchange, timeout(1000)).cancel(true);
+    }
+
+    @Test
+    public void executeHedged() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setHedgingPolicy(new HedgingPolicy.HedgingPolicyBuilder().setHedgeDelay(10).createHedgingPolicy())
+                .createDevPortalExecutor();
+
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        final CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContent()).thenReturn(new ByteArrayInputStream("{\"key\":\"v\"}".getBytes()));
+        when(response.getEntity()).thenReturn(entity);
+        final Future primary = mock(Future.class);
+        final AtomicInteger exchanges = new AtomicInteger();
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Future>() {
+                    public Future answer(InvocationOnMock invocation) {
+                        //The first exchange never answers, the hedge does
+                        if (exchanges.incrementAndGet() == 1) {
+                            return primary;
+                        }
+                        ((FutureCallback) invocation.getArguments()[2]).completed(response);
+                        return mock(Future.class);
+                    }
+                });
+        setApacheClient(executor, "asyncHttpClient", asyncHttpClient);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        ApiClientResponse devResponse = executor.execute(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                authProvider);
+
+        assertEquals("v", devResponse.getField("key"));
+        assertEquals(2, exchanges.get());
+        verify(primary).cancel(true);
+    }
+
+    @Test
+    public void coalesceRequests() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setCoalesceRequests(true)
+                .createDevPortalExecutor();
+
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContent()).thenReturn(new ByteArrayInputStream("{\"status\":\"ACTIVE\"}".getBytes()));
+        when(response.getEntity()).thenReturn(entity);
+        final List<FutureCallback> callbacks = new CopyOnWriteArrayList<FutureCallback>();
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Future>() {
+                    public Future answer(InvocationOnMock invocation) {
+                        callbacks.add((FutureCallback) invocation.getArguments()[2]);
+                        return mock(Future.class);
+                    }
+                });
+        setApacheClient(executor, "asyncHttpClient", asyncHttpClient);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest status = new StatusRequest.StatusRequestBuilder()
+                .setTokenReferenceId("DNITHE1")
+                .createStatusRequest();
+        CompletableFuture<ApiClientResponse> first = executor.executeAsync(status, authProvider);
+        CompletableFuture<ApiClientResponse> second = executor.executeAsync(status, authProvider);
+        CompletableFuture<ApiClientResponse> cancelled = executor.executeAsync(status, authProvider);
+        cancelled.cancel(true);
+        assertEquals(1, callbacks.size());
+
+        callbacks.get(0).completed(response);
+        assertEquals("ACTIVE", first.get().getField("status"));
+        assertSame(first.get(), second.get());
+
+        //Nothing is cached, a request made after the shared call completed is sent again
+        executor.executeAsync(status, authProvider);
+        assertEquals(2, callbacks.size());
+    }
+
+    @Test
+    public void executeWithDeadlineWaitingForBulkhead() throws Exception {
+        BulkheadPolicy policy = new BulkheadPolicy.BulkheadPolicyBuilder()
+                .setMaxConcurrentCalls(1)
+                .setMaxWaitDuration(10000)
+                .createBulkheadPolicy();
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setBulkheadPolicy(policy)
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mockHttpClient(executor, "{}");
+        Bulkhead bulkhead = policy.getBulkhead("PRODUCTION", StatusRequest.class);
+        assertTrue(bulkhead.tryAcquire(false));
+
+        //The bulkhead would wait ten seconds, the deadline ends the wait first
+        long start = System.nanoTime();
+        try {
+            executor.execute(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                    Mockito.mock(HmacAuthProvider.class), Deadline.after(200, TimeUnit.MILLISECONDS));
+            fail();
+        } catch (DeadlineExceededException e) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        }
+        verify(httpClient, times(0)).execute((HttpHost) anyObject(), (HttpRequest) anyObject(),
+                (HttpContext) anyObject());
+        bulkhead.release();
+        assertEquals(1, bulkhead.getAvailableCalls());
+    }
+
+    @Test
+    public void executeWithAdaptiveLimiter() throws Exception {
+        AdaptiveLimiterPolicy policy = new AdaptiveLimiterPolicy.AdaptiveLimiterPolicyBuilder()
+                .setInitialLimit(1)
+                .createAdaptiveLimiterPolicy();
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setAdaptiveLimiterPolicy(policy)
+                .createDevPortalExecutor();
+
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        final List<FutureCallback> callbacks = new CopyOnWriteArrayList<FutureCallback>();
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Future>() {
+                    public Future answer(InvocationOnMock invocation) {
+                        callbacks.add((FutureCallback) invocation.getArguments()[2]);
+                        return mock(Future.class);
+                    }
+                });
+        setApacheClient(executor, "asyncHttpClient", asyncHttpClient);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest status = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+        CompletableFuture<ApiClientResponse> first = executor.executeAsync(status, authProvider);
+        try {
+            executor.executeAsync(status, authProvider).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ConcurrencyLimitExceededException);
+        }
+        assertEquals(1, callbacks.size());
+        assertEquals(1, policy.getLimiter("PRODUCTION").getInFlight());
+
+        //A cancelled request gives its permit back without changing the limit
+        first.cancel(true);
+        assertEquals(0, policy.getLimiter("PRODUCTION").getInFlight());
+        assertEquals(1, policy.getLimiter("PRODUCTION").getLimit());
+    }
+
+    @Test
+    public void executeWithRateLimiter() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setRateLimiterPolicy(new RateLimiterPolicy.RateLimiterPolicyBuilder()
+                        .addLimit("/", 100, 5)
+                        .createRateLimiterPolicy())
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        setApacheClient(executor, "httpClient", httpClient);
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(429);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        when(response.getAllHeaders()).thenReturn(new Header[]{new BasicHeader("Retry-After", "30")});
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenReturn(response);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest request = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+        try {
+            executor.execute(request, authProvider);
+            fail();
+        } catch (HttpStatusException e) {
+            assertEquals(429, e.getStatusCode());
+        }
+
+        //The server asked to wait, the next request fails without being sent
+        try {
+            executor.execute(request, authProvider);
+            fail();
+        } catch (RateLimitExceededException e) {
+            assertTrue(e.getRetryAfter() > 29000);
+        }
+        verify(httpClient, times(1)).execute((HttpHost) anyObject(), (HttpRequest) anyObject(),
+                (HttpContext) anyObject());
+    }
+
+    @Test
+    public void executeAsyncWithRateLimiter() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setRateLimiterPolicy(new RateLimiterPolicy.RateLimiterPolicyBuilder()
+                        .addLimit("/", 20, 1)
+                        .setMaxWaitDuration(5000)
+                        .createRateLimiterPolicy())
+                .createDevPortalExecutor();
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Future>() {
+                    public Future answer(InvocationOnMock invocation) throws Exception {
+                        threads.add(Thread.currentThread().getName());
+                        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+                        StatusLine statusLine = mock(StatusLine.class);
+                        when(statusLine.getStatusCode()).thenReturn(200);
+                        when(response.getStatusLine()).thenReturn(statusLine);
+                        ((FutureCallback) invocation.getArguments()[2]).completed(response);
+                        return mock(Future.class);
+                    }
+                });
+        setApacheClient(executor, "asyncHttpClient", asyncHttpClient);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest request = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+        CompletableFuture<ApiClientResponse> first = executor.executeAsync(request, authProvider);
+        CompletableFuture<ApiClientResponse> second = executor.executeAsync(request, authProvider);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        //The second request waited for its permit, it is not prepared on the shared timer thread
+        assertEquals(2, threads.size());
+        assertFalse(threads.get(1).equals("amex-api-scheduler"));
+    }
+
+    @Test
+    public void executeSignsSentBody() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mockHttpClient(executor, "{}");
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        executor.execute(new NotificationsRequest.NotificationsRequestBuilder()
+                .setTokenReferenceId("DNITH\u00c9")
+                .setNotificationType(NotificationType.SUSPEND)
+                .createNotificationsRequest(), authProvider);
+
+        ArgumentCaptor<byte[]> signed = ArgumentCaptor.forClass(byte[].class);
+        verify(authProvider).generateAuthHeadersForBody(signed.capture(), anyString(), eq("POST"));
+        ArgumentCaptor<HttpRequestBase> sent = ArgumentCaptor.forClass(HttpRequestBase.class);
+        verify(httpClient).execute((HttpHost) anyObject(), sent.capture(), (HttpContext) anyObject());
+        HttpEntity entity = ((HttpEntityEnclosingRequest) sent.getValue()).getEntity();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        entity.writeTo(body);
+
+        assertArrayEquals(signed.getValue(), body.toByteArray());
+        assertTrue(new String(body.toByteArray(), "UTF-8").contains("DNITH\u00c9"));
+    }
+
+    @Test
+    public void executeWithTransport() throws Exception {
+        HttpTransport transport = mock(HttpTransport.class);
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setTransport(transport)
+                .createDevPortalExecutor();
+
+        final Closeable exchange = mock(Closeable.class);
+        final List<Map.Entry<String, String>> headers = Collections.<Map.Entry<String, String>>singletonList(
+                new AbstractMap.SimpleImmutableEntry<String, String>("Content-Type", "application/json"));
+        when(transport.execute((TransportRequest) anyObject())).thenReturn(new TransportResponse(200, headers,
+                new ByteArrayInputStream("{\"status\":\"ACTIVE\"}".getBytes()), exchange, -1));
+        when(transport.executeAsync((TransportRequest) anyObject())).thenReturn(CompletableFuture.completedFuture(
+                new TransportResponse(200, headers, new ByteArrayInputStream("{\"status\":\"ACTIVE\"}".getBytes()),
+                        exchange, -1)));
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest status = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+        assertEquals("ACTIVE", executor.execute(status, authProvider).getField("status"));
+        assertEquals("ACTIVE", executor.executeAsync(status, authProvider).get().getField("status"));
+        verify(exchange, times(2)).close();
+
+        ArgumentCaptor<TransportRequest> sent = ArgumentCaptor.forClass(TransportRequest.class);
+        verify(transport).execute(sent.capture());
+        assertEquals("GET", sent.getValue().getMethod());
+        assertEquals("https://" + EndPoint.PRODUCTION.getHostname() + ":" + EndPoint.PRODUCTION.getPort() +
+                status.getUri(), sent.getValue().getUri().toString());
+    }
+
+    //Replaces one of the Apache clients behind the default transport of the executor
+    private static void setApacheClient(ApiClient executor, String name, Object client) throws Exception {
+        Field field = ApacheHttpTransport.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(getTransport(executor), client);
+    }
+
+    private static Object getApacheClient(ApiClient executor, String name) throws Exception {
+        Field field = ApacheHttpTransport.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(getTransport(executor));
+    }
+
+    private static Object getTransport(ApiClient executor) throws Exception {
+        Field field = ApiClient.class.getDeclaredField("transport");
+        field.setAccessible(true);
+        return field.get(executor);
+    }
+
+    private CloseableHttpClient mockCachingServer(ApiClient executor, final Header... headers) throws Exception {
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        setApacheClient(executor, "httpClient", httpClient);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenAnswer(new Answer<CloseableHttpResponse>() {
+                    public CloseableHttpResponse answer(InvocationOnMock invocation) throws Exception {
+                        HttpRequest request = (HttpRequest) invocation.getArguments()[1];
+                        boolean notModified = request.getFirstHeader("If-None-Match") != null;
+                        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+                        StatusLine statusLine = mock(StatusLine.class);
+                        when(statusLine.getStatusCode()).thenReturn(notModified ? 304 : 200);
+                        when(response.getStatusLine()).thenReturn(statusLine);
+                        when(response.getAllHeaders()).thenReturn(headers);
+                        if (!notModified) {
+                            HttpEntity entity = mock(HttpEntity.class);
+                            when(entity.getContent()).thenReturn(
+                                    new ByteArrayInputStream("{\"status\":\"ACTIVE\"}".getBytes("UTF-8")));
+                            when(entity.getContentLength()).thenReturn(-1L);
+                            when(response.getEntity()).thenReturn(entity);
+                        }
+                        return response;
+                    }
+                });
+        return httpClient;
+    }
+
+    @Test
+    public void responseCache() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setResponseCache(new InMemoryResponseCache.InMemoryResponseCacheBuilder()
+                        .createInMemoryResponseCache(), 60000)
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mockCachingServer(executor);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest status = new StatusRequest.StatusRequestBuilder()
+                .setTokenReferenceId("DNITHE1")
+                .createStatusRequest();
+        assertEquals("ACTIVE", executor.execute(status, authProvider).getField("status"));
+        assertEquals("ACTIVE", executor.execute(status, authProvider).getField("status"));
+        assertEquals("ACTIVE", executor.executeAsync(status, authProvider).get().getField("status"));
+        verify(httpClient, times(1)).execute((HttpHost) anyObject(), (HttpRequest) anyObject(),
+                (HttpContext) anyObject());
+
+        executor.execute(new NotificationsRequest.NotificationsRequestBuilder()
+                .setTokenReferenceId("DNITHE1")
+                .setNotificationType(NotificationType.SUSPEND)
+                .createNotificationsRequest(), authProvider);
+        executor.execute(status, authProvider);
+        verify(httpClient, times(3)).execute((HttpHost) anyObject(), (HttpRequest) anyObject(),
+                (HttpContext) anyObject());
+    }
+
+    @Test
+    public void responseCacheRevalidates() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setResponseCache(new InMemoryResponseCache.InMemoryResponseCacheBuilder()
+                        .createInMemoryResponseCache(), 60000)
+                .createDevPortalExecutor();
+        CloseableHttpClient httpClient = mockCachingServer(executor, new BasicHeader("ETag", "\"v1\""),
+                new BasicHeader("Cache-Control", "no-cache"));
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest status = new StatusRequest.StatusRequestBuilder()
+                .setTokenReferenceId("DNITHE1")
+                .createStatusRequest();
+        executor.execute(status, authProvider);
+        assertEquals("ACTIVE", executor.execute(status, authProvider).getField("status"));
+
+        ArgumentCaptor<HttpRequestBase> captor = ArgumentCaptor.forClass(HttpRequestBase.class);
+        verify(httpClient, times(2)).execute((HttpHost) anyObject(), captor.capture(), (HttpContext) anyObject());
+        assertNull(captor.getAllValues().get(0).getFirstHeader("If-None-Match"));
+        assertEquals("\"v1\"", captor.getAllValues().get(1).getFirstHeader("If-None-Match").getValue());
+    }
 }
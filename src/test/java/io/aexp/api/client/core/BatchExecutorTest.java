@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core;
+
+import io.aexp.api.client.core.cache.InMemoryResponseCache;
+import io.aexp.api.client.core.enums.EndPoint;
+import io.aexp.api.client.core.enums.NotificationType;
+import io.aexp.api.client.core.exceptions.ExecutorException;
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.models.ApiClientResult;
+import io.aexp.api.client.core.resilience.RateLimiterPolicy;
+import io.aexp.api.client.core.security.authentication.AuthProvider;
+import io.aexp.api.client.core.security.authentication.HmacAuthProvider;
+import io.aexp.api.client.core.tokenization.NotificationsRequest;
+import io.aexp.api.client.core.tokenization.StatusRequest;
+import io.aexp.api.client.core.transport.ApacheHttpTransport;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BatchExecutorTest {
+
+    @Test
+    public void resultsInOrder() throws Exception {
+        ApiClient apiClient = createApiClient();
+        BatchExecutor batchExecutor = new BatchExecutor.BatchExecutorBuilder()
+                .setApiClient(apiClient)
+                .setAuthProvider(Mockito.mock(HmacAuthProvider.class))
+                .setMaxConcurrency(4)
+                .createBatchExecutor();
+
+        List<TestRequest> requests = IntStream.range(0, 50).mapToObj(TestRequest::new).collect(Collectors.toList());
+        List<ApiClientResult> results = batchExecutor.execute(requests.stream()).collect(Collectors.toList());
+
+        assertEquals(50, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            ApiClientResult result = results.get(i);
+            assertSame(requests.get(i), result.getRequest());
+            if (i % 7 == 3) {
+                assertFalse(result.isSuccess());
+                assertNull(result.getResponse());
+                assertTrue(result.getException() instanceof ExecutorException);
+            } else {
+                assertTrue(result.isSuccess());
+                assertEquals(i, result.getResponse().getField("index"));
+            }
+        }
+    }
+
+    @Test
+    public void pullsRequestsAsResultsAreConsumed() throws Exception {
+        BatchExecutor batchExecutor = new BatchExecutor.BatchExecutorBuilder()
+                .setApiClient(createApiClient())
+                .setAuthProvider(Mockito.mock(HmacAuthProvider.class))
+                .setMaxConcurrency(2)
+                .createBatchExecutor();
+
+        final AtomicInteger taken = new AtomicInteger();
+        Iterator<ApiClientRequest> requests = new Iterator<ApiClientRequest>() {
+            @Override
+            public boolean hasNext() {
+                return taken.get() < 10;
+            }
+
+            @Override
+            public ApiClientRequest next() {
+                return new TestRequest(taken.getAndIncrement());
+            }
+        };
+
+        Iterator<ApiClientResult> results = batchExecutor.execute(requests);
+        assertEquals(0, taken.get());
+        assertTrue(results.hasNext());
+        assertEquals(2, taken.get());
+        assertEquals(0, results.next().getResponse().getField("index"));
+        assertEquals(3, taken.get());
+
+        List<ApiClientResult> rest = new ArrayList<ApiClientResult>();
+        results.forEachRemaining(rest::add);
+        assertEquals(9, rest.size());
+        assertEquals(10, taken.get());
+    }
+
+    @Test
+    public void rateLimited() throws Exception {
+        ApiClient apiClient = createApiClient(new ApiClient.DevPortalExecutorBuilder()
+                .setRateLimiterPolicy(new RateLimiterPolicy.RateLimiterPolicyBuilder()
+                        .addLimit("/test", 50, 1)
+                        .setMaxWaitDuration(5000)
+                        .createRateLimiterPolicy()));
+        BatchExecutor batchExecutor = new BatchExecutor.BatchExecutorBuilder()
+                .setApiClient(apiClient)
+                .setAuthProvider(Mockito.mock(HmacAuthProvider.class))
+                .setMaxConcurrency(10)
+                .createBatchExecutor();
+
+        long start = System.nanoTime();
+        List<ApiClientResult> results = batchExecutor.execute(IntStream.range(0, 10).mapToObj(TestRequest::new))
+                .collect(Collectors.toList());
+
+        //One request goes out right away, the other nine wait 20ms each for their permit
+        assertEquals(10, results.size());
+        assertEquals(9, results.stream().filter(ApiClientResult::isSuccess).count());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 170);
+    }
+
+    @Test
+    public void invalidatesCachedResponses() throws Exception {
+        ApiClient apiClient = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setResponseCache(new InMemoryResponseCache.InMemoryResponseCacheBuilder()
+                        .createInMemoryResponseCache(), 60000)
+                .createDevPortalExecutor();
+        final AtomicInteger sent = new AtomicInteger();
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Object>() {
+                    public Object answer(InvocationOnMock invocation) throws Exception {
+                        sent.incrementAndGet();
+                        FutureCallback callback = (FutureCallback) invocation.getArguments()[2];
+                        callback.completed(createResponse("{\"status\":\"ACTIVE\"}"));
+                        return null;
+                    }
+                });
+        setAsyncHttpClient(apiClient, asyncHttpClient);
+
+        AuthProvider authProvider = Mockito.mock(HmacAuthProvider.class);
+        StatusRequest status = new StatusRequest.StatusRequestBuilder()
+                .setTokenReferenceId("DNITHE1")
+                .createStatusRequest();
+        apiClient.executeAsync(status, authProvider).get(5, TimeUnit.SECONDS);
+        apiClient.executeAsync(status, authProvider).get(5, TimeUnit.SECONDS);
+        assertEquals(1, sent.get());
+
+        BatchExecutor batchExecutor = new BatchExecutor.BatchExecutorBuilder()
+                .setApiClient(apiClient)
+                .setAuthProvider(authProvider)
+                .createBatchExecutor();
+        List<ApiClientResult> results = batchExecutor.execute(Stream.of(
+                new NotificationsRequest.NotificationsRequestBuilder()
+                        .setTokenReferenceId("DNITHE1")
+                        .setNotificationType(NotificationType.SUSPEND)
+                        .createNotificationsRequest())).collect(Collectors.toList());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(2, sent.get());
+
+        //The suspended token is looked up again rather than read from the cache
+        apiClient.executeAsync(status, authProvider).get(5, TimeUnit.SECONDS);
+        assertEquals(3, sent.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidConcurrency() throws Exception {
+        new BatchExecutor.BatchExecutorBuilder()
+                .setApiClient(createApiClient())
+                .setAuthProvider(Mockito.mock(AuthProvider.class))
+                .setMaxConcurrency(0)
+                .createBatchExecutor();
+    }
+
+    //A client whose non-blocking http client answers with the index from the uri, failing every seventh request
+    private ApiClient createApiClient() throws Exception {
+        return createApiClient(new ApiClient.DevPortalExecutorBuilder());
+    }
+
+    private ApiClient createApiClient(ApiClient.DevPortalExecutorBuilder builder) throws Exception {
+        ApiClient apiClient = builder
+                .setEndpoint(EndPoint.PRODUCTION)
+                .createDevPortalExecutor();
+
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Object>() {
+                    public Object answer(InvocationOnMock invocation) throws Exception {
+                        HttpAsyncRequestProducer producer = (HttpAsyncRequestProducer) invocation.getArguments()[0];
+                        String uri = producer.generateRequest().getRequestLine().getUri();
+                        int index = Integer.parseInt(uri.substring(uri.lastIndexOf('/') + 1));
+                        FutureCallback callback = (FutureCallback) invocation.getArguments()[2];
+                        if (index % 7 == 3) {
+                            callback.failed(new IOException("Connection reset"));
+                        } else {
+                            callback.completed(createResponse("{\"index\":" + index + "}"));
+                        }
+                        return null;
+                    }
+                });
+
+        setAsyncHttpClient(apiClient, asyncHttpClient);
+        return apiClient;
+    }
+
+    //Replaces the non-blocking client behind the default transport of the client
+    private void setAsyncHttpClient(ApiClient apiClient, CloseableHttpAsyncClient asyncHttpClient) throws Exception {
+        Field transport = ApiClient.class.getDeclaredField("transport");
+        transport.setAccessible(true);
+        Field field = ApacheHttpTransport.class.getDeclaredField("asyncHttpClient");
+        field.setAccessible(true);
+        field.set(transport.get(apiClient), asyncHttpClient);
+    }
+
+    private CloseableHttpResponse createResponse(String body) throws Exception {
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContent()).thenReturn(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        when(response.getEntity()).thenReturn(entity);
+        return response;
+    }
+
+    private static class TestRequest extends ApiClientRequest {
+        private final int index;
+
+        private TestRequest(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String toJson(String kid, String aesKey) {
+            return null;
+        }
+
+        @Override
+        public String getUri() {
+            return "/test/" + index;
+        }
+
+        @Override
+        public String getHttpAction() {
+            return "GET";
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.cache;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryResponseCacheTest {
+
+    private CachedResponse createResponse(String tokenReferenceId) {
+        return new CachedResponse(null, "{}".getBytes(), null, tokenReferenceId, System.currentTimeMillis() + 60000);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        InMemoryResponseCache cache = new InMemoryResponseCache.InMemoryResponseCacheBuilder()
+                .setMaxEntries(2)
+                .createInMemoryResponseCache();
+        cache.put("a", createResponse("1"));
+        cache.put("b", createResponse("2"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", createResponse("3"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void invalidate() {
+        InMemoryResponseCache cache = new InMemoryResponseCache.InMemoryResponseCacheBuilder()
+                .createInMemoryResponseCache();
+        cache.put("status", createResponse("1"));
+        cache.put("metadata", createResponse("1"));
+        cache.put("other", createResponse("2"));
+
+        cache.invalidate("1");
+
+        assertNull(cache.get("status"));
+        assertNull(cache.get("metadata"));
+        assertNotNull(cache.get("other"));
+    }
+
+    @Test
+    public void cacheControl() {
+        long now = 1000000;
+        Header etag = new BasicHeader("ETag", "\"v1\"");
+
+        assertEquals(now + 60000, CachedResponse.getExpiresAt(null, 60000, now));
+        assertEquals(now + 5000, CachedResponse.getExpiresAt(
+                new Header[]{new BasicHeader("Cache-Control", "private, max-age=5")}, 60000, now));
+        assertEquals(-1, CachedResponse.getExpiresAt(
+                new Header[]{new BasicHeader("Cache-Control", "no-store")}, 60000, now));
+        assertEquals(-1, CachedResponse.getExpiresAt(
+                new Header[]{new BasicHeader("Cache-Control", "no-cache")}, 60000, now));
+        assertEquals(now, CachedResponse.getExpiresAt(
+                new Header[]{new BasicHeader("Cache-Control", "no-cache"), etag}, 60000, now));
+        assertEquals("\"v1\"", CachedResponse.getEtag(new Header[]{etag}));
+    }
+
+    @Test
+    public void freshness() {
+        CachedResponse response = createResponse("1");
+
+        assertTrue(response.isFresh());
+        assertFalse(response.withExpiresAt(System.currentTimeMillis() - 1).isFresh());
+        assertEquals("{}", response.toApiClientResponse().getBody());
+    }
+}
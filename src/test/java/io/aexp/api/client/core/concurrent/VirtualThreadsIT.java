@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.concurrent;
+
+import io.aexp.api.client.core.ApiClient;
+import io.aexp.api.client.core.enums.EndPoint;
+import io.aexp.api.client.core.models.ApiClientResponse;
+import io.aexp.api.client.core.security.authentication.HmacAuthProvider;
+import io.aexp.api.client.core.tokenization.StatusRequest;
+import io.aexp.api.client.core.transport.ApacheHttpTransport;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs against the packaged multi-release jar in the jdk21 profile, so the VirtualThreads under test is the one
+ * from META-INF/versions/21 rather than the stub in target/classes.
+ */
+public class VirtualThreadsIT {
+
+    @Test
+    public void newThreadPerTaskExecutor() throws Exception {
+        assertTrue(VirtualThreads.isSupported());
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("it-");
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            assertTrue(isVirtual(thread));
+            assertTrue(thread.getName().startsWith("it-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void submit() throws Exception {
+        ApiClient executor = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .setVirtualThreads(true)
+                .createDevPortalExecutor();
+        final AtomicReference<Thread> sentOn = new AtomicReference<Thread>();
+        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+        when(httpClient.execute((HttpHost) anyObject(), (HttpRequest) anyObject(), (HttpContext) anyObject()))
+                .thenAnswer(new Answer<CloseableHttpResponse>() {
+                    public CloseableHttpResponse answer(InvocationOnMock invocation) throws Exception {
+                        sentOn.set(Thread.currentThread());
+                        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+                        StatusLine statusLine = mock(StatusLine.class);
+                        when(statusLine.getStatusCode()).thenReturn(200);
+                        when(response.getStatusLine()).thenReturn(statusLine);
+                        HttpEntity entity = mock(HttpEntity.class);
+                        when(entity.getContent()).thenReturn(new ByteArrayInputStream("{\"key\":\"v\"}".getBytes()));
+                        when(entity.getContentLength()).thenReturn(-1L);
+                        when(response.getEntity()).thenReturn(entity);
+                        return response;
+                    }
+                });
+        Field transport = ApiClient.class.getDeclaredField("transport");
+        transport.setAccessible(true);
+        Field field = ApacheHttpTransport.class.getDeclaredField("httpClient");
+        field.setAccessible(true);
+        field.set(transport.get(executor), httpClient);
+
+        ApiClientResponse response = executor.submit(new StatusRequest.StatusRequestBuilder().createStatusRequest(),
+                Mockito.mock(HmacAuthProvider.class)).get(30, TimeUnit.SECONDS);
+
+        assertEquals("v", response.getField("key"));
+        assertNotNull(sentOn.get());
+        assertTrue(isVirtual(sentOn.get()));
+    }
+
+    //The tests are compiled for Java 8, which has no Thread.isVirtual
+    private static boolean isVirtual(Thread thread) throws Exception {
+        return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+}
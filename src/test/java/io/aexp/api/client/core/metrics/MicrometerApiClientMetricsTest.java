@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.metrics;
+
+import io.aexp.api.client.core.transport.ConnectionPool;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class MicrometerApiClientMetricsTest {
+
+    @Test
+    public void phases() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerApiClientMetrics metrics = new MicrometerApiClientMetrics(registry);
+
+        metrics.recordPhase("PRODUCTION", "ProvisioningRequest", RequestPhase.SIGN, 2000000);
+        metrics.recordPhase("PRODUCTION", "ProvisioningRequest", RequestPhase.SIGN, 4000000);
+        metrics.recordPhase("PRODUCTION", "ProvisioningRequest", RequestPhase.NETWORK, 1000000);
+        metrics.recordRequest("PRODUCTION", "ProvisioningRequest", "503", 9000000);
+
+        Timer sign = registry.get(MicrometerApiClientMetrics.PHASE_TIMER)
+                .tag("request", "ProvisioningRequest").tag("phase", "sign").timer();
+        assertEquals(2, sign.count());
+        assertEquals(6.0, sign.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get(MicrometerApiClientMetrics.PHASE_TIMER).tag("phase", "network").timer().count());
+        assertEquals(1, registry.get(MicrometerApiClientMetrics.REQUEST_TIMER).tag("outcome", "503").timer().count());
+    }
+
+    @Test
+    public void hedges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerApiClientMetrics metrics = new MicrometerApiClientMetrics(registry);
+
+        metrics.recordHedge("PRODUCTION", "StatusRequest", true);
+        metrics.recordHedge("PRODUCTION", "StatusRequest", false);
+        metrics.recordHedge("PRODUCTION", "StatusRequest", true);
+
+        assertEquals(2.0, registry.get(MicrometerApiClientMetrics.HEDGE_COUNTER).tag("winner", "hedge").counter()
+                .count(), 0.0);
+        assertEquals(1.0, registry.get(MicrometerApiClientMetrics.HEDGE_COUNTER).tag("winner", "primary").counter()
+                .count(), 0.0);
+    }
+
+    @Test
+    public void connectionPool() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerApiClientMetrics metrics = new MicrometerApiClientMetrics(registry);
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder().setMaxTotal(7).createConnectionPool();
+        try {
+            metrics.bindConnectionPool(pool);
+
+            assertEquals(7.0, registry.get(MicrometerApiClientMetrics.POOL_GAUGE_PREFIX + "max").gauge().value(),
+                    0.0);
+            assertEquals(0.0, registry.get(MicrometerApiClientMetrics.POOL_GAUGE_PREFIX + "leased").gauge().value(),
+                    0.0);
+            assertNotNull(registry.get(MicrometerApiClientMetrics.POOL_GAUGE_PREFIX + "pending").gauge());
+            assertNotNull(registry.get(MicrometerApiClientMetrics.POOL_GAUGE_PREFIX + "available").gauge());
+
+            metrics.bindConnectionPool(pool);
+            assertEquals(0, registry.get(MicrometerApiClientMetrics.HANDSHAKE_TIMER).tag("resumed", "true").timer()
+                    .count());
+        } finally {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.reactive;
+
+import io.aexp.api.client.core.ApiClient;
+import io.aexp.api.client.core.enums.EndPoint;
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.models.ApiClientResult;
+import io.aexp.api.client.core.security.authentication.HmacAuthProvider;
+import io.aexp.api.client.core.transport.ApacheHttpTransport;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ApiClientPublisherTest {
+
+    private final ConcurrentLinkedQueue<Object[]> exchanges = new ConcurrentLinkedQueue<Object[]>();
+
+    @Test
+    public void resultsInOrder() throws Exception {
+        TestPublisher requests = new TestPublisher(10, null);
+        TestSubscriber subscriber = new TestSubscriber();
+        createPublisher(createApiClient(true), requests, 4).subscribe(subscriber);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+        assertEquals(10, subscriber.results.size());
+        for (int i = 0; i < 10; i++) {
+            ApiClientResult result = subscriber.results.get(i);
+            assertEquals("/test/" + i, result.getRequest().getUri());
+            if (i % 7 == 3) {
+                assertFalse(result.isSuccess());
+            } else {
+                assertEquals(i, result.getResponse().getField("index"));
+            }
+        }
+    }
+
+    @Test
+    public void boundedByDemandAndMaxInFlight() throws Exception {
+        TestPublisher requests = new TestPublisher(100, null);
+        TestSubscriber subscriber = new TestSubscriber();
+        createPublisher(createApiClient(false), requests, 3).subscribe(subscriber);
+
+        subscriber.subscription.request(1);
+        assertEquals(1, requests.requested);
+
+        subscriber.subscription.request(9);
+        assertEquals(3, requests.requested);
+        assertEquals(3, exchanges.size());
+
+        completeExchanges();
+        assertEquals(3, subscriber.results.size());
+        assertEquals(6, requests.requested);
+
+        subscriber.subscription.cancel();
+        assertTrue(requests.cancelled);
+        completeExchanges();
+        assertEquals(3, subscriber.results.size());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void upstreamError() throws Exception {
+        TestPublisher requests = new TestPublisher(2, new IllegalStateException("queue closed"));
+        TestSubscriber subscriber = new TestSubscriber();
+        createPublisher(createApiClient(true), requests, 4).subscribe(subscriber);
+
+        subscriber.subscription.request(10);
+
+        assertEquals(2, subscriber.results.size());
+        assertTrue(subscriber.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void invalidRequest() throws Exception {
+        TestPublisher requests = new TestPublisher(5, null);
+        TestSubscriber subscriber = new TestSubscriber();
+        createPublisher(createApiClient(true), requests, 4).subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(requests.cancelled);
+    }
+
+    private ApiClientPublisher createPublisher(ApiClient apiClient, Publisher<ApiClientRequest> requests,
+                                               int maxInFlight) {
+        return new ApiClientPublisher.ApiClientPublisherBuilder()
+                .setApiClient(apiClient)
+                .setAuthProvider(Mockito.mock(HmacAuthProvider.class))
+                .setRequests(requests)
+                .setMaxInFlight(maxInFlight)
+                .createApiClientPublisher();
+    }
+
+    //Completes the exchanges started so far, not those started as a result
+    private void completeExchanges() throws Exception {
+        List<Object[]> started = new ArrayList<Object[]>(exchanges);
+        exchanges.clear();
+        for (Object[] exchange : started) {
+            answer((HttpRequest) exchange[0], (FutureCallback) exchange[1]);
+        }
+    }
+
+    //Answers with the index from the uri and fails every seventh request
+    private void answer(HttpRequest request, FutureCallback callback) throws Exception {
+        String uri = request.getRequestLine().getUri();
+        int index = Integer.parseInt(uri.substring(uri.lastIndexOf('/') + 1));
+        if (index % 7 == 3) {
+            callback.failed(new IOException("Connection reset"));
+            return;
+        }
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(response.getStatusLine()).thenReturn(statusLine);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(entity.getContent()).thenReturn(new ByteArrayInputStream(("{\"index\":" + index + "}").getBytes("UTF-8")));
+        when(response.getEntity()).thenReturn(entity);
+        callback.completed(response);
+    }
+
+    private ApiClient createApiClient(final boolean immediate) throws Exception {
+        ApiClient apiClient = new ApiClient.DevPortalExecutorBuilder()
+                .setEndpoint(EndPoint.PRODUCTION)
+                .createDevPortalExecutor();
+
+        CloseableHttpAsyncClient asyncHttpClient = mock(CloseableHttpAsyncClient.class);
+        when(asyncHttpClient.execute((HttpAsyncRequestProducer) anyObject(), (HttpAsyncResponseConsumer) anyObject(),
+                (FutureCallback) anyObject()))
+                .thenAnswer(new Answer<Object>() {
+                    public Object answer(InvocationOnMock invocation) throws Exception {
+                        HttpAsyncRequestProducer producer = (HttpAsyncRequestProducer) invocation.getArguments()[0];
+                        HttpRequest request = producer.generateRequest();
+                        FutureCallback callback = (FutureCallback) invocation.getArguments()[2];
+                        if (immediate) {
+                            ApiClientPublisherTest.this.answer(request, callback);
+                        } else {
+                            exchanges.add(new Object[]{request, callback});
+                        }
+                        return null;
+                    }
+                });
+
+        Field transport = ApiClient.class.getDeclaredField("transport");
+        transport.setAccessible(true);
+        Field field = ApacheHttpTransport.class.getDeclaredField("asyncHttpClient");
+        field.setAccessible(true);
+        field.set(transport.get(apiClient), asyncHttpClient);
+        return apiClient;
+    }
+
+    //Publishes count requests as they are requested, then completes or fails
+    private static class TestPublisher implements Publisher<ApiClientRequest> {
+        private final int count;
+        private final Throwable failure;
+        private volatile long requested;
+        private volatile boolean cancelled;
+
+        private TestPublisher(int count, Throwable failure) {
+            this.count = count;
+            this.failure = failure;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super ApiClientRequest> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private int published;
+                private boolean finished;
+
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    while (published < Math.min(requested, count) && !cancelled) {
+                        subscriber.onNext(new TestRequest(published++));
+                    }
+                    if (published == count && !finished && !cancelled) {
+                        finished = true;
+                        if (failure != null) {
+                            subscriber.onError(failure);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static class TestSubscriber implements Subscriber<ApiClientResult> {
+        private final List<ApiClientResult> results = new CopyOnWriteArrayList<ApiClientResult>();
+        private volatile Subscription subscription;
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ApiClientResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static class TestRequest extends ApiClientRequest {
+        private final int index;
+
+        private TestRequest(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String toJson(String kid, String aesKey) {
+            return null;
+        }
+
+        @Override
+        public String getUri() {
+            return "/test/" + index;
+        }
+
+        @Override
+        public String getHttpAction() {
+            return "GET";
+        }
+    }
+}
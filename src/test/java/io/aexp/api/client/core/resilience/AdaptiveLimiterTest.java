@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private AdaptiveLimiter createLimiter(int initialLimit) {
+        return new AdaptiveLimiterPolicy.AdaptiveLimiterPolicyBuilder()
+                .setInitialLimit(initialLimit)
+                .setMinLimit(2)
+                .setMaxLimit(50)
+                .setSmoothing(0.5)
+                .createAdaptiveLimiterPolicy()
+                .getLimiter("SANDBOX");
+    }
+
+    //Runs a round of requests using the whole limit, all answering in the given time
+    private void round(AdaptiveLimiter limiter, long rtt, boolean overloaded) {
+        int permits = limiter.getLimit();
+        for (int i = 0; i < permits; i++) {
+            assertTrue(limiter.tryAcquire(false));
+        }
+        for (int i = 0; i < permits; i++) {
+            limiter.onSample(rtt, overloaded);
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void growsWhileRoundTripsAreSteady() {
+        AdaptiveLimiter limiter = createLimiter(10);
+        for (int i = 0; i < 5; i++) {
+            round(limiter, FAST, false);
+        }
+        assertEquals(50, limiter.getLimit());
+    }
+
+    @Test
+    public void doesNotGrowWhenUnused() {
+        AdaptiveLimiter limiter = createLimiter(10);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(false));
+            limiter.onSample(FAST, false);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void waitEndsAtDeadline() {
+        AdaptiveLimiter limiter = new AdaptiveLimiterPolicy.AdaptiveLimiterPolicyBuilder()
+                .setInitialLimit(1)
+                .setMinLimit(1)
+                .setMaxWaitDuration(10000)
+                .createAdaptiveLimiterPolicy()
+                .getLimiter("SANDBOX");
+        assertTrue(limiter.tryAcquire(false));
+
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire(true, Deadline.after(100, TimeUnit.MILLISECONDS)));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void shrinksWhenRoundTripsGetSlower() {
+        AdaptiveLimiter limiter = createLimiter(40);
+        round(limiter, FAST, false);
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 3; i++) {
+            round(limiter, SLOW, false);
+        }
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void backsOffOnOverload() {
+        AdaptiveLimiter limiter = createLimiter(20);
+        assertTrue(limiter.tryAcquire(false));
+        limiter.onSample(FAST, true);
+        assertEquals(18, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            round(limiter, FAST, true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        AdaptiveLimiter limiter = createLimiter(2);
+        assertTrue(limiter.tryAcquire(true));
+        assertTrue(limiter.tryAcquire(true));
+        assertFalse(limiter.tryAcquire(true));
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire(false));
+    }
+
+    @Test
+    public void waitsForPermit() throws Exception {
+        final AdaptiveLimiter limiter = new AdaptiveLimiterPolicy.AdaptiveLimiterPolicyBuilder()
+                .setInitialLimit(1)
+                .setMaxWaitDuration(5000)
+                .createAdaptiveLimiterPolicy()
+                .getLimiter("SANDBOX");
+        assertTrue(limiter.tryAcquire(false));
+        assertFalse(limiter.tryAcquire(false));
+
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                limiter.release();
+            }
+        });
+        releaser.start();
+        assertTrue(limiter.tryAcquire(true));
+        releaser.join();
+    }
+
+    @Test
+    public void limiterPerEndpoint() {
+        AdaptiveLimiterPolicy policy = new AdaptiveLimiterPolicy.AdaptiveLimiterPolicyBuilder()
+                .createAdaptiveLimiterPolicy();
+        assertSame(policy.getLimiter("SANDBOX"), policy.getLimiter("SANDBOX"));
+        assertFalse(policy.getLimiter("SANDBOX") == policy.getLimiter("PRODUCTION"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() {
+        new AdaptiveLimiterPolicy.AdaptiveLimiterPolicyBuilder().setInitialLimit(500).createAdaptiveLimiterPolicy();
+    }
+}
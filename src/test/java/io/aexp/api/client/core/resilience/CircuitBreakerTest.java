@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import io.aexp.api.client.core.tokenization.NotificationsRequest;
+import io.aexp.api.client.core.tokenization.StatusRequest;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private CircuitBreaker createCircuitBreaker(long waitDuration) {
+        return new CircuitBreakerPolicy.CircuitBreakerPolicyBuilder()
+                .setSlidingWindowSize(10)
+                .setMinimumNumberOfCalls(4)
+                .setFailureRateThreshold(50)
+                .setSlowCallRateThreshold(75)
+                .setSlowCallDurationThreshold(1000)
+                .setWaitDurationInOpenState(waitDuration)
+                .setPermittedCallsInHalfOpenState(2)
+                .createCircuitBreakerPolicy()
+                .getCircuitBreaker("SANDBOX", StatusRequest.class);
+    }
+
+    private void record(CircuitBreaker circuitBreaker, long duration, boolean failed) {
+        circuitBreaker.onResult(acquire(circuitBreaker), duration, failed);
+    }
+
+    private long acquire(CircuitBreaker circuitBreaker) {
+        long permission = circuitBreaker.tryAcquirePermission();
+        assertTrue(permission != CircuitBreaker.NOT_PERMITTED);
+        return permission;
+    }
+
+    @Test
+    public void opensOnFailureRate() {
+        CircuitBreaker circuitBreaker = createCircuitBreaker(60000);
+        record(circuitBreaker, FAST, true);
+        record(circuitBreaker, FAST, true);
+        record(circuitBreaker, FAST, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        record(circuitBreaker, FAST, false);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void opensOnSlowCallRate() {
+        CircuitBreaker circuitBreaker = createCircuitBreaker(60000);
+        for (int i = 0; i < 10; i++) {
+            record(circuitBreaker, (i % 2 == 0) ? FAST : SLOW, false);
+        }
+        for (int i = 0; i < 4; i++) {
+            record(circuitBreaker, SLOW, false);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        record(circuitBreaker, SLOW, false);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void slidingWindowEvictsOldCalls() {
+        CircuitBreaker circuitBreaker = createCircuitBreaker(60000);
+        for (int i = 0; i < 10; i++) {
+            record(circuitBreaker, FAST, i == 3);
+        }
+        //The fourth failure evicts the first one
+        for (int i = 0; i < 4; i++) {
+            record(circuitBreaker, FAST, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        record(circuitBreaker, FAST, true);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void halfOpenProbes() {
+        CircuitBreaker circuitBreaker = createCircuitBreaker(0);
+        for (int i = 0; i < 4; i++) {
+            record(circuitBreaker, FAST, true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        long first = acquire(circuitBreaker);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        long second = acquire(circuitBreaker);
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onResult(first, FAST, false);
+        circuitBreaker.onResult(second, FAST, true);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        first = acquire(circuitBreaker);
+        second = acquire(circuitBreaker);
+        circuitBreaker.onResult(first, FAST, false);
+        circuitBreaker.onResult(second, FAST, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void ignoresCallsFromEarlierStates() {
+        CircuitBreaker circuitBreaker = createCircuitBreaker(0);
+        long beforeOpening = acquire(circuitBreaker);
+        for (int i = 0; i < 4; i++) {
+            record(circuitBreaker, FAST, true);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        long probe = acquire(circuitBreaker);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        //A slow call made while the breaker was closed finishes now, it is not one of the probes
+        circuitBreaker.onResult(beforeOpening, SLOW, true);
+        circuitBreaker.onResult(beforeOpening, SLOW, true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        circuitBreaker.onResult(probe, FAST, false);
+        circuitBreaker.onResult(acquire(circuitBreaker), FAST, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        //Nor does a probe finishing after the breaker closed count towards the new window
+        circuitBreaker.onResult(probe, FAST, true);
+        for (int i = 0; i < 3; i++) {
+            record(circuitBreaker, FAST, i == 0);
+        }
+        record(circuitBreaker, FAST, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void perEndpointAndRequestType() {
+        CircuitBreakerPolicy policy = new CircuitBreakerPolicy.CircuitBreakerPolicyBuilder()
+                .createCircuitBreakerPolicy();
+
+        assertSame(policy.getCircuitBreaker("SANDBOX", StatusRequest.class),
+                policy.getCircuitBreaker("SANDBOX", StatusRequest.class));
+        assertNotSame(policy.getCircuitBreaker("SANDBOX", StatusRequest.class),
+                policy.getCircuitBreaker("PRODUCTION", StatusRequest.class));
+        assertNotSame(policy.getCircuitBreaker("SANDBOX", StatusRequest.class),
+                policy.getCircuitBreaker("SANDBOX", NotificationsRequest.class));
+    }
+
+    @Test
+    public void bulkhead() {
+        BulkheadPolicy policy = new BulkheadPolicy.BulkheadPolicyBuilder()
+                .setMaxConcurrentCalls(2)
+                .createBulkheadPolicy();
+        Bulkhead bulkhead = policy.getBulkhead("SANDBOX", StatusRequest.class);
+
+        assertSame(bulkhead, policy.getBulkhead("SANDBOX", StatusRequest.class));
+        assertTrue(bulkhead.tryAcquire(true));
+        assertTrue(bulkhead.tryAcquire(false));
+        assertFalse(bulkhead.tryAcquire(true));
+        assertTrue(policy.getBulkhead("SANDBOX", NotificationsRequest.class).tryAcquire(false));
+
+        bulkhead.release();
+        assertEquals(1, bulkhead.getAvailableCalls());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() {
+        new CircuitBreakerPolicy.CircuitBreakerPolicyBuilder().setFailureRateThreshold(0).createCircuitBreakerPolicy();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.tokenization.NotificationsRequest;
+import io.aexp.api.client.core.tokenization.StatusRequest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HedgingPolicyTest {
+
+    private final ApiClientRequest get = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+    private final ApiClientRequest post = new NotificationsRequest.NotificationsRequestBuilder()
+            .createNotificationsRequest();
+
+    private final List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<CompletableFuture<String>>();
+    private final List<Boolean> hedgeWins = new CopyOnWriteArrayList<Boolean>();
+
+    private final Supplier<CompletableFuture<String>> attempt = () -> {
+        CompletableFuture<String> future = new CompletableFuture<String>();
+        attempts.add(future);
+        return future;
+    };
+
+    private final Consumer<Boolean> listener = hedgeWins::add;
+
+    private HedgingPolicy createPolicy(RetryBudget budget) {
+        return new HedgingPolicy.HedgingPolicyBuilder()
+                .setHedgeDelay(10)
+                .setHedgeBudget(budget)
+                .createHedgingPolicy();
+    }
+
+    private void awaitAttempts(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && attempts.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, attempts.size());
+    }
+
+    @Test
+    public void hedgeWins() throws Exception {
+        CompletableFuture<String> result = createPolicy(null).executeAsync("SANDBOX", get, attempt, listener);
+        awaitAttempts(2);
+        attempts.get(1).complete("hedge");
+
+        assertEquals("hedge", result.get(5, TimeUnit.SECONDS));
+        assertTrue(attempts.get(0).isCancelled());
+        assertEquals(1, hedgeWins.size());
+        assertTrue(hedgeWins.get(0));
+    }
+
+    @Test
+    public void primaryWins() throws Exception {
+        CompletableFuture<String> result = createPolicy(null).executeAsync("SANDBOX", get, attempt, listener);
+        awaitAttempts(2);
+        attempts.get(0).complete("primary");
+
+        assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        assertTrue(attempts.get(1).isCancelled());
+        assertFalse(hedgeWins.get(0));
+    }
+
+    @Test
+    public void fastCallNotHedged() throws Exception {
+        Supplier<CompletableFuture<String>> fast = () -> {
+            attempts.add(CompletableFuture.completedFuture("fast"));
+            return attempts.get(attempts.size() - 1);
+        };
+
+        assertEquals("fast", createPolicy(null).executeAsync("SANDBOX", get, fast, listener).get());
+        Thread.sleep(50);
+        assertEquals(1, attempts.size());
+        assertTrue(hedgeWins.isEmpty());
+    }
+
+    @Test
+    public void failureNotHedged() throws Exception {
+        CompletableFuture<String> result = createPolicy(null).executeAsync("SANDBOX", get, attempt, listener);
+        attempts.get(0).completeExceptionally(new IllegalStateException("failed"));
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Thread.sleep(50);
+        assertEquals(1, attempts.size());
+    }
+
+    @Test
+    public void budget() throws Exception {
+        HedgingPolicy policy = createPolicy(new RetryBudget(1, 0));
+        policy.executeAsync("SANDBOX", get, attempt, listener);
+        awaitAttempts(2);
+
+        policy.executeAsync("SANDBOX", get, attempt, listener);
+        Thread.sleep(50);
+        assertEquals(3, attempts.size());
+    }
+
+    @Test
+    public void onlyGetRequests() throws Exception {
+        createPolicy(null).executeAsync("SANDBOX", post, attempt, listener);
+        Thread.sleep(50);
+        assertEquals(1, attempts.size());
+    }
+
+    @Test
+    public void hedgeStartsOnExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "hedge-executor");
+            }
+        });
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+        try {
+            CompletableFuture<String> result = createPolicy(null).executeAsync("SANDBOX", get, () -> {
+                threads.add(Thread.currentThread().getName());
+                return attempt.get();
+            }, listener, executor);
+            awaitAttempts(2);
+            attempts.get(1).complete("hedge");
+
+            assertEquals("hedge", result.get(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(Thread.currentThread().getName(), "hedge-executor"), threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void latencyPercentile() throws Exception {
+        HedgingPolicy policy = new HedgingPolicy.HedgingPolicyBuilder()
+                .setHedgeDelay(5000)
+                .setLatencyPercentile(0.95)
+                .createHedgingPolicy();
+        Supplier<CompletableFuture<String>> fast = () -> CompletableFuture.completedFuture("fast");
+
+        for (int i = 0; i < 31; i++) {
+            policy.executeAsync("SANDBOX", get, fast, listener).get();
+        }
+        assertEquals(5000, policy.getHedgeDelay("SANDBOX", StatusRequest.class));
+        policy.executeAsync("SANDBOX", get, fast, listener).get();
+        assertEquals(0, policy.getHedgeDelay("SANDBOX", StatusRequest.class));
+        assertEquals(5000, policy.getHedgeDelay("PRODUCTION", StatusRequest.class));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import io.aexp.api.client.core.exceptions.RateLimitExceededException;
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RateLimiterTest {
+
+    private RateLimiter createRateLimiter(double permitsPerSecond, int burst) {
+        return new RateLimiterPolicy.RateLimiterPolicyBuilder()
+                .addLimit("/payments", permitsPerSecond, burst)
+                .createRateLimiterPolicy()
+                .getRateLimiter("KEY", "/payments/digital/v2/tokens");
+    }
+
+    @Test
+    public void burstThenRate() {
+        RateLimiter rateLimiter = createRateLimiter(0.01, 3);
+        assertTrue(rateLimiter.tryAcquire());
+        assertTrue(rateLimiter.tryAcquire());
+        assertTrue(rateLimiter.tryAcquire());
+        assertFalse(rateLimiter.tryAcquire());
+        assertFalse(rateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+
+        RateLimitExceededException exceeded = rateLimiter.exceeded();
+        assertTrue(exceeded.getRetryAfter() > 90000);
+    }
+
+    @Test
+    public void blockingWait() {
+        RateLimiter rateLimiter = createRateLimiter(20, 1);
+        assertTrue(rateLimiter.tryAcquire());
+        long start = System.nanoTime();
+        assertTrue(rateLimiter.tryAcquire(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void interruptedWaitGivesPermitBack() {
+        RateLimiter rateLimiter = createRateLimiter(1, 1);
+        assertTrue(rateLimiter.tryAcquire());
+
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(rateLimiter.tryAcquire(5, TimeUnit.SECONDS));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        //The interrupted caller's reservation is gone, the next caller only waits for the one permit
+        assertTrue(rateLimiter.exceeded().getRetryAfter() <= 1000);
+    }
+
+    @Test
+    public void asyncWait() throws Exception {
+        RateLimiter rateLimiter = createRateLimiter(20, 1);
+        assertTrue(rateLimiter.acquireAsync(0, TimeUnit.MILLISECONDS).isDone());
+
+        CompletableFuture<Void> permit = rateLimiter.acquireAsync(1, TimeUnit.SECONDS);
+        assertFalse(permit.isDone());
+        permit.get(1, TimeUnit.SECONDS);
+
+        try {
+            rateLimiter.acquireAsync(0, TimeUnit.MILLISECONDS).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RateLimitExceededException);
+        }
+    }
+
+    @Test
+    public void cancelledAsyncWaitGivesPermitBack() {
+        RateLimiter rateLimiter = createRateLimiter(10, 1);
+        assertTrue(rateLimiter.tryAcquire());
+
+        CompletableFuture<Void> permit = rateLimiter.acquireAsync(1, TimeUnit.SECONDS);
+        assertFalse(permit.isDone());
+        assertTrue(permit.cancel(false));
+        //Only the permit after the one taken is waited for, not the one the cancelled caller reserved
+        assertTrue(rateLimiter.exceeded().getRetryAfter() <= 100);
+    }
+
+    @Test
+    public void honoursRetryAfter() {
+        RateLimiter rateLimiter = createRateLimiter(1000, 10);
+        rateLimiter.onResponse(429, new Header[]{new BasicHeader("Retry-After", "30")});
+        assertFalse(rateLimiter.tryAcquire());
+        assertTrue(rateLimiter.exceeded().getRetryAfter() > 29000);
+    }
+
+    @Test
+    public void honoursQuotaHeaders() {
+        RateLimiter rateLimiter = createRateLimiter(1000, 10);
+        rateLimiter.onResponse(200, new Header[]{new BasicHeader("X-RateLimit-Remaining", "5"),
+                new BasicHeader("X-RateLimit-Reset", "60")});
+        assertTrue(rateLimiter.tryAcquire());
+
+        rateLimiter.onResponse(200, new Header[]{new BasicHeader("RateLimit-Remaining", "0"),
+                new BasicHeader("RateLimit-Reset", "60")});
+        assertFalse(rateLimiter.tryAcquire());
+
+        long reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 120;
+        RateLimiter other = createRateLimiter(1000, 10);
+        other.onResponse(200, new Header[]{new BasicHeader("X-RateLimit-Remaining", "0"),
+                new BasicHeader("X-RateLimit-Reset", Long.toString(reset))});
+        assertTrue(other.exceeded().getRetryAfter() > 100000);
+    }
+
+    @Test
+    public void limitPerClientKeyAndPrefix() {
+        RateLimiterPolicy policy = new RateLimiterPolicy.RateLimiterPolicyBuilder()
+                .addLimit("/payments/digital/v2/tokens", 10, 10)
+                .addLimit("/payments", 5, 5)
+                .addLimit("PREMIUM", "/payments", 50, 50)
+                .createRateLimiterPolicy();
+
+        RateLimiter tokens = policy.getRateLimiter("KEY", "/payments/digital/v2/tokens/provisioning");
+        assertEquals(10, tokens.getPermitsPerSecond(), 0);
+        assertSame(tokens, policy.getRateLimiter("KEY", "/payments/digital/v2/tokens/notifications"));
+        assertNotSame(tokens, policy.getRateLimiter("OTHER", "/payments/digital/v2/tokens/provisioning"));
+        assertEquals(5, policy.getRateLimiter("KEY", "/payments/other").getPermitsPerSecond(), 0);
+        assertEquals(50, policy.getRateLimiter("PREMIUM", "/payments/digital/v2/tokens").getPermitsPerSecond(), 0);
+        assertNull(policy.getRateLimiter("KEY", "/b2bcommerce/v2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() {
+        new RateLimiterPolicy.RateLimiterPolicyBuilder().addLimit("/payments", 0, 1).createRateLimiterPolicy();
+    }
+}
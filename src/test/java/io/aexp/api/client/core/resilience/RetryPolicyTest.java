@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.aexp.api.client.core.resilience;
+
+import io.aexp.api.client.core.exceptions.ExecutorException;
+import io.aexp.api.client.core.exceptions.HttpStatusException;
+import io.aexp.api.client.core.models.ApiClientRequest;
+import io.aexp.api.client.core.tokenization.NotificationsRequest;
+import io.aexp.api.client.core.tokenization.StatusRequest;
+import org.apache.http.Header;
+import org.apache.http.conn.HttpHostConnectException;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    private final ApiClientRequest get = new StatusRequest.StatusRequestBuilder().createStatusRequest();
+    private final ApiClientRequest post = new NotificationsRequest.NotificationsRequestBuilder()
+            .createNotificationsRequest();
+
+    private RetryPolicy createPolicy(RetryBudget budget) {
+        return new RetryPolicy.RetryPolicyBuilder()
+                .setMaxAttempts(3)
+                .setInitialBackoff(1)
+                .setMaxBackoff(5000)
+                .setRetryBudget(budget)
+                .createRetryPolicy();
+    }
+
+    @Test
+    public void retriesIdempotentRequest() {
+        final AtomicInteger attempts = new AtomicInteger();
+        String result = createPolicy(null).execute(get, new Callable<String>() {
+            @Override
+            public String call() {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new ExecutorException("wrapped", new HttpStatusException(503, null));
+                }
+                return "ok";
+            }
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void stopsAfterMaxAttempts() {
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            createPolicy(null).execute(get, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    attempts.incrementAndGet();
+                    throw new SocketTimeoutException("Read timed out");
+                }
+            });
+        } catch (ExecutorException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void retryableFailures() {
+        RetryPolicy policy = createPolicy(null);
+
+        assertTrue(policy.isRetryable(get, new ExecutorException("", new HttpStatusException(503, null))));
+        assertTrue(policy.isRetryable(get, new ExecutorException("", new SocketTimeoutException())));
+        assertTrue(policy.isRetryable(post, new ExecutorException("", new HttpStatusException(429, null))));
+        assertTrue(policy.isRetryable(post,
+                new ExecutorException("", new HttpHostConnectException(new ConnectException(), null))));
+        assertFalse(policy.isRetryable(post, new ExecutorException("", new HttpStatusException(503, null))));
+        assertFalse(policy.isRetryable(post, new ExecutorException("", new SocketTimeoutException())));
+        assertFalse(policy.isRetryable(get, new ExecutorException("", new HttpStatusException(400, null))));
+        assertFalse(policy.isRetryable(get, new ExecutorException("Invalid key")));
+    }
+
+    @Test
+    public void idempotentRequestType() {
+        RetryPolicy policy = new RetryPolicy.RetryPolicyBuilder()
+                .addIdempotentRequestType(NotificationsRequest.class)
+                .createRetryPolicy();
+
+        assertTrue(policy.isIdempotent(post));
+        assertTrue(policy.isRetryable(post, new ExecutorException("", new HttpStatusException(503, null))));
+    }
+
+    @Test
+    public void backoff() {
+        RetryPolicy policy = new RetryPolicy.RetryPolicyBuilder()
+                .setMaxAttempts(10)
+                .setInitialBackoff(100)
+                .setMaxBackoff(400)
+                .createRetryPolicy();
+        Exception failure = new HttpStatusException(503, null);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(policy.getRetryDelay(get, 1, failure) <= 100);
+            assertTrue(policy.getRetryDelay(get, 5, failure) <= 400);
+        }
+        assertEquals(-1, policy.getRetryDelay(get, 10, failure));
+    }
+
+    @Test
+    public void deadline() {
+        RetryBudget budget = new RetryBudget(1, 0);
+        RetryPolicy policy = createPolicy(budget);
+        Exception failure = new HttpStatusException(503, new Header[]{new BasicHeader("Retry-After", "2")});
+
+        assertEquals(-1, policy.getRetryDelay(get, 1, failure, Deadline.after(1, TimeUnit.SECONDS)));
+        assertEquals(1.0, budget.getAvailableTokens(), 0.0);
+        assertEquals(2000, policy.getRetryDelay(get, 1, failure, Deadline.after(10, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void retryAfter() {
+        RetryPolicy policy = createPolicy(null);
+        Header[] headers = new Header[]{new BasicHeader("Retry-After", "2")};
+
+        assertEquals(2000, policy.getRetryDelay(get, 1, new HttpStatusException(429, headers)));
+    }
+
+    @Test
+    public void budget() {
+        RetryBudget budget = new RetryBudget(2, 0.5);
+        RetryPolicy policy = createPolicy(budget);
+        Exception failure = new HttpStatusException(503, null);
+
+        assertTrue(policy.getRetryDelay(get, 1, failure) >= 0);
+        assertTrue(policy.getRetryDelay(get, 1, failure) >= 0);
+        assertEquals(-1, policy.getRetryDelay(get, 1, failure));
+
+        budget.onSuccess();
+        budget.onSuccess();
+        assertEquals(1.0, budget.getAvailableTokens(), 0.0001);
+        assertTrue(policy.getRetryDelay(get, 1, failure) >= 0);
+    }
+
+    @Test
+    public void executeAsync() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> result = createPolicy(null).executeAsync(get,
+                new Supplier<CompletableFuture<String>>() {
+                    @Override
+                    public CompletableFuture<String> get() {
+                        CompletableFuture<String> attempt = new CompletableFuture<String>();
+                        if (attempts.incrementAndGet() < 2) {
+                            attempt.completeExceptionally(new HttpStatusException(502, null));
+                        } else {
+                            attempt.complete("ok");
+                        }
+                        return attempt;
+                    }
+                });
+
+        assertEquals("ok", result.get(10, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void executeAsyncRetriesOnExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "retry-executor");
+            }
+        });
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+        try {
+            CompletableFuture<String> result = createPolicy(null).executeAsync(get, null,
+                    new Supplier<CompletableFuture<String>>() {
+                        @Override
+                        public CompletableFuture<String> get() {
+                            threads.add(Thread.currentThread().getName());
+                            CompletableFuture<String> attempt = new CompletableFuture<String>();
+                            if (threads.size() < 2) {
+                                attempt.completeExceptionally(new HttpStatusException(502, null));
+                            } else {
+                                attempt.complete("ok");
+                            }
+                            return attempt;
+                        }
+                    }, executor);
+
+            assertEquals("ok", result.get(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(Thread.currentThread().getName(), "retry-executor"), threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void executeAsyncNotRetryable() throws Exception {
+        CompletableFuture<String> result = createPolicy(null).executeAsync(post,
+                new Supplier<CompletableFuture<String>>() {
+                    @Override
+                    public CompletableFuture<String> get() {
+                        CompletableFuture<String> attempt = new CompletableFuture<String>();
+                        attempt.completeExceptionally(new HttpStatusException(503, null));
+                        return attempt;
+                    }
+                });
+
+        try {
+            result.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HttpStatusException);
+            return;
+        }
+        throw new AssertionError("Expected the request to fail");
+    }
+}
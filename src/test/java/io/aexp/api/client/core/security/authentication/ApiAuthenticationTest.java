@@ -16,6 +16,7 @@ package io.aexp.api.client.core.security.authentication;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 
 import io.aexp.api.client.core.configuration.ConfigurationKeys;
@@ -29,11 +30,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.spec.SecretKeySpec;
 import javax.crypto.Mac;
@@ -132,6 +141,149 @@ public class ApiAuthenticationTest {
     }
 
 
+    @Test
+    public void genHmacHeadersNonAscii() throws Exception {
+        String payload = "{\"name\":\"Zo\u00eb \u00c5ngstr\u00f6m \u20ac\"}";
+        String clientSecret = configurationProvider.getValue(ConfigurationKeys.CLIENT_SECRET);
+
+        HmacAuthProvider prov = (HmacAuthProvider)HmacAuthBuilder.getBuilder().setConfiguration(configurationProvider).build();
+        String result = prov.generateMacHeader("id", clientSecret, "/path", "github.com", 443, "POST", payload,
+                "nonce", "1473803713478");
+
+        Mac mac = createMacGenerator(clientSecret);
+        String bodyHash = Base64.encodeBytes(mac.doFinal(payload.getBytes("UTF-8")));
+        String macInput = "1473803713478\nnonce\nPOST\n/path\ngithub.com\n443\n" + bodyHash + "\n";
+        String signature = Base64.encodeBytes(mac.doFinal(macInput.getBytes("UTF-8")));
+
+        assertEquals("MAC id=\"id\",ts=\"1473803713478\",nonce=\"nonce\",bodyhash=\"" + bodyHash + "\",mac=\"" +
+                signature + "\"", result);
+    }
+
+    @Test
+    public void genHmacHeadersSecretChange() throws Exception {
+        Properties properties = new Properties();
+        properties.put(ConfigurationKeys.CLIENT_KEY, "key");
+        properties.put(ConfigurationKeys.CLIENT_SECRET, "first secret");
+        PropertiesConfigurationProvider provider = new PropertiesConfigurationProvider();
+        provider.setProperties(properties);
+
+        HmacAuthProvider prov = (HmacAuthProvider)HmacAuthBuilder.getBuilder().setConfiguration(provider).build();
+        String first = prov.generateMacHeader("key", "first secret", "/path", "github.com", 443, "GET", "",
+                "nonce", "1");
+        String second = prov.generateMacHeader("key", "second secret", "/path", "github.com", 443, "GET", "",
+                "nonce", "1");
+        String again = prov.generateMacHeader("key", "first secret", "/path", "github.com", 443, "GET", "",
+                "nonce", "1");
+
+        assertFalse(first.equals(second));
+        assertEquals(first, again);
+    }
+
+    @Test
+    public void genHmacHeadersResolvesClientOnce() throws Exception {
+        Properties properties = new Properties();
+        properties.put(ConfigurationKeys.CLIENT_KEY, "key");
+        properties.put(ConfigurationKeys.CLIENT_SECRET, "first secret");
+        PropertiesConfigurationProvider provider = new PropertiesConfigurationProvider();
+        provider.setProperties(properties);
+        AuthProvider authProvider = HmacAuthBuilder.getBuilder().setConfiguration(provider).build();
+
+        properties.put(ConfigurationKeys.CLIENT_KEY, "other key");
+        properties.put(ConfigurationKeys.CLIENT_SECRET, "second secret");
+        String url = "https://api.americanexpress.com/payments/digital/v2/tokens";
+        Map<String, String> headers = authProvider.generateAuthHeaders("{}", url, "POST");
+        assertEquals("key", headers.get(AuthHeaderNames.X_AMEX_API_KEY));
+
+        MessageFormat msgFormat = new MessageFormat("MAC id=\"{0}\",ts=\"{1}\",nonce=\"{2}\",bodyhash=\"{4}\",mac=\"{3}\"");
+        Object[] values = msgFormat.parse(headers.get(AuthHeaderNames.AUTHORIZATION));
+        validateHMAC("first secret", (String) values[1], (String) values[2], "POST", url, "{}", (String) values[4],
+                (String) values[3]);
+    }
+
+    @Test
+    public void genHmacHeadersPerEndpoint() throws Exception {
+        String clientId = configurationProvider.getValue(ConfigurationKeys.CLIENT_KEY);
+        String clientSecret = configurationProvider.getValue(ConfigurationKeys.CLIENT_SECRET);
+        AuthProvider authProvider = HmacAuthBuilder.getBuilder().setConfiguration(configurationProvider).build();
+        MessageFormat msgFormat = new MessageFormat("MAC id=\"{0}\",ts=\"{1}\",nonce=\"{2}\",bodyhash=\"{4}\",mac=\"{3}\"");
+
+        //The signer bound to the first endpoint must not be reused for the others
+        String[] urls = {"https://api.americanexpress.com/payments/digital/v2/tokens/provisioning",
+                "https://api.americanexpress.com/payments/digital/v2/tokens/status?id=1",
+                "https://API.qa.americanexpress.com:8443/payments/digital/v2/tokens",
+                "http://localhost:55555/payments/digital/v2/tokens#fragment",
+                "https://api.americanexpress.com/payments/digital/v2/tokens/provisioning"};
+        for (String url : urls) {
+            Map<String, String> headers = authProvider.generateAuthHeaders("{}", url, "POST");
+            assertEquals(clientId, headers.get(AuthHeaderNames.X_AMEX_API_KEY));
+            assertNotNull(headers.get(AuthHeaderNames.X_AMEX_REQUEST_ID));
+
+            Object[] values = msgFormat.parse(headers.get(AuthHeaderNames.AUTHORIZATION));
+            assertEquals(clientId, values[0]);
+            validateHMAC(clientSecret, (String) values[1], (String) values[2], "POST", url, "{}", (String) values[4],
+                    (String) values[3]);
+        }
+    }
+
+    @Test
+    public void genHmacHeadersForBody() throws Exception {
+        String payload = "{\"name\":\"Zo\u00eb \u00c5ngstr\u00f6m \u20ac\"}";
+        byte[] body = payload.getBytes("UTF-8");
+        String clientSecret = configurationProvider.getValue(ConfigurationKeys.CLIENT_SECRET);
+        String targetURL = configurationProvider.getValue(ConfigurationKeys.BASE_URL);
+        AuthProvider authProvider = HmacAuthBuilder.getBuilder().setConfiguration(configurationProvider).build();
+        MessageFormat msgFormat = new MessageFormat("MAC id=\"{0}\",ts=\"{1}\",nonce=\"{2}\",bodyhash=\"{4}\",mac=\"{3}\"");
+
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        List<Map<String, String>> results = new ArrayList<Map<String, String>>();
+        results.add(authProvider.generateAuthHeadersForBody(body, targetURL, "POST"));
+        results.add(authProvider.generateAuthHeadersForBody(buffer, targetURL, "POST"));
+        results.add(authProvider.generateAuthHeadersForBody(new ByteArrayInputStream(body), targetURL, "POST"));
+        assertEquals(0, buffer.position());
+
+        Mac mac = createMacGenerator(clientSecret);
+        String bodyHash = Base64.encodeBytes(mac.doFinal(body));
+        for (Map<String, String> headers : results) {
+            Object[] values = msgFormat.parse(headers.get(AuthHeaderNames.AUTHORIZATION));
+            assertEquals(bodyHash, values[4]);
+            String macInput = values[1] + "\n" + values[2] + "\nPOST\n" + new URL(targetURL).getPath() + "\n" +
+                    new URL(targetURL).getHost().toLowerCase() + "\n" + new URL(targetURL).getDefaultPort() + "\n" +
+                    bodyHash + "\n";
+            assertEquals(Base64.encodeBytes(mac.doFinal(macInput.getBytes("UTF-8"))), values[3]);
+        }
+
+        //Providers that do not hash the body fall back to the String form
+        AuthProvider apiKeyProvider = ApiKeyAuthBuilder.getBuilder().setConfiguration(configurationProvider).build();
+        assertEquals(2, apiKeyProvider.generateAuthHeadersForBody(body, targetURL, "POST").size());
+    }
+
+    @Test
+    public void genHmacHeadersConcurrently() throws Exception {
+        final HmacAuthProvider prov = (HmacAuthProvider)HmacAuthBuilder.getBuilder().setConfiguration(configurationProvider).build();
+        final String clientKey = configurationProvider.getValue(ConfigurationKeys.CLIENT_KEY);
+        final String clientSecret = configurationProvider.getValue(ConfigurationKeys.CLIENT_SECRET);
+        final String expected = prov.generateMacHeader(clientKey, clientSecret, "/path", "github.com", 443, "POST",
+                "payload", "nonce", "1473803713478");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 400; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return prov.generateMacHeader(clientKey, clientSecret, "/path", "github.com", 443, "POST",
+                                "payload", "nonce", "1473803713478");
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private void validateHMAC(String secretKey, String timestamp, String nonce, String httpMethod,
                               String url, String body, String messageBodyHash, String messageSignature)
             throws NoSuchAlgorithmException, InvalidKeyException, URISyntaxException, MalformedURLException {
@@ -17,6 +17,7 @@ package io.aexp.api.client.core.tokenization;
 import io.aexp.api.client.core.enums.NotificationType;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -63,6 +64,16 @@ public class NotificationsRequestTest {
 
 
 
+    @Test
+    public void toJsonBytes() throws Exception {
+        NotificationsRequest request = new NotificationsRequest.NotificationsRequestBuilder()
+                .setTokenReferenceId("r\u00e9f")
+                .setNotificationType(NotificationType.SUSPEND)
+                .createNotificationsRequest();
+
+        assertArrayEquals(request.toJson().getBytes("UTF-8"), request.toJsonBytes());
+    }
+
     @Test
     public void getUri() {
         assertEquals("/payments/digital/v2/tokens/notifications", new NotificationsRequest.NotificationsRequestBuilder().createNotificationsRequest().getUri());
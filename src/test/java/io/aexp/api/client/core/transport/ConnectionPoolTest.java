@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.transport;
+
+import io.aexp.api.client.core.ApiClient;
+import io.aexp.api.client.core.enums.EndPoint;
+import io.aexp.api.client.core.exceptions.ExecutorException;
+import org.apache.http.HttpHost;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSession;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolTest {
+
+    @Test
+    public void defaults() {
+        ConnectionPool pool = ConnectionPool.getDefault();
+
+        assertSame(pool, ConnectionPool.getDefault());
+        assertEquals(ConnectionPool.DEFAULT_MAX_TOTAL, pool.getConnectionManager().getMaxTotal());
+        assertEquals(ConnectionPool.DEFAULT_MAX_PER_ROUTE, pool.getConnectionManager().getDefaultMaxPerRoute());
+        assertEquals(ConnectionPool.DEFAULT_VALIDATE_AFTER_INACTIVITY,
+                pool.getConnectionManager().getValidateAfterInactivity());
+        assertFalse(pool.isClosed());
+    }
+
+    @Test
+    public void custom() throws Exception {
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder()
+                .setMaxTotal(40)
+                .setMaxPerRoute(20)
+                .setValidateAfterInactivity(500)
+                .setTimeToLive(60000)
+                .setMaxIdleTime(10000)
+                .setEvictionInterval(1000)
+                .createConnectionPool();
+
+        try {
+            assertEquals(40, pool.getConnectionManager().getMaxTotal());
+            assertEquals(20, pool.getConnectionManager().getDefaultMaxPerRoute());
+            assertEquals(500, pool.getConnectionManager().getValidateAfterInactivity());
+            assertEquals(60000, pool.getTimeToLive());
+            assertEquals(10000, pool.getMaxIdleTime());
+            assertNotNull(pool.getHttpClient());
+            assertNotNull(pool.getAsyncHttpClient());
+            //Handing out the non-blocking client does not start its I/O reactor
+            assertFalse(pool.getAsyncHttpClient().isRunning());
+            pool.evictConnections();
+        } finally {
+            pool.close();
+        }
+
+        assertTrue(pool.isClosed());
+    }
+
+    @Test(expected = ExecutorException.class)
+    public void closed() throws Exception {
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder().createConnectionPool();
+        pool.close();
+        pool.getHttpClient();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() {
+        new ConnectionPool.ConnectionPoolBuilder().setMaxPerRoute(0).createConnectionPool();
+    }
+
+    @Test
+    public void sharedBetweenClients() throws Exception {
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder().createConnectionPool();
+        try {
+            ApiClient first = new ApiClient.DevPortalExecutorBuilder()
+                    .setEndpoint(EndPoint.SANDBOX)
+                    .setConnectionPool(pool)
+                    .createDevPortalExecutor();
+            ApiClient second = new ApiClient.DevPortalExecutorBuilder()
+                    .setEndpoint(EndPoint.PRODUCTION)
+                    .setTimeout(1000)
+                    .setConnectionPool(pool)
+                    .createDevPortalExecutor();
+
+            assertSame(pool, getConnectionPool(first));
+            assertSame(pool, getConnectionPool(second));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void tls() throws Exception {
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder()
+                .setTlsProtocols("TLSv1.2", "SSLv2")
+                .setTlsSessionCacheSize(10)
+                .setTlsSessionTimeout(600)
+                .createConnectionPool();
+        try {
+            assertArrayEquals(new String[]{"TLSv1.2"}, pool.getTlsProtocols());
+        } finally {
+            pool.close();
+        }
+
+        List<String> defaults = Arrays.asList(ConnectionPool.getDefault().getTlsProtocols());
+        assertTrue(defaults.contains("TLSv1.2"));
+    }
+
+    @Test
+    public void handshakeListener() throws Exception {
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder().createConnectionPool();
+        try {
+            final List<Boolean> resumed = new ArrayList<Boolean>();
+            pool.addHandshakeListener(new TlsHandshakeListener() {
+                @Override
+                public void handshakeCompleted(String host, long nanos, boolean wasResumed) {
+                    assertEquals("api.americanexpress.com", host);
+                    resumed.add(wasResumed);
+                }
+            });
+
+            long now = System.currentTimeMillis();
+            SSLSession session = mock(SSLSession.class);
+            when(session.getCreationTime()).thenReturn(now, now - 60000);
+            pool.handshakeCompleted("api.americanexpress.com", System.nanoTime(), now, session);
+            pool.handshakeCompleted("api.americanexpress.com", System.nanoTime(), now, session);
+            assertEquals(Arrays.asList(false, true), resumed);
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void warmUp() throws Exception {
+        ServerSocket server = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder().setMaxPerRoute(2).createConnectionPool();
+        try {
+            HttpHost target = new HttpHost("127.0.0.1", server.getLocalPort(), "http");
+            assertEquals(2, pool.warmUp(target, 3, 1000));
+            assertEquals(2, pool.getConnectionManager().getTotalStats().getAvailable());
+            assertEquals(0, pool.warmUp(target, 2, 1000));
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    private Object getConnectionPool(ApiClient client) throws Exception {
+        Field field = ApiClient.class.getDeclaredField("connectionPool");
+        field.setAccessible(true);
+        return field.get(client);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.aexp.api.client.core.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.aexp.api.client.core.exceptions.ExecutorException;
+import okhttp3.OkHttpClient;
+import org.apache.http.ContentTooLongException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpTransportTest {
+
+    private HttpServer server;
+    private String baseUri;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (exchange.getRequestURI().getPath().equals("/large")) {
+                    //A chunked body, its length is only known once it has been read
+                    exchange.sendResponseHeaders(200, 0);
+                    OutputStream out = exchange.getResponseBody();
+                    for (int i = 0; i < 64; i++) {
+                        out.write(new byte[1024]);
+                    }
+                    out.close();
+                    return;
+                }
+                //Echoes the method, content type, a header and the body of the request
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                InputStream in = exchange.getRequestBody();
+                byte[] buffer = new byte[1024];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    body.write(buffer, 0, read);
+                }
+                byte[] response = (exchange.getRequestMethod() + " " +
+                        exchange.getRequestHeaders().getFirst("Content-Type") + " " +
+                        exchange.getRequestHeaders().getFirst("x-amex-test") + " " +
+                        body.toString("UTF-8")).getBytes("UTF-8");
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/missing") ? 404 : 200,
+                        response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+        baseUri = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void okHttp() throws Exception {
+        exchange(new OkHttpTransport(new OkHttpClient()));
+    }
+
+    @Test
+    public void apache() throws Exception {
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder().createConnectionPool();
+        try {
+            exchange(new ApacheHttpTransport(pool));
+        } finally {
+            pool.close();
+        }
+    }
+
+    private void exchange(HttpTransport transport) throws Exception {
+        TransportResponse response = transport.execute(request("/status")
+                .addHeader("x-amex-test", "value")
+                .createTransportRequest());
+        assertEquals(200, response.getStatusCode());
+        assertEquals("\"v1\"", response.getFirstHeader("ETag"));
+        assertEquals("GET null value ", read(response));
+
+        response = transport.executeAsync(request("/notifications")
+                .setMethod("POST")
+                .setBody("{\"a\":1}".getBytes("UTF-8"), "application/json")
+                .createTransportRequest()).get(5, TimeUnit.SECONDS);
+        assertEquals("POST application/json null {\"a\":1}", read(response));
+
+        response = transport.execute(request("/missing").createTransportRequest());
+        assertEquals(404, response.getStatusCode());
+        response.close();
+    }
+
+    @Test
+    public void apacheAsyncBodyLimit() throws Exception {
+        ConnectionPool pool = new ConnectionPool.ConnectionPoolBuilder().createConnectionPool();
+        try {
+            ApacheHttpTransport transport = new ApacheHttpTransport(pool);
+            assertTooLong(transport.executeAsync(request("/large").setMaxResponseBodySize(16 * 1024)
+                    .createTransportRequest()));
+            //Refused from the Content-Length header before any of the body is buffered
+            assertTooLong(transport.executeAsync(request("/status").setMaxResponseBodySize(4)
+                    .createTransportRequest()));
+
+            TransportResponse response = transport.executeAsync(request("/large").setMaxResponseBodySize(64 * 1024)
+                    .createTransportRequest()).get(5, TimeUnit.SECONDS);
+            assertEquals(64 * 1024, read(response).length());
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void assertTooLong(Future<TransportResponse> response) throws Exception {
+        try {
+            response.get(5, TimeUnit.SECONDS);
+            fail("The response body exceeds the limit");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ContentTooLongException);
+        }
+    }
+
+    @Test
+    public void abortBeforeSending() throws Exception {
+        TransportRequest request = request("/status").createTransportRequest();
+        request.abort();
+        try {
+            new OkHttpTransport(new OkHttpClient()).execute(request);
+            fail("The aborted request was sent");
+        } catch (IOException e) {
+            assertTrue(request.isAborted());
+        }
+    }
+
+    @Test
+    public void providers() throws Exception {
+        assertTrue(HttpTransportProvider.create("apache") instanceof ApacheHttpTransport);
+
+        HttpTransport okHttp = HttpTransportProvider.create("okhttp");
+        try {
+            assertEquals(200, okHttp.execute(request("/status").createTransportRequest()).getStatusCode());
+        } finally {
+            okHttp.close();
+        }
+
+        if (JdkHttpTransport.isSupported()) {
+            assertTrue(HttpTransportProvider.create("jdk") instanceof JdkHttpTransport);
+        }
+    }
+
+    @Test(expected = ExecutorException.class)
+    public void unknownProvider() {
+        HttpTransportProvider.create("unknown");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void relativeUri() {
+        new TransportRequest.TransportRequestBuilder().setUri(URI.create("/status")).createTransportRequest();
+    }
+
+    private TransportRequest.TransportRequestBuilder request(String path) {
+        return new TransportRequest.TransportRequestBuilder()
+                .setUri(URI.create(baseUri + path))
+                .setConnectTimeout(5000)
+                .setSocketTimeout(5000);
+    }
+
+    private static String read(TransportResponse response) throws IOException {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = response.getBody();
+            byte[] buffer = new byte[1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+            return body.toString("UTF-8");
+        } finally {
+            response.close();
+        }
+    }
+}
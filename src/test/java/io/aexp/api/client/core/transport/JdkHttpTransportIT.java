@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.aexp.api.client.core.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the packaged multi-release jar in the jdk11 profile, so the JdkHttpTransport under test is the one
+ * from META-INF/versions/11 rather than the stub in target/classes.
+ */
+public class JdkHttpTransportIT {
+
+    private HttpServer server;
+    private String baseUri;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                //Echoes the method, content type and body of the request
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                InputStream in = exchange.getRequestBody();
+                byte[] buffer = new byte[1024];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    body.write(buffer, 0, read);
+                }
+                byte[] response = (exchange.getRequestMethod() + " " +
+                        exchange.getRequestHeaders().getFirst("Content-Type") + " " +
+                        body.toString("UTF-8")).getBytes("UTF-8");
+                exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/missing") ? 404 : 200,
+                        response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+        baseUri = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void loadedFromVersionedClasses() {
+        assertTrue(JdkHttpTransport.isSupported());
+        assertTrue(HttpTransportProvider.create("jdk") instanceof JdkHttpTransport);
+    }
+
+    @Test
+    public void execute() throws Exception {
+        JdkHttpTransport transport = new JdkHttpTransport.JdkHttpTransportBuilder()
+                .setConnectTimeout(5000)
+                .createJdkHttpTransport();
+        try {
+            TransportResponse response = transport.execute(request("/status").createTransportRequest());
+            assertEquals(200, response.getStatusCode());
+            assertEquals("GET null ", read(response));
+
+            response = transport.executeAsync(request("/notifications")
+                    .setMethod("POST")
+                    .setBody("{\"a\":1}".getBytes("UTF-8"), "application/json")
+                    .createTransportRequest()).get(5, TimeUnit.SECONDS);
+            assertEquals("POST application/json {\"a\":1}", read(response));
+
+            response = transport.execute(request("/missing").createTransportRequest());
+            assertEquals(404, response.getStatusCode());
+            response.close();
+        } finally {
+            transport.close();
+        }
+    }
+
+    private TransportRequest.TransportRequestBuilder request(String path) {
+        return new TransportRequest.TransportRequestBuilder()
+                .setUri(URI.create(baseUri + path))
+                .setSocketTimeout(5000);
+    }
+
+    private static String read(TransportResponse response) throws IOException {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = response.getBody();
+            byte[] buffer = new byte[1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+            return body.toString("UTF-8");
+        } finally {
+            response.close();
+        }
+    }
+}
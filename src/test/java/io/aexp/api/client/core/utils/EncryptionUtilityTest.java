@@ -18,10 +18,13 @@ import com.nimbusds.jose.JWSObject;
 import io.aexp.api.client.core.exceptions.CryptoException;
 import org.junit.Test;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -69,6 +72,15 @@ public class EncryptionUtilityTest {
         assertTrue(signature.contains("\"payload\":"));
         assertTrue(signature.contains("\"signature\":"));
     }
+    @Test
+    public void signBytes() throws Exception {
+        String aesKey = "LvXdoSVmSc0VxTRd13DfNYS7qKEVdsHURcBI/FSnv2w=";
+        String data = "{\"name\":\"Zo\u00eb \u20ac\"}";
+
+        byte[] signed = encryptionUtility.sign("HS256", "kid", aesKey, data.getBytes("UTF-8"));
+        assertEquals(encryptionUtility.sign("HS256", "kid", aesKey, data), new String(signed, "UTF-8"));
+    }
+
     @Test (expected = CryptoException.class)
     public void invalidSign() {
         encryptionUtility.sign("HS256", "", null, "Sign this");
@@ -91,4 +103,74 @@ public class EncryptionUtilityTest {
         assertNotNull(exception);
         assertTrue(exception instanceof CryptoException);
     }
+
+    @Test
+    public void cachedCrypto() throws Exception {
+        String aesKey = "LvXdoSVmSc0VxTRd13DfNYS7qKEVdsHURcBI/FSnv2w=";
+        encryptionUtility.invalidateAll();
+
+        encryptionUtility.sign("HS256", "kid", aesKey, "Sign this");
+        encryptionUtility.sign("HS256", "kid", aesKey, "Sign this too");
+        String encrypted = encryptionUtility.encrypt("This is a test", "kid", aesKey);
+        encryptionUtility.encrypt("This is another test", "kid", aesKey);
+        assertEquals("This is a test", encryptionUtility.decrypt(aesKey, encrypted));
+
+        assertEquals(1, getCache("signers").size());
+        assertEquals(1, getCache("encrypters").size());
+        assertEquals(1, getCache("decrypters").size());
+    }
+
+    @Test
+    public void rotatedKey() throws Exception {
+        String aesKey = "LvXdoSVmSc0VxTRd13DfNYS7qKEVdsHURcBI/FSnv2w=";
+        String rotatedKey = "3q2+796tvu/erb7v3q2+796tvu/erb7v3q2+796tvu8=";
+        encryptionUtility.invalidateAll();
+
+        String first = encryptionUtility.sign("HS256", "kid", aesKey, "Sign this");
+        String second = encryptionUtility.sign("HS256", "kid", rotatedKey, "Sign this");
+
+        assertFalse(first.equals(second));
+        assertEquals(2, getCache("signers").size());
+
+        encryptionUtility.invalidate("kid");
+        assertEquals(0, getCache("signers").size());
+
+        encryptionUtility.decrypt(aesKey, encryptionUtility.encrypt("data", "other", aesKey));
+        assertEquals(1, getCache("decrypters").size());
+        encryptionUtility.invalidate("other");
+        assertEquals(0, getCache("encrypters").size());
+        assertEquals(0, getCache("decrypters").size());
+    }
+
+    @Test
+    public void cacheKeysHoldNoKeyMaterial() throws Exception {
+        String aesKey = "LvXdoSVmSc0VxTRd13DfNYS7qKEVdsHURcBI/FSnv2w=";
+        encryptionUtility.invalidateAll();
+        encryptionUtility.sign("HS256", "kid", aesKey, "Sign this");
+
+        for (Object cacheKey : getCache("signers").keySet()) {
+            for (Field field : cacheKey.getClass().getDeclaredFields()) {
+                field.setAccessible(true);
+                assertFalse(aesKey.equals(field.get(cacheKey)));
+            }
+        }
+    }
+
+    @Test
+    public void equalKeyStringsShareEntries() throws Exception {
+        String aesKey = "LvXdoSVmSc0VxTRd13DfNYS7qKEVdsHURcBI/FSnv2w=";
+        encryptionUtility.invalidateAll();
+
+        String first = encryptionUtility.sign("HS256", "kid", aesKey, "Sign this");
+        String second = encryptionUtility.sign("HS256", "kid", new String(aesKey), "Sign this");
+
+        assertEquals(first, second);
+        assertEquals(1, getCache("signers").size());
+    }
+
+    private Map getCache(String name) throws Exception {
+        Field field = encryptionUtility.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return (Map) field.get(encryptionUtility);
+    }
 }
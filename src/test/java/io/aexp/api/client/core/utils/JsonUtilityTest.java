@@ -14,9 +14,12 @@
 
 package io.aexp.api.client.core.utils;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import io.aexp.api.client.core.exceptions.JsonException;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,6 +36,19 @@ public class JsonUtilityTest {
         assertEquals("{ }", jsonUtility.getString(map));
     }
 
+    @Test
+    public void getBytes() throws Exception {
+        Map<String,String>map = new HashMap<String, String>();
+        map.put("name", "Zo\u00eb");
+
+        assertEquals(jsonUtility.getString(map), new String(jsonUtility.getBytes(map), "UTF-8"));
+    }
+
+    @Test(expected = JsonException.class)
+    public void getBytesNull() {
+        jsonUtility.getBytes(new ImmutableObject("value"));
+    }
+
     @Test(expected = JsonException.class)
     public void getStringNull() {
         jsonUtility.getString(new ImmutableObject("value"));
@@ -51,6 +67,45 @@ public class JsonUtilityTest {
         jsonUtility.getObject("{\" }", Map.class);
     }
 
+    @Test
+    public void getObjectBytes() throws Exception {
+        Map<String,String>map = jsonUtility.getObject("{\"key\":\"v\u00e4lue\"}".getBytes("UTF-8"), Map.class);
+
+        assertEquals("v\u00e4lue", map.get("key"));
+    }
+
+    @Test
+    public void getMap() throws Exception {
+        Map<String, Object> map = jsonUtility.getMap("{\"key\":\"value\",\"count\":2}");
+        assertEquals("value", map.get("key"));
+        assertEquals(2, map.get("count"));
+        assertEquals("v\u00e4lue", jsonUtility.getMap("{\"key\":\"v\u00e4lue\"}".getBytes("UTF-8")).get("key"));
+    }
+
+    @Test(expected= JsonException.class)
+    public void getMapInvalid() {
+        jsonUtility.getMap("{\" }".getBytes());
+    }
+
+    @Test(expected= JsonException.class)
+    public void getObjectBytesInvalid() {
+        jsonUtility.getObject("{\" }".getBytes(), Map.class);
+    }
+
+    @Test
+    public void createParser() throws Exception {
+        JsonParser parser = jsonUtility.createParser(
+                new ByteArrayInputStream("[{\"key\":\"a\"},{\"key\":\"b\"}]".getBytes("UTF-8")));
+
+        assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+        assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+        assertEquals("a", parser.readValueAs(Map.class).get("key"));
+        assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+        assertEquals("b", parser.readValueAs(Map.class).get("key"));
+        assertEquals(JsonToken.END_ARRAY, parser.nextToken());
+        parser.close();
+    }
+
     @Test
     public void prettyString() {
         String pretty = jsonUtility.prettyString("{\"key\":\"value\" }");